@@ -0,0 +1,31 @@
+/*
+ * Copyright 2015 Miklos Sagi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.msagi.flashbus.annotation;
+
+/**
+ * List of supported policies for posting to a full (bounded) event queue.
+ * @author msagi (miklos.sagi@gmail.com)
+ */
+public enum OverflowPolicy {
+    /** The posting thread waits until the subscriber takes events from the queue (posting on the delivery thread of the subscriber throws IllegalStateException instead of waiting for itself). */
+    BLOCK,
+    /** The oldest event in the queue is dropped to make room for the posted event. */
+    DROP_OLDEST,
+    /** The posted event is dropped. */
+    DROP_NEWEST,
+    /** Posting throws IllegalStateException (after the event is dispatched to the other subscribers). */
+    FAIL
+}
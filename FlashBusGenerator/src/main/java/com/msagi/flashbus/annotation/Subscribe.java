@@ -22,6 +22,12 @@ import java.lang.annotation.Target;
 
 /**
  * Annotation class for event handler methods to subscribe to events on FlashBus.
+ * The event handler method has a single parameter: either the event class or java.util.List of the event class. The latter receives all the
+ * events waiting for delivery in one call. Event handler methods of primitive value channels have a single int, long or double parameter and
+ * name the channel (see channel()).
+ * POSTING thread event handler methods can return boolean: returning true cancels the further delivery of the posted event to the subscribers
+ * with lower priority. Cancellation is limited to the POSTING thread (the subscriber returns before the event is dispatched further), event
+ * handler methods of the other threads returning boolean are rejected at compile time.
  *
  * @author msagi (miklos.sagi@gmail.com)
  */
@@ -35,4 +41,48 @@ public @interface Subscribe {
      * @return The ID of the thread.
      */
     ThreadId thread() default ThreadId.MAIN;
+
+    /**
+     * Capacity of the bounded (preallocated ring buffer) event queue of the subscriber. When the event queue is full, the overflow policy decides
+     * what happens with the posted event.
+     *
+     * @return The capacity of the event queue (rounded up to power of 2, at most 2^30), or 0 to use the default event queue of the event bus (unbounded
+     * unless the event bus is generated with -Aqueue=ring or an overflow policy other than BLOCK is set).
+     */
+    int capacity() default 0;
+
+    /**
+     * Policy for posting to the full event queue of the subscriber (setting a policy other than BLOCK implies bounded event queue).
+     *
+     * @return The overflow policy.
+     */
+    OverflowPolicy overflow() default OverflowPolicy.BLOCK;
+
+    /**
+     * Conflate the events for the subscriber: instead of an event queue the subscriber has a single slot for the latest event which is
+     * overwritten on posting, so the subscriber receives only the latest event posted since its previous delivery (cannot be combined with
+     * capacity, overflow and batch (java.util.List) event handler methods).
+     *
+     * @return True to conflate the events, false to deliver every event.
+     */
+    boolean conflate() default false;
+
+    /**
+     * Priority of the subscriber: posting an event dispatches it to the subscribers with higher priority first (the order is compiled into the
+     * generated event bus). Within the same priority the subscribers of the posted event class receive the event first, then the subscribers
+     * of its supertypes (the more specific class first); the subscribers of the same event class receive it in the order of registration.
+     *
+     * @return The priority of the subscriber.
+     */
+    int priority() default 0;
+
+    /**
+     * Name of the primitive value channel of the subscriber: event handler methods with a single int, long or double parameter receive the
+     * values posted to the channel with the generated postInt(channel, value), postLong(channel, value) and postDouble(channel, value) methods
+     * without boxing (required for primitive parameters, cannot be combined with event classes, conflate and batch event handler methods).
+     * The name consists of letters, digits, '_', '.' and '-'.
+     *
+     * @return The name of the channel, or empty string for event class subscribers.
+     */
+    String channel() default "";
 }
@@ -0,0 +1,40 @@
+/*
+ * Copyright 2015 Miklos Sagi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.msagi.flashbus.annotation;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Annotation of the generated subscriber index classes of the library modules (generated with the -Alibrary=true compiler parameter).
+ * The annotation processor of the application module finds the subscriber index classes on the classpath and generates the event bus for the
+ * subscriber methods of the listed classes too. Not to be used directly.
+ *
+ * @author msagi (miklos.sagi@gmail.com)
+ */
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.CLASS)
+public @interface SubscriberIndex {
+
+    /**
+     * The classes of the library module containing subscriber methods.
+     *
+     * @return The subscriber classes.
+     */
+    Class<?>[] value();
+}
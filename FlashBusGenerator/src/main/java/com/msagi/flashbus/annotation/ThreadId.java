@@ -23,5 +23,9 @@ public enum ThreadId {
     /** Main (UI) thread. */
     MAIN,
     /** Background thread. */
-    BACKGROUND
+    BACKGROUND,
+    /** Worker thread of the asynchronous pool (subscribers run in parallel, each subscriber receives its events in order on one thread at a time). */
+    ASYNC,
+    /** The posting thread (the event is delivered synchronously by the post call, without event queue and thread switch). */
+    POSTING
 }
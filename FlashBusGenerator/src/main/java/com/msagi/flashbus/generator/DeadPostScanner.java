@@ -0,0 +1,229 @@
+/*
+ * Copyright 2015 Miklos Sagi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.msagi.flashbus.generator;
+
+import com.sun.source.tree.CompilationUnitTree;
+import com.sun.source.tree.MethodInvocationTree;
+import com.sun.source.util.JavacTask;
+import com.sun.source.util.TaskEvent;
+import com.sun.source.util.TaskListener;
+import com.sun.source.util.TreePath;
+import com.sun.source.util.TreePathScanner;
+import com.sun.source.util.Trees;
+
+import java.lang.reflect.Field;
+import java.util.List;
+
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.TypeMirror;
+import javax.tools.Diagnostic;
+
+/**
+ * Compile time detection of the dead posts: post(event) and postSticky(event) calls of the event bus which resolve to the catch-all
+ * post(Object) / postSticky(Object) methods because there is no subscriber for the (static) type of the event. The scanner runs after the
+ * attribution of every compiled class (the call sites refer to the generated event bus class, so their types are known only after the
+ * annotation processing) and reports each dead post at its call site.
+ *
+ * @author msagi (miklos.sagi@gmail.com)
+ */
+public class DeadPostScanner implements TaskListener {
+
+    /**
+     * The name of the post method.
+     */
+    private static final String METHOD_POST = "post";
+
+    /**
+     * The name of the sticky post method.
+     */
+    private static final String METHOD_POST_STICKY = "postSticky";
+
+    /**
+     * The name of the field holding the wrapped processing environment in the processing environment wrappers of Gradle (incremental
+     * annotation processing).
+     */
+    private static final String FIELD_DELEGATE = "delegate";
+
+    /**
+     * The maximum number of processing environment wrappers unwrapped.
+     */
+    private static final int MAX_WRAPPER_COUNT = 4;
+
+    /**
+     * The tree utilities of the compiler.
+     */
+    private final Trees trees;
+
+    /**
+     * The fully qualified name of the event bus class.
+     */
+    private final String eventBusClass;
+
+    /**
+     * The kind of the reported messages (warning or error).
+     */
+    private final Diagnostic.Kind messageKind;
+
+    /**
+     * Create new dead post scanner.
+     *
+     * @param trees         The tree utilities of the compiler.
+     * @param eventBusClass The fully qualified name of the event bus class.
+     * @param messageKind   The kind of the reported messages (warning or error).
+     */
+    private DeadPostScanner(final Trees trees, final String eventBusClass, final Diagnostic.Kind messageKind) {
+        this.trees = trees;
+        this.eventBusClass = eventBusClass;
+        this.messageKind = messageKind;
+    }
+
+    /**
+     * Install dead post scanner to the compiler of the given processing environment. The scanner is best effort: it uses the Compiler Tree
+     * API, so it is skipped if the processing environment is not the one of javac (another compiler, or a build tool which wraps the
+     * processing environment other than Gradle). The skipping is reported as a note, or as a warning if the dead posts are reported as
+     * errors (the build would pass unchecked otherwise).
+     *
+     * @param processingEnv The processing environment of the annotation processor.
+     * @param eventBusClass The fully qualified name of the event bus class.
+     * @param messageKind   The kind of the reported messages (warning or error).
+     */
+    public static void install(final ProcessingEnvironment processingEnv, final String eventBusClass, final Diagnostic.Kind messageKind) {
+        if (processingEnv == null) {
+            throw new IllegalArgumentException("processingEnv == null");
+        }
+        if (eventBusClass == null) {
+            throw new IllegalArgumentException("eventBusClass == null");
+        }
+        if (messageKind == null) {
+            throw new IllegalArgumentException("messageKind == null");
+        }
+        final JavacTask javacTask = getJavacTask(processingEnv);
+        if (javacTask == null) {
+            processingEnv.getMessager().printMessage(messageKind == Diagnostic.Kind.ERROR ? Diagnostic.Kind.WARNING : Diagnostic.Kind.NOTE,
+                    "FlashBusGenerator: dead post detection is skipped, the compiler does not provide the Compiler Tree API (processing "
+                            + "environment: " + processingEnv.getClass().getName() + ")");
+            return;
+        }
+        javacTask.addTaskListener(new DeadPostScanner(Trees.instance(javacTask), eventBusClass, messageKind));
+    }
+
+    /**
+     * Get the compiler task of the given processing environment. The wrappers of the processing environment of javac are unwrapped if they
+     * keep the wrapped processing environment in a 'delegate' field (e.g. the wrappers of the incremental annotation processing of Gradle).
+     *
+     * @param processingEnv The processing environment of the annotation processor.
+     * @return The compiler task, or null if the processing environment is not the one of javac.
+     */
+    private static JavacTask getJavacTask(final ProcessingEnvironment processingEnv) {
+        ProcessingEnvironment environment = processingEnv;
+        for (int wrapperCount = 0; environment != null && wrapperCount <= MAX_WRAPPER_COUNT; wrapperCount++) {
+            try {
+                return JavacTask.instance(environment);
+            } catch (IllegalArgumentException iae) {
+                environment = getDelegate(environment);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Get the processing environment wrapped by the given one.
+     *
+     * @param processingEnv The processing environment wrapper.
+     * @return The wrapped processing environment, or null if it is not a known wrapper (or the wrapped one is not accessible).
+     */
+    private static ProcessingEnvironment getDelegate(final ProcessingEnvironment processingEnv) {
+        for (Class<?> type = processingEnv.getClass(); type != null; type = type.getSuperclass()) {
+            try {
+                final Field field = type.getDeclaredField(FIELD_DELEGATE);
+                field.setAccessible(true);
+                final Object delegate = field.get(processingEnv);
+                return delegate instanceof ProcessingEnvironment ? (ProcessingEnvironment) delegate : null;
+            } catch (NoSuchFieldException nsfe) {
+                //declared by a superclass, if any
+            } catch (IllegalAccessException | RuntimeException e) {
+                //e.g. the module of the wrapper class does not open it
+                return null;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public void started(final TaskEvent taskEvent) {
+        //nothing to do
+    }
+
+    @Override
+    public void finished(final TaskEvent taskEvent) {
+        if (taskEvent.getKind() != TaskEvent.Kind.ANALYZE) {
+            return;
+        }
+        final TypeElement typeElement = taskEvent.getTypeElement();
+        if (typeElement == null || eventBusClass.contentEquals(typeElement.getQualifiedName())) {
+            return;
+        }
+        final TreePath classPath = trees.getPath(typeElement);
+        if (classPath == null) {
+            return;
+        }
+        final CompilationUnitTree compilationUnit = taskEvent.getCompilationUnit();
+        new TreePathScanner<Void, Void>() {
+            @Override
+            public Void visitMethodInvocation(final MethodInvocationTree methodInvocation, final Void parameter) {
+                checkMethodInvocation(getCurrentPath(), methodInvocation, compilationUnit);
+                return super.visitMethodInvocation(methodInvocation, parameter);
+            }
+        }.scan(classPath, null);
+    }
+
+    /**
+     * Report the method invocation if it is a dead post.
+     *
+     * @param methodInvocationPath The path of the method invocation.
+     * @param methodInvocation     The method invocation.
+     * @param compilationUnit      The compilation unit of the method invocation.
+     */
+    private void checkMethodInvocation(final TreePath methodInvocationPath, final MethodInvocationTree methodInvocation,
+                                       final CompilationUnitTree compilationUnit) {
+        final Element methodElement = trees.getElement(new TreePath(methodInvocationPath, methodInvocation.getMethodSelect()));
+        if (methodElement == null || methodElement.getKind() != ElementKind.METHOD) {
+            return;
+        }
+        final String methodName = methodElement.getSimpleName().toString();
+        if (!METHOD_POST.equals(methodName) && !METHOD_POST_STICKY.equals(methodName)) {
+            return;
+        }
+        final Element classElement = methodElement.getEnclosingElement();
+        if (!(classElement instanceof TypeElement) || !eventBusClass.contentEquals(((TypeElement) classElement).getQualifiedName())) {
+            return;
+        }
+        //the typed post methods of the event classes with subscribers are overloads, only the catch-all takes an Object
+        final List<? extends VariableElement> parameters = ((ExecutableElement) methodElement).getParameters();
+        if (parameters.size() != 1 || !Object.class.getName().equals(parameters.get(0).asType().toString())) {
+            return;
+        }
+        final TypeMirror eventType = trees.getTypeMirror(new TreePath(methodInvocationPath, methodInvocation.getArguments().get(0)));
+        trees.printMessage(messageKind, "FlashBusGenerator: dead post: no subscriber for event class " + eventType + ": the event is dropped by "
+                + methodName + "(Object) (subscribe to the event class or post it with a more specific static type)", methodInvocation,
+                compilationUnit);
+    }
+}
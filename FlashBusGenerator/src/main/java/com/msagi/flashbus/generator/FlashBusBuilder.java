@@ -15,12 +15,23 @@
  */
 package com.msagi.flashbus.generator;
 
-import com.msagi.flashbus.annotation.ThreadId;
+import com.msagi.flashbus.annotation.OverflowPolicy;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
 
 import java.util.ArrayList;
-import java.util.Enumeration;
-import java.util.Hashtable;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
 
 /**
  * Builder for the custom generated FlashBus event bus class.
@@ -40,6 +51,40 @@ public class FlashBusBuilder {
 
     private static final String MARKER_METHODS = "{Methods}";
 
+    /**
+     * The name of the event bus class declared by the template.
+     */
+    private static final String EVENT_BUS_CLASS = "FlashBus";
+
+    /**
+     * The default capacity of the ring buffer event queues.
+     */
+    public static final int DEFAULT_QUEUE_CAPACITY = 1024;
+
+    /**
+     * The maximum capacity of the ring buffer event queues (the capacity is rounded up to power of 2, and 2^30 is the largest int power of 2).
+     */
+    public static final int MAX_QUEUE_CAPACITY = 1 << 30;
+
+    /**
+     * The maximum number of cases of a switch in a shared dispatcher class (the larger switches are split so that the methods stay small
+     * enough to be compiled by the JIT compiler).
+     */
+    private static final int SWITCH_CHUNK_SIZE = 256;
+
+    /**
+     * The maximum number of dispatcher classes in a dispatcher shard class, and of subscriber methods in a shared dispatcher class (the
+     * dispatcher classes of the large event buses are split so that the constant pools of the generated classes stay under the limit of the
+     * class file format).
+     */
+    private static final int DISPATCHER_SHARD_SIZE = 512;
+
+    /**
+     * The maximum number of code fragments (event classes, channels, subscriber methods) in a generated method (the larger methods are split
+     * to parts so that they stay under the 64KB limit of the class file format and small enough to be compiled by the JIT compiler).
+     */
+    private static final int METHOD_PART_SIZE = 256;
+
     private StringBuilder logBuilder;
 
     private StringBuilder codeBuilderForPackage;
@@ -49,8 +94,27 @@ public class FlashBusBuilder {
     private StringBuilder codeBuilderForFields;
     private StringBuilder codeBuilderForMethods;
 
-    private Hashtable<String, ArrayList<Subscriber>> subscribersBySubscriberClass;
-    private Hashtable<String, ArrayList<Subscriber>> subscribersByEventClass;
+    /**
+     * The code of the methods generated before the code fragments of the split methods, in the order of the code (the code fragments are
+     * written to the writer as they are, without copying them to the code of the methods).
+     */
+    private List<StringBuilder> codeSegmentsForMethods;
+
+    /**
+     * The code of the dispatcher class being generated (the dispatcher classes are generated one by one when the code is written, and each is
+     * written to the writer before the next one is generated).
+     */
+    private StringBuilder codeBuilderForDispatcherClass;
+
+    //sorted by the keys so that the generated code does not depend on the order of processing
+    private TreeMap<String, ArrayList<Subscriber>> subscribersBySubscriberClass;
+    private TreeMap<String, ArrayList<Subscriber>> subscribersByEventClass;
+    private TreeMap<String, ArrayList<Subscriber>> subscribersByChannel;
+
+    /**
+     * The ids of the event classes (and primitive channels) by event key.
+     */
+    private Map<String, Integer> eventClassIds;
 
     /**
      * The package name of the generated event bus class.
@@ -67,6 +131,92 @@ public class FlashBusBuilder {
      */
     private String template;
 
+    /**
+     * The subscribed supertypes (super classes and interfaces) of the subscribed event classes.
+     */
+    private Map<String, List<String>> supertypesByEventClass = Collections.emptyMap();
+
+    /**
+     * Flag to use bounded ring buffer event queues for all the subscribers (not only for those with explicit queue capacity).
+     */
+    private boolean ringBufferQueues;
+
+    /**
+     * The capacity of the ring buffer event queues of the subscribers without explicit queue capacity.
+     */
+    private int defaultQueueCapacity = DEFAULT_QUEUE_CAPACITY;
+
+    /**
+     * Flag to deliver the events inline when posting on the thread of the subscriber.
+     */
+    private boolean sameThreadDelivery;
+
+    /**
+     * Flag to hold the subscriber instances by weak references.
+     */
+    private boolean weakSubscribers;
+
+    /**
+     * The template of the metrics classes (null if the metrics are not compiled in).
+     */
+    private String metricsTemplate;
+
+    /**
+     * The template of the latency tracking classes (null if the latency tracking is not compiled in).
+     */
+    private String latencyTemplate;
+
+    /**
+     * The maximum number of events a dispatcher delivers in one run() (0 for no limit).
+     */
+    private int drainBudgetEvents;
+
+    /**
+     * The maximum time a dispatcher delivers events in one run() (0 for no limit).
+     */
+    private long drainBudgetNanos;
+
+    /**
+     * Flag to generate shared dispatcher classes which select the subscriber method by handler id instead of one dispatcher class per
+     * subscriber method.
+     */
+    private boolean switchDispatchers;
+
+    /**
+     * The subscribers of the shared dispatcher classes by dispatcher class name, in the order of their handler ids (switch dispatchers only).
+     */
+    private TreeMap<String, ArrayList<Subscriber>> subscribersBySwitchDispatcherClass;
+
+    /**
+     * The handler ids of the subscribers in their shared dispatcher class (switch dispatchers only).
+     */
+    private Map<Subscriber, Integer> handlerIds;
+
+    /**
+     * The names of the shared dispatcher classes of the subscribers (switch dispatchers only).
+     */
+    private Map<Subscriber, String> switchDispatcherClassNames;
+
+    /**
+     * The subscribers in the order of their unique ids.
+     */
+    private List<Subscriber> subscribersByUid;
+
+    /**
+     * The names of the dispatcher shard classes (null unless the dispatcher classes of the subscriber methods are split to shard classes).
+     */
+    private List<String> dispatcherShardClassNames;
+
+    /**
+     * The code of the field initializers of the event bus class (null unless the field initializers are split to parts).
+     */
+    private List<StringBuilder> codeBuildersForFieldInitializers;
+
+    /**
+     * The number of the field initializers split to parts.
+     */
+    private int fieldInitializerCount;
+
     /**
      * Set event bus package name.
      * @param packageName The package name to use as event bus package.
@@ -107,242 +257,2382 @@ public class FlashBusBuilder {
 
 
     /**
-     * Pre-process subscribers and build internal 'subscribers by subscriber class' and 'subscribers by event class' mapping tables.
-     * These tables will be used to generate the subscriber class and event class related code segments of the custom generated event bus.
+     * Set the subscribed supertypes of the subscribed event classes (resolved in compile time). Posting an event delivers it to the
+     * subscribers of its supertypes too.
+     *
+     * @param supertypesByEventClass The subscribed supertypes by event class (ordered from the most specific supertype).
+     * @return The builder instance to support chaining.
      */
-    private void preProcessSubscribers() {
-
-        subscribersBySubscriberClass = new Hashtable<>();
-        subscribersByEventClass = new Hashtable<>();
-
-        for (final Subscriber subscriber : subscriberList) {
-
-            final String subscriberClass = subscriber.getSubscriberClass();
-            final String eventClass = subscriber.getEventClass();
-            final String method = subscriber.getMethod();
-
-            logBuilder
-                    .append("Analyzing subscriber (subscriber: ").append(subscriberClass).append(" event:").append(eventClass).append(" method:").append(method)
-                    .append(")\n");
-
-            //map subscriber class to subscribers
-            final ArrayList<Subscriber> subscriberListBySubscriberClass;
-            if (subscribersBySubscriberClass.get(subscriberClass) != null) {
-                subscriberListBySubscriberClass = subscribersBySubscriberClass.get(subscriberClass);
-            } else {
-                subscriberListBySubscriberClass = new ArrayList<>();
-                subscribersBySubscriberClass.put(subscriberClass, subscriberListBySubscriberClass);
-                logBuilder.append("New subscriber class list created (subscriber: ").append(subscriberClass).append("\n");
-            }
-            if (!subscriberListBySubscriberClass.contains(subscriber)) {
-                subscriberListBySubscriberClass.add(subscriber);
-
-                logBuilder
-                        .append("Subscriber added to 'subscriber list by ").append(subscriberClass).append(" subscriber class' list (subscriber:").append(subscriberClass)
-                        .append(" event:").append(eventClass).append(" method:").append(method).append(")\n");
-            }
-
-            //map event class to subscribers
-            final ArrayList<Subscriber> subscriberListByEventClass;
-            if (subscribersByEventClass.get(eventClass) != null) {
-                subscriberListByEventClass = subscribersByEventClass.get(eventClass);
-            } else {
-                subscriberListByEventClass = new ArrayList<>();
-                subscribersByEventClass.put(eventClass, subscriberListByEventClass);
-                logBuilder
-                        .append("New event class list created (event: ").append(eventClass).append("\n");
-            }
-            if (!subscriberListByEventClass.contains(subscriber)) {
-                subscriberListByEventClass.add(subscriber);
-
-                logBuilder
-                        .append("Subscriber added to 'subscriber list by ").append(eventClass).append(" event class' list (subscriber:").append(subscriberClass)
-                        .append(" event:").append(eventClass).append(" method:").append(method).append(")\n");
-            }
+    public FlashBusBuilder withEventClassHierarchy(final Map<String, List<String>> supertypesByEventClass) {
+        if (supertypesByEventClass == null) {
+            throw new IllegalArgumentException("supertypesByEventClass == null");
         }
+        this.supertypesByEventClass = supertypesByEventClass;
+        return this;
     }
 
     /**
-     * Generate subscriber class related code segments of the custom generated event bus (import for subscriber class, list of registered subscriber class instances,
-     * 'register', 'unregister' methods.
+     * Get the event classes the subscribers of which receive the events of the given event class.
+     *
+     * @param eventClass The posted event class.
+     * @return The event class and its subscribed supertypes (ordered from the most specific).
      */
-    private void generateSubscriberClassRelatedCode() {
-        final Enumeration<String> subscriberClasses = subscribersBySubscriberClass.keys();
-        int subscriberClassId = 0;
-        while (subscriberClasses.hasMoreElements()) {
-            final String subscriberClass = subscriberClasses.nextElement();
-            final ArrayList<Subscriber> subscribers = subscribersBySubscriberClass.get(subscriberClass);
-
-            codeBuilderForSubscriberClassImports.append("import ").append(subscriberClass).append(";\n");
-
-            //generate 'list of registered subscriber instances' for subscriber class
-            final String registeredSubscriberListName = "mRegisteredSubscribers" + subscriberClassId;
-            codeBuilderForFields
-                    .append("private final ArrayList<").append(subscriberClass).append("> ").append(registeredSubscriberListName).append(" = new ArrayList<>();\n");
-
-            // generate 'register' methods
-            logBuilder
-                    .append("Generating 'register' for ").append(subscriberClass).append("\n");
-
-            codeBuilderForMethods
-                    .append("public final void register(final ").append(subscriberClass).append(" subscriber) {\n")
-                    .append("\tif (subscriber == null) { return; }\n")
-                    .append("\tsynchronized(this) {\n")
-                    .append("\t\tif (").append(registeredSubscriberListName).append(".contains(subscriber)) { return; }\n")
-                    .append("\t\t").append(registeredSubscriberListName).append(".add(subscriber);\n");
-
-            for (final Subscriber subscriber : subscribers) {
+    private List<String> getDispatchedEventClasses(final String eventClass) {
+        final List<String> dispatchedEventClasses = new ArrayList<>();
+        dispatchedEventClasses.add(eventClass);
+        final List<String> supertypes = supertypesByEventClass.get(eventClass);
+        if (supertypes != null) {
+            dispatchedEventClasses.addAll(supertypes);
+        }
+        return dispatchedEventClasses;
+    }
 
-                final int dispatcherUid = subscriber.getUid();
-                final String dispatcherClassName = "Dispatcher" + dispatcherUid;
-                final String dispatcherVariableName = "dispatcher" + dispatcherUid;
-                final String eventClass = subscriber.getEventClass();
-                final int eventClassId = subscriber.getEventClassId();
+    /**
+     * Get the name of the dispatcher array field of the given event class and subscriber priority.
+     *
+     * @param eventClassId The id of the event class.
+     * @param priority     The priority of the subscribers.
+     * @return The name of the dispatcher array field.
+     */
+    private static String getDispatchersName(final int eventClassId, final int priority) {
+        if (priority == 0) {
+            return "mDispatchers" + eventClassId;
+        }
+        return "mDispatchers" + eventClassId + "Priority" + (priority < 0 ? "Minus" + -priority : String.valueOf(priority));
+    }
 
-                codeBuilderForMethods
-                        .append("\t\tfinal ").append(dispatcherClassName).append(" ").append(dispatcherVariableName).append(" = new ").append(dispatcherClassName)
-                        .append("(subscriber, ");
+    /**
+     * Get the name of the dispatcher slots field which maintains the given dispatcher array field.
+     *
+     * @param dispatchersName The name of the dispatcher array field.
+     * @return The name of the dispatcher slots field.
+     */
+    private static String getDispatcherSlotsName(final String dispatchersName) {
+        return "mDispatcherSlots" + dispatchersName.substring("mDispatchers".length());
+    }
 
-                if (ThreadId.MAIN == subscriber.getThreadId()) {
-                    codeBuilderForMethods.append("MAIN_HANDLER");
-                } else {
-                    codeBuilderForMethods.append("BACKGROUND_HANDLER");
+    /**
+     * Get the dispatcher array fields the events of the given event class are dispatched to, in the order of the delivery (descending
+     * priority, the more specific event class first within the same priority).
+     *
+     * @param eventClass The posted event class.
+     * @return The names of the dispatcher array fields mapped to the flag if the dispatchers can cancel the further delivery of the event.
+     */
+    private Map<String, Boolean> getDispatchersNames(final String eventClass) {
+        final TreeMap<Integer, Map<String, Boolean>> dispatchersNamesByPriority = new TreeMap<>(Collections.<Integer>reverseOrder());
+        for (final String dispatchedEventClass : getDispatchedEventClasses(eventClass)) {
+            final int dispatchedEventClassId = getEventClassIdByEventClass(dispatchedEventClass);
+            for (final Subscriber subscriber : subscribersByEventClass.get(dispatchedEventClass)) {
+                Map<String, Boolean> dispatchersNames = dispatchersNamesByPriority.get(subscriber.getPriority());
+                if (dispatchersNames == null) {
+                    dispatchersNames = new LinkedHashMap<>();
+                    dispatchersNamesByPriority.put(subscriber.getPriority(), dispatchersNames);
                 }
-
-                final String stickyEventVariableName = "stickyEvent" + dispatcherUid;
-
-                codeBuilderForMethods
-                        .append(");\n")
-                        .append("\t\tfinal ").append(eventClass).append(" ").append(stickyEventVariableName).append(" = getStickyEvent(").append(eventClass)
-                        .append(".class);\n")
-                        .append("\t\tif (").append(stickyEventVariableName).append(" != null) { ").append(dispatcherVariableName).append(".dispatch(")
-                        .append(stickyEventVariableName).append("); }\n")
-                        .append("\t\tmDispatcherList").append(eventClassId).append(".add(").append(dispatcherVariableName).append(");\n");
-
+                final String dispatchersName = getDispatchersName(dispatchedEventClassId, subscriber.getPriority());
+                dispatchersNames.put(dispatchersName, subscriber.isCancellable() || Boolean.TRUE.equals(dispatchersNames.get(dispatchersName)));
             }
+        }
+        final Map<String, Boolean> orderedDispatchersNames = new LinkedHashMap<>();
+        for (final Map<String, Boolean> dispatchersNames : dispatchersNamesByPriority.values()) {
+            orderedDispatchersNames.putAll(dispatchersNames);
+        }
+        return orderedDispatchersNames;
+    }
 
-            codeBuilderForMethods
-                    .append("\t}\n")
-                    .append("}\n\n");
+    /**
+     * Get the simple name of the given event class.
+     *
+     * @param eventClass The (qualified) event class.
+     * @return The simple name of the event class.
+     */
+    private static String getSimpleName(final String eventClass) {
+        return eventClass.substring(eventClass.lastIndexOf('.') + 1);
+    }
 
-            // generate 'unregister' methods
-            logBuilder
-                    .append("Generating 'unregister' for ").append(subscriberClass).append("\n");
+    /**
+     * Use bounded ring buffer event queues for all the subscribers.
+     *
+     * @param ringBufferQueues True to use ring buffer event queues for all the subscribers, false to use them only for subscribers with
+     *                         explicit queue capacity.
+     * @return The builder instance to support chaining.
+     */
+    public FlashBusBuilder withRingBufferQueues(final boolean ringBufferQueues) {
+        this.ringBufferQueues = ringBufferQueues;
+        return this;
+    }
 
-            codeBuilderForMethods
-                    .append("public final void unregister(final ").append(subscriberClass).append(" subscriber) {\n")
-                    .append("\tif (subscriber == null) { return; }\n")
-                    .append("\tsynchronized(this) {\n")
-                    .append("\t\tif (!").append(registeredSubscriberListName).append(".contains(subscriber)) { return; }\n")
-                    .append("\t\t").append(registeredSubscriberListName).append(".remove(subscriber);\n");
+    /**
+     * Set the capacity of the ring buffer event queues of the subscribers without explicit queue capacity.
+     *
+     * @param defaultQueueCapacity The default queue capacity.
+     * @return The builder instance to support chaining.
+     */
+    public FlashBusBuilder withDefaultQueueCapacity(final int defaultQueueCapacity) {
+        if (defaultQueueCapacity <= 0) {
+            throw new IllegalArgumentException("defaultQueueCapacity <= 0");
+        }
+        this.defaultQueueCapacity = defaultQueueCapacity;
+        return this;
+    }
 
-            for (final Subscriber subscriber : subscribers) {
+    /**
+     * Deliver the events inline when posting on the thread of the subscriber (if the subscriber has no events waiting for delivery).
+     *
+     * @param sameThreadDelivery True to compile in the same thread delivery, false to always queue the events.
+     * @return The builder instance to support chaining.
+     */
+    public FlashBusBuilder withSameThreadDelivery(final boolean sameThreadDelivery) {
+        this.sameThreadDelivery = sameThreadDelivery;
+        return this;
+    }
 
-                final int eventClassId = subscriber.getEventClassId();
-                final String dispatcherListName = "mDispatcherList" + eventClassId;
-                final String dispatcherListIteratorName = "dispatcherList" + eventClassId + "Iterator";
+    /**
+     * Hold the registered subscriber instances by weak references: the subscriber instances which are not unregistered are collected and
+     * their dispatchers are removed when posting or registering.
+     *
+     * @param weakSubscribers True to hold the subscriber instances by weak references, false to hold them by strong references.
+     * @return The builder instance to support chaining.
+     */
+    public FlashBusBuilder withWeakSubscribers(final boolean weakSubscribers) {
+        this.weakSubscribers = weakSubscribers;
+        return this;
+    }
 
-                codeBuilderForMethods
-                        .append("\t\tfinal Iterator<Dispatcher> ").append(dispatcherListIteratorName).append(" = ").append(dispatcherListName).append(".iterator();\n")
-                        .append("\t\twhile (").append(dispatcherListIteratorName).append(".hasNext()) {\n")
-                        .append("\t\t\tif (").append(dispatcherListIteratorName).append(".next().mSubscriber == subscriber) {\n")
-                        .append("\t\t\t\t").append(dispatcherListIteratorName).append(".remove();\n")
-                        //no 'break;' here since a subscriber can listen to the same event multiple times
-                        .append("\t\t\t}\n")
-                        .append("\t\t}\n");
+    /**
+     * Set the drain budget of the dispatchers: when a dispatcher has delivered the given number of events or spent the given time in one
+     * run(), it re-schedules itself on its executor so that the other work of the delivery thread (e.g. drawing the frames on the main
+     * thread) is not held up by a burst of events.
+     *
+     * @param drainBudgetEvents The maximum number of events to deliver in one run() (0 for no limit).
+     * @param drainBudgetNanos  The maximum time to deliver events in one run() in nanoseconds (0 for no limit).
+     * @return The builder instance to support chaining.
+     */
+    public FlashBusBuilder withDrainBudget(final int drainBudgetEvents, final long drainBudgetNanos) {
+        if (drainBudgetEvents < 0) {
+            throw new IllegalArgumentException("drainBudgetEvents < 0");
+        }
+        if (drainBudgetNanos < 0) {
+            throw new IllegalArgumentException("drainBudgetNanos < 0");
+        }
+        this.drainBudgetEvents = drainBudgetEvents;
+        this.drainBudgetNanos = drainBudgetNanos;
+        return this;
+    }
 
-            }
+    /**
+     * Get the condition which checks if the drain budget of run() is used up in a generated dispatcher method.
+     *
+     * @return The condition (using 'eventCount' and 'drainStartTime' local variables), or null if there is no drain budget.
+     */
+    private String getDrainBudgetCondition() {
+        if (drainBudgetEvents > 0 && drainBudgetNanos > 0) {
+            return "(eventCount == DRAIN_BUDGET_EVENTS || System.nanoTime() - drainStartTime >= DRAIN_BUDGET_NANOS)";
+        } else if (drainBudgetEvents > 0) {
+            return "eventCount == DRAIN_BUDGET_EVENTS";
+        } else if (drainBudgetNanos > 0) {
+            return "System.nanoTime() - drainStartTime >= DRAIN_BUDGET_NANOS";
+        }
+        return null;
+    }
 
-            codeBuilderForMethods
-                    .append("\t}\n")
-                    .append("}\n\n");
+    /**
+     * Generate shared dispatcher classes (one per dispatcher kind) which select the subscriber method by a handler id instead of one
+     * dispatcher class per subscriber method: fewer classes and methods to load, at the cost of a switch per delivery.
+     *
+     * @param switchDispatchers True to generate shared dispatcher classes, false to generate one dispatcher class per subscriber method.
+     * @return The builder instance to support chaining.
+     */
+    public FlashBusBuilder withSwitchDispatchers(final boolean switchDispatchers) {
+        this.switchDispatchers = switchDispatchers;
+        return this;
+    }
 
-            subscriberClassId++;
+    /**
+     * Compile in the metrics of the event bus (posted events by event class, delivered events, handler time and queue depth by subscriber
+     * method). Without metrics template no instrumentation code is generated.
+     *
+     * @param metricsTemplate The template of the metrics classes.
+     * @return The builder instance to support chaining.
+     */
+    public FlashBusBuilder withMetricsTemplate(final String metricsTemplate) {
+        if (metricsTemplate == null) {
+            throw new IllegalArgumentException("metricsTemplate == null");
         }
+        this.metricsTemplate = metricsTemplate;
+        return this;
     }
 
     /**
-     * Generate event class related code segments of the custom generated event bus (import for event class, list of dispatcher class instances,
-     * 'post', 'postSticky', dispatcher class and list of registered dispatcher instances.
+     * Compile in the latency tracking of the event bus: the events carry the time they were posted through the event queues, the time from
+     * posting to the invocation of the subscriber method and the time spent in the subscriber method are recorded to latency histograms by
+     * event class and thread, and the tracer of the event bus is called around the subscriber method invocations.
+     *
+     * @param latencyTemplate The template of the latency tracking classes.
+     * @return The builder instance to support chaining.
      */
-    private void generateEventClassRelatedCode() {
+    public FlashBusBuilder withLatencyTemplate(final String latencyTemplate) {
+        if (latencyTemplate == null) {
+            throw new IllegalArgumentException("latencyTemplate == null");
+        }
+        this.latencyTemplate = latencyTemplate;
+        return this;
+    }
 
-        final Enumeration<String> eventClasses = subscribersByEventClass.keys();
-        while (eventClasses.hasMoreElements()) {
-            final String eventClass = eventClasses.nextElement();
-            final int eventClassId = Subscriber.getEventClassIdByEventClass(eventClass);
-            final ArrayList<Subscriber> subscribers = subscribersByEventClass.get(eventClass);
+    /**
+     * Get the type of the event instances in the event queues of the dispatchers of the given event class.
+     *
+     * @param eventClass The event class.
+     * @return The event class, or the timed event class with latency tracking.
+     */
+    private String getQueuedEventClass(final String eventClass) {
+        return latencyTemplate == null ? eventClass : "TimedEvent<" + eventClass + ">";
+    }
 
-            logBuilder
-                    .append("Number of subscribers by event ").append(eventClass).append(": ").append(subscribers.size()).append("\n");
+    /**
+     * Get the expression which passes a posted event instance to the dispatchers.
+     *
+     * @param eventClass The event class.
+     * @param event      The expression of the event instance.
+     * @return The expression of the event instance, or the expression creating the timed event instance with latency tracking.
+     */
+    private String getQueuedEvent(final String eventClass, final String event) {
+        return latencyTemplate == null ? event : "new TimedEvent<" + eventClass + ">(" + event + ", System.nanoTime())";
+    }
+
+    /**
+     * Get the expression of the name of the subscriber method in a generated dispatcher method (latency tracking only).
+     *
+     * @return The name of the constant of the dispatcher class, or the name of the field of the shared dispatcher class.
+     */
+    private String getSubscriberMethodConstant() {
+        return switchDispatchers ? "mSubscriberMethod" : "SUBSCRIBER_METHOD";
+    }
+
+    /**
+     * Get the code which starts the instrumentation of a subscriber method invocation in a generated dispatcher method (metrics and latency
+     * tracking only).
+     *
+     * @param indent The indentation of the code.
+     * @param event  The expression of the delivered event instance(s).
+     * @return The code to store the start time to 'startTime' local variable and to call the tracer, or empty string without instrumentation.
+     */
+    private String getInstrumentationStart(final String indent, final String event) {
+        final StringBuilder codeBuilder = new StringBuilder();
+        if (metricsTemplate != null || latencyTemplate != null) {
+            codeBuilder
+                    .append(indent).append("final long startTime = System.nanoTime();\n");
+        }
+        if (latencyTemplate != null) {
+            codeBuilder
+                    .append(indent).append("final Tracer tracer = mLatency.getTracer();\n")
+                    .append(indent).append("if (tracer != null) { tracer.beginDelivery(").append(getSubscriberMethodConstant()).append(", ").append(event).append("); }\n");
+        }
+        return codeBuilder.toString();
+    }
+
+    /**
+     * Get the 'finally' block which finishes the instrumentation of a subscriber method invocation in a generated dispatcher method
+     * (metrics and latency tracking only). The block closes the 'catch' block of the subscriber method call.
+     *
+     * @param indent     The indentation of the 'try' statement.
+     * @param eventCount The expression of the number of delivered events.
+     * @param event      The expression of the delivered event instance(s).
+     * @return The code of the 'finally' block, or empty string without instrumentation.
+     */
+    private String getInstrumentationFinally(final String indent, final String eventCount, final String event) {
+        if (metricsTemplate == null && latencyTemplate == null) {
+            return "";
+        }
+        final StringBuilder codeBuilder = new StringBuilder()
+                .append(indent).append("} finally {\n")
+                .append(indent).append("\tfinal long handlerTime = System.nanoTime() - startTime;\n");
+        if (metricsTemplate != null) {
+            codeBuilder
+                    .append(indent).append("\tmMetrics.recordDelivery(").append(eventCount).append(", handlerTime);\n");
+        }
+        if (latencyTemplate != null) {
+            codeBuilder
+                    .append(indent).append("\tmLatency.recordHandlerTime(handlerTime);\n")
+                    .append(indent).append("\tif (tracer != null) { tracer.endDelivery(").append(getSubscriberMethodConstant()).append(", ").append(event).append("); }\n");
+        }
+        return codeBuilder.toString();
+    }
+
+    /**
+     * Get the code which unwraps the delivered event instance from the timed event instance in a generated dispatcher method (latency
+     * tracking only).
+     *
+     * @param eventClass The event class.
+     * @param indent     The indentation of the code.
+     * @return The code to load the event instance to 'event' local variable, or empty string without latency tracking.
+     */
+    private String getTimedEventLoad(final String eventClass, final String indent) {
+        if (latencyTemplate == null) {
+            return "";
+        }
+        return indent + "final " + eventClass + " event = timedEvent.mEvent;\n";
+    }
+
+    /**
+     * Get the code which records the time from posting to the invocation of the subscriber method in a generated dispatcher method
+     * (latency tracking only).
+     *
+     * @param indent    The indentation of the code.
+     * @param startTime The expression of the invocation time.
+     * @return The code to record the queue wait time of 'timedEvent' local variable, or empty string without latency tracking.
+     */
+    private String getQueueWaitRecording(final String indent, final String startTime) {
+        if (latencyTemplate == null) {
+            return "";
+        }
+        return indent + "mLatency.recordQueueWait(" + startTime + " - timedEvent.mPostTime);\n";
+    }
+
+    /**
+     * Get the name of the latency recorder field of the given event class and thread.
+     *
+     * @param eventClassId The id of the event class.
+     * @param subscriber   The subscriber delivered on the thread.
+     * @return The name of the latency recorder field.
+     */
+    private static String getLatencyRecorderName(final int eventClassId, final Subscriber subscriber) {
+        final String thread = subscriber.getThreadId().name();
+        return "mLatency" + eventClassId + thread.charAt(0) + thread.substring(1).toLowerCase();
+    }
+
+    /**
+     * Get the code which loads the subscriber instance in a generated dispatcher method (weak subscriber mode only).
+     *
+     * @param subscriberClass The subscriber class.
+     * @param indent          The indentation of the code.
+     * @param exitStatement   The statement to exit the method with if the subscriber instance is collected.
+     * @return The code to load the subscriber instance to 'subscriber' local variable, or empty string in strong subscriber mode.
+     */
+    private String getSubscriberLoad(final String subscriberClass, final String indent, final String exitStatement) {
+        if (!weakSubscribers) {
+            return "";
+        }
+        final String cast = "Object".equals(subscriberClass) ? "" : "(" + subscriberClass + ") ";
+        return indent + "final " + subscriberClass + " subscriber = " + cast + "mSubscriberReference.get();\n"
+                + indent + "if (subscriber == null) { " + exitStatement + " }\n";
+    }
+
+    /**
+     * Get the expression of the subscriber instance in a generated dispatcher method.
+     *
+     * @return The expression of the subscriber instance.
+     */
+    private String getSubscriberReceiver() {
+        return weakSubscribers ? "subscriber" : "mSubscriber";
+    }
+
+    /**
+     * Generate the code which removes the dispatchers of a registration record from the dispatcher arrays.
+     *
+     * @param codeBuilder      The code builder to append the code to.
+     * @param subscribers      The subscribers of the subscriber class in the order of the registration record.
+     * @param registrationName The expression of the dispatcher array of the registration record.
+     * @param indent           The indentation of the code.
+     */
+    private static void appendDispatcherRemovals(final StringBuilder codeBuilder, final List<Subscriber> subscribers, final String registrationName,
+                                                 final String indent) {
+        for (int index = 0; index < subscribers.size(); index++) {
+            final Subscriber subscriber = subscribers.get(index);
+            final String dispatchersName = getDispatchersName(subscriber.getEventClassId(), subscriber.getPriority());
+
+            codeBuilder
+                    .append(indent).append(dispatchersName).append(" = ").append(getDispatcherSlotsName(dispatchersName)).append(".remove(")
+                    .append(registrationName).append("[").append(index).append("]);\n");
+        }
+    }
+
+    /**
+     * Get the ring buffer capacity of the given subscriber.
+     *
+     * @param subscriber The subscriber to get the capacity for.
+     * @return The capacity (power of 2) or 0 if the subscriber uses unbounded event queue.
+     */
+    private int getRingBufferCapacity(final Subscriber subscriber) {
+        if (subscriber.isConflate() || subscriber.isPosting()) {
+            return 0;
+        }
+        int capacity = subscriber.getQueueCapacity();
+        //the primitive channels always have (primitive) ring buffer value queues
+        if (capacity == 0 && (ringBufferQueues || subscriber.isPrimitive() || subscriber.getOverflowPolicy() != OverflowPolicy.BLOCK)) {
+            capacity = defaultQueueCapacity;
+        }
+        if (capacity == 0) {
+            return 0;
+        }
+        int powerOfTwo = 1;
+        while (powerOfTwo < capacity) {
+            powerOfTwo <<= 1;
+        }
+        return powerOfTwo;
+    }
+
+    /**
+     * Get the name of the RingBufferDispatcher helper method which implements the given overflow policy.
+     *
+     * @param overflowPolicy The overflow policy to get the helper method for.
+     * @return The name of the helper method.
+     */
+    private static String getEnqueueMethod(final OverflowPolicy overflowPolicy) {
+        switch (overflowPolicy) {
+            case DROP_OLDEST:
+                return "enqueueOrDropOldest";
+            case DROP_NEWEST:
+                return "enqueueOrDrop";
+            case FAIL:
+                return "enqueueOrFail";
+            default:
+                return "enqueueOrWait";
+        }
+    }
+
+    /**
+     * Check if any of the given subscribers has bounded event queue (posting to a full bounded event queue can throw
+     * IllegalStateException: FAIL policy, or BLOCK policy on the delivery thread of the subscriber).
+     *
+     * @param subscribers The subscribers to check.
+     * @return True if any of the subscribers has bounded event queue, false otherwise.
+     */
+    private boolean hasBoundedEventQueue(final List<Subscriber> subscribers) {
+        for (final Subscriber subscriber : subscribers) {
+            if (getRingBufferCapacity(subscriber) > 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Get the subscribers the events of the given event class are dispatched to (the subscribers of the event class and its subscribed
+     * supertypes).
+     *
+     * @param eventClass The posted event class.
+     * @return The subscribers the events are dispatched to.
+     */
+    private List<Subscriber> getDispatchedSubscribers(final String eventClass) {
+        final List<Subscriber> dispatchedSubscribers = new ArrayList<>();
+        for (final String dispatchedEventClass : getDispatchedEventClasses(eventClass)) {
+            dispatchedSubscribers.addAll(subscribersByEventClass.get(dispatchedEventClass));
+        }
+        return dispatchedSubscribers;
+    }
+
+    /**
+     * Get the event classes the sticky events of which are delivered to the subscribers of the given event class on registration (like the
+     * posted events, the sticky events of a subscribed subtype are delivered to the subscribers of its supertypes too).
+     *
+     * @param eventClass The event class of the subscriber.
+     * @return The event class and its subscribed subtypes (in the order of the event classes).
+     */
+    private List<String> getStickyEventClasses(final String eventClass) {
+        final List<String> stickyEventClasses = new ArrayList<>();
+        stickyEventClasses.add(eventClass);
+        for (final String subscribedEventClass : subscribersByEventClass.keySet()) {
+            final List<String> supertypes = supertypesByEventClass.get(subscribedEventClass);
+            if (supertypes != null && supertypes.contains(eventClass)) {
+                stickyEventClasses.add(subscribedEventClass);
+            }
+        }
+        return stickyEventClasses;
+    }
+
+    /**
+     * Append the loop which dispatches the posted event (or value) to every dispatcher of the given dispatcher array.
+     *
+     * @param codeBuilder        The code builder to append to.
+     * @param indent             The indentation of the loop.
+     * @param dispatchersName    The name of the dispatcher array field.
+     * @param dispatchCall       The dispatch call on the 'dispatcher' local (returns true if the subscriber cancelled the delivery).
+     * @param cancelStatement    The statement to run if the delivery is cancelled (null if the dispatchers can not cancel the delivery).
+     * @param isFailureCollected True to collect the first failure of the fan-out in the 'failure' local instead of throwing it at once.
+     */
+    private static void appendFanOut(final StringBuilder codeBuilder, final String indent, final String dispatchersName, final String dispatchCall,
+                                     final String cancelStatement, final boolean isFailureCollected) {
+        final String localDispatchersName = "dispatchers" + dispatchersName.substring("mDispatchers".length());
+        codeBuilder
+                .append(indent).append("final Dispatcher[] ").append(localDispatchersName).append(" = ").append(dispatchersName).append(";\n")
+                .append(indent).append("for (int index = 0; index < ").append(localDispatchersName).append(".length; index++) {\n")
+                .append(indent).append("\tfinal Dispatcher dispatcher = ").append(localDispatchersName).append("[index];\n");
+        if (isFailureCollected) {
+            codeBuilder
+                    .append(indent).append("\tif (dispatcher != null) {\n");
+            if (cancelStatement != null) {
+                //the array has subscribers which can cancel the further delivery of the event (the collected failure is thrown anyway)
+                codeBuilder
+                        .append(indent).append("\t\tboolean isCancelled = false;\n")
+                        .append(indent).append("\t\ttry {\n")
+                        .append(indent).append("\t\t\tisCancelled = ").append(dispatchCall).append(";\n");
+            } else {
+                codeBuilder
+                        .append(indent).append("\t\ttry {\n")
+                        .append(indent).append("\t\t\t").append(dispatchCall).append(";\n");
+            }
+            codeBuilder
+                    .append(indent).append("\t\t} catch (IllegalStateException ise) {\n")
+                    .append(indent).append("\t\t\tif (failure == null) { failure = ise; }\n")
+                    .append(indent).append("\t\t}\n");
+            if (cancelStatement != null) {
+                codeBuilder
+                        .append(indent).append("\t\tif (isCancelled) { if (failure != null) { throw failure; } ").append(cancelStatement).append(" }\n");
+            }
+            codeBuilder
+                    .append(indent).append("\t}\n");
+        } else if (cancelStatement != null) {
+            //the array has subscribers which can cancel the further delivery of the event
+            codeBuilder
+                    .append(indent).append("\tif (dispatcher != null && ").append(dispatchCall).append(") { ").append(cancelStatement).append(" }\n");
+        } else {
+            codeBuilder
+                    .append(indent).append("\tif (dispatcher != null) { ").append(dispatchCall).append("; }\n");
+        }
+        codeBuilder
+                .append(indent).append("}\n");
+    }
+
+    /**
+     * Get the name of the event bus executor field which delivers the events on the thread of the given subscriber.
+     *
+     * @param subscriber The subscriber to get the executor for.
+     * @return The name of the executor field.
+     */
+    private static String getExecutor(final Subscriber subscriber) {
+        switch (subscriber.getThreadId()) {
+            case BACKGROUND:
+                return "BACKGROUND_EXECUTOR";
+            case ASYNC:
+                return "ASYNC_EXECUTOR";
+            case POSTING:
+                return "POSTING_EXECUTOR";
+            default:
+                return "MAIN_EXECUTOR";
+        }
+    }
+
+    /**
+     * Get the name of the dispatcher base class of the given subscriber.
+     *
+     * @param subscriber The subscriber to get the dispatcher base class for.
+     * @return The name of the dispatcher base class.
+     */
+    private String getDispatcherSuperClassName(final Subscriber subscriber) {
+        if (subscriber.isPrimitive()) {
+            return "PrimitiveDispatcher";
+        } else if (subscriber.isPosting()) {
+            return "PostingDispatcher";
+        } else if (subscriber.isConflate()) {
+            return "ConflatingDispatcher";
+        } else if (getRingBufferCapacity(subscriber) > 0) {
+            return "RingBufferDispatcher";
+        }
+        return "QueueDispatcher";
+    }
+
+    /**
+     * Get the name of the dispatcher class of the given subscriber.
+     *
+     * @param subscriber The subscriber to get the dispatcher class for.
+     * @return The name of the dispatcher class of the subscriber method, or the name of the shared dispatcher class of the subscriber methods of
+     * the same kind (switch dispatchers only).
+     */
+    private String getDispatcherClassName(final Subscriber subscriber) {
+        if (!switchDispatchers) {
+            return "Dispatcher" + subscriber.getUid();
+        }
+        return switchDispatcherClassNames.get(subscriber);
+    }
+
+    /**
+     * Get the name of the first shared dispatcher class of the subscriber methods of the same kind as the given subscriber (switch dispatchers
+     * only). The further shared dispatcher classes of the same kind are numbered (large event buses only).
+     *
+     * @param subscriber The subscriber to get the shared dispatcher class for.
+     * @return The name of the shared dispatcher class.
+     */
+    private String getSwitchDispatcherClassName(final Subscriber subscriber) {
+        //the primitive channels share one dispatcher class (the value queue is created by capacity)
+        if (subscriber.isPrimitive()) {
+            return "SwitchPrimitiveDispatcher";
+        }
+        return "Switch" + (subscriber.isBatch() ? "Batch" : "") + getDispatcherSuperClassName(subscriber);
+    }
+
+    /**
+     * Get the name of the dispatcher shard class of the given subscriber (large event buses with dispatcher class per subscriber method only).
+     *
+     * @param subscriber The subscriber to get the dispatcher shard class for.
+     * @return The name of the dispatcher shard class.
+     */
+    private static String getDispatcherShardClassName(final Subscriber subscriber) {
+        return "DispatcherShard" + subscriber.getUid() / DISPATCHER_SHARD_SIZE;
+    }
+
+    /**
+     * Get the name of the subscriber method of the given subscriber (used by the metrics and the latency tracking).
+     *
+     * @param subscriber The subscriber.
+     * @return The name of the subscriber method (subscriber class, method name and event class).
+     */
+    private static String getSubscriberMethodName(final Subscriber subscriber) {
+        return subscriber.getSubscriberClass() + "." + subscriber.getMethod() + "(" + subscriber.getEventClass() + ")";
+    }
+
+    /**
+     * Get the expression which calls the subscriber method in a generated dispatcher method.
+     *
+     * @param subscriber The subscriber.
+     * @param argument   The expression of the argument of the subscriber method.
+     * @return The expression of the call of the subscriber method, or the call of the 'invoke' method of the shared dispatcher class (switch
+     * dispatchers only).
+     */
+    private String getInvocation(final Subscriber subscriber, final String argument) {
+        if (switchDispatchers) {
+            return "invoke(" + getSubscriberReceiver() + ", " + argument + ")";
+        }
+        return getSubscriberReceiver() + "." + subscriber.getMethod() + "(" + argument + ")";
+    }
+
+    /**
+     * Get the event class id for the given event class.
+     *
+     * @param eventClass The event class (or the event key of the primitive channel) to get the id for.
+     * @return The unique event class id.
+     */
+    private int getEventClassIdByEventClass(final String eventClass) {
+        final Integer eventClassId = eventClassIds.get(eventClass);
+        if (eventClassId == null) {
+            throw new IllegalArgumentException("Unknown event class: " + eventClass);
+        }
+        return eventClassId;
+    }
+
+    /**
+     * Pre-process subscribers and build internal 'subscribers by subscriber class' and 'subscribers by event class' mapping tables.
+     * These tables will be used to generate the subscriber class and event class related code segments of the custom generated event bus.
+     * The subscribers and the event classes are numbered in sorted order, so the same subscribers always produce the same code (regardless
+     * of the order of processing and of the earlier builds in the same compiler process).
+     */
+    private void preProcessSubscribers() {
+
+        subscribersBySubscriberClass = new TreeMap<>();
+        subscribersByEventClass = new TreeMap<>();
+        subscribersByChannel = new TreeMap<>();
+
+        //the same subscriber instance is processed once (identity set instead of list lookups, linear in the number of subscribers)
+        final Set<Subscriber> uniqueSubscribers = Collections.newSetFromMap(new IdentityHashMap<Subscriber, Boolean>());
+        final List<Subscriber> sortedSubscribers = new ArrayList<>(subscriberList.size());
+        for (final Subscriber subscriber : subscriberList) {
+            if (uniqueSubscribers.add(subscriber)) {
+                sortedSubscribers.add(subscriber);
+            }
+        }
+        Collections.sort(sortedSubscribers);
+        final Set<String> eventKeys = new TreeSet<>();
+        for (final Subscriber subscriber : sortedSubscribers) {
+            eventKeys.add(subscriber.getEventKey());
+        }
+        eventClassIds = new HashMap<>();
+        for (final String eventKey : eventKeys) {
+            eventClassIds.put(eventKey, eventClassIds.size());
+        }
+        subscribersBySwitchDispatcherClass = new TreeMap<>();
+        handlerIds = new HashMap<>();
+        switchDispatcherClassNames = new HashMap<>();
+        final Map<String, Integer> switchDispatcherCounts = new HashMap<>();
+        for (int index = 0; index < sortedSubscribers.size(); index++) {
+            final Subscriber subscriber = sortedSubscribers.get(index);
+            subscriber.assignIds(index, eventClassIds.get(subscriber.getEventKey()));
+            if (switchDispatchers) {
+                //the handler ids are dense in each shared dispatcher class (table switch), a new shared dispatcher class of the same kind is
+                //started after every DISPATCHER_SHARD_SIZE subscriber methods
+                final String switchDispatcherClassName = getSwitchDispatcherClassName(subscriber);
+                final Integer switchDispatcherCount = switchDispatcherCounts.get(switchDispatcherClassName);
+                final int switchDispatcherIndex = switchDispatcherCount == null ? 0 : switchDispatcherCount;
+                switchDispatcherCounts.put(switchDispatcherClassName, switchDispatcherIndex + 1);
+                final int shard = switchDispatcherIndex / DISPATCHER_SHARD_SIZE;
+                final String dispatcherClassName = shard == 0 ? switchDispatcherClassName : switchDispatcherClassName + shard;
+                switchDispatcherClassNames.put(subscriber, dispatcherClassName);
+
+                ArrayList<Subscriber> subscriberListByDispatcherClass = subscribersBySwitchDispatcherClass.get(dispatcherClassName);
+                if (subscriberListByDispatcherClass == null) {
+                    subscriberListByDispatcherClass = new ArrayList<>();
+                    subscribersBySwitchDispatcherClass.put(dispatcherClassName, subscriberListByDispatcherClass);
+                }
+                handlerIds.put(subscriber, subscriberListByDispatcherClass.size());
+                subscriberListByDispatcherClass.add(subscriber);
+            }
+        }
+        subscribersByUid = sortedSubscribers;
+
+        //the field initializers of the large event buses are split to parts
+        codeBuildersForFieldInitializers = sortedSubscribers.size() > DISPATCHER_SHARD_SIZE ? new ArrayList<StringBuilder>() : null;
+        fieldInitializerCount = 0;
+
+        //the dispatcher classes of the large event buses are generated into shard classes (one dispatcher class per subscriber method only)
+        dispatcherShardClassNames = null;
+        if (!switchDispatchers && sortedSubscribers.size() > DISPATCHER_SHARD_SIZE) {
+            dispatcherShardClassNames = new ArrayList<>();
+            for (int shard = 0; shard * DISPATCHER_SHARD_SIZE < sortedSubscribers.size(); shard++) {
+                dispatcherShardClassNames.add(getDispatcherShardClassName(sortedSubscribers.get(shard * DISPATCHER_SHARD_SIZE)));
+            }
+        }
+
+        for (final Subscriber subscriber : sortedSubscribers) {
+
+            final String subscriberClass = subscriber.getSubscriberClass();
+            final String eventClass = subscriber.getEventClass();
+            final String method = subscriber.getMethod();
+
+            logBuilder
+                    .append("Analyzing subscriber (subscriber: ").append(subscriberClass).append(" event:").append(eventClass).append(" method:").append(method)
+                    .append(")\n");
+
+            //map subscriber class to subscribers
+            final ArrayList<Subscriber> subscriberListBySubscriberClass;
+            if (subscribersBySubscriberClass.get(subscriberClass) != null) {
+                subscriberListBySubscriberClass = subscribersBySubscriberClass.get(subscriberClass);
+            } else {
+                subscriberListBySubscriberClass = new ArrayList<>();
+                subscribersBySubscriberClass.put(subscriberClass, subscriberListBySubscriberClass);
+                logBuilder.append("New subscriber class list created (subscriber: ").append(subscriberClass).append("\n");
+            }
+            subscriberListBySubscriberClass.add(subscriber);
+
+            logBuilder
+                    .append("Subscriber added to 'subscriber list by ").append(subscriberClass).append(" subscriber class' list (subscriber:").append(subscriberClass)
+                    .append(" event:").append(eventClass).append(" method:").append(method).append(")\n");
+
+            //map primitive channel to subscribers
+            if (subscriber.isPrimitive()) {
+                final String channelKey = subscriber.getEventKey();
+                ArrayList<Subscriber> subscriberListByChannel = subscribersByChannel.get(channelKey);
+                if (subscriberListByChannel == null) {
+                    subscriberListByChannel = new ArrayList<>();
+                    subscribersByChannel.put(channelKey, subscriberListByChannel);
+                    logBuilder
+                            .append("New channel list created (channel: ").append(channelKey).append("\n");
+                }
+                subscriberListByChannel.add(subscriber);
+                continue;
+            }
+
+            //map event class to subscribers
+            final ArrayList<Subscriber> subscriberListByEventClass;
+            if (subscribersByEventClass.get(eventClass) != null) {
+                subscriberListByEventClass = subscribersByEventClass.get(eventClass);
+            } else {
+                subscriberListByEventClass = new ArrayList<>();
+                subscribersByEventClass.put(eventClass, subscriberListByEventClass);
+                logBuilder
+                        .append("New event class list created (event: ").append(eventClass).append("\n");
+            }
+            subscriberListByEventClass.add(subscriber);
+
+            logBuilder
+                    .append("Subscriber added to 'subscriber list by ").append(eventClass).append(" event class' list (subscriber:").append(subscriberClass)
+                    .append(" event:").append(eventClass).append(" method:").append(method).append(")\n");
+        }
+    }
+
+    /**
+     * Generate subscriber class related code segments of the custom generated event bus (import for subscriber class, registrations of subscriber class instances,
+     * 'register', 'unregister' methods.
+     */
+    private void generateSubscriberClassRelatedCode() {
+        //the removals of the collected subscriber instances by subscriber class, split to parts of about METHOD_PART_SIZE subscriber methods
+        final List<StringBuilder> codeBuildersForPruning = new ArrayList<>();
+        final List<Integer> pruningPartFirstSubscriberClassIds = new ArrayList<>();
+        int pruningPartSubscriberCount = 0;
+
+        int subscriberClassId = 0;
+        for (final String subscriberClass : subscribersBySubscriberClass.keySet()) {
+            final ArrayList<Subscriber> subscribers = subscribersBySubscriberClass.get(subscriberClass);
+
+            codeBuilderForSubscriberClassImports.append("import ").append(subscriberClass).append(";\n");
+
+            //generate 'registrations' field for subscriber class (registered subscriber instances mapped by identity to their dispatchers)
+            final String registrationsName = "mRegistrations" + subscriberClassId;
+            if (weakSubscribers) {
+                appendField("private final", "SubscriberReferences", registrationsName, "new SubscriberReferences()");
+            } else {
+                appendField("private final", "IdentityHashMap<" + subscriberClass + ", Dispatcher[]>", registrationsName, "new IdentityHashMap<>()");
+            }
+
+            // generate 'register' methods
+            logBuilder
+                    .append("Generating 'register' for ").append(subscriberClass).append("\n");
+
+            codeBuilderForMethods
+                    .append("public final void register(final ").append(subscriberClass).append(" subscriber) {\n")
+                    .append("\tif (subscriber == null) { return; }\n")
+                    .append("\tsynchronized(this) {\n");
+            if (weakSubscribers) {
+                codeBuilderForMethods
+                        .append("\t\tpruneCollectedSubscribers(mCollectedSubscribers.poll());\n")
+                        .append("\t\tif (").append(registrationsName).append(".get(subscriber) != null) { return; }\n")
+                        .append("\t\tfinal SubscriberReference registration = new SubscriberReference(subscriber, ").append(subscriberClassId)
+                        .append(", mCollectedSubscribers);\n");
+            } else {
+                codeBuilderForMethods
+                        .append("\t\tif (").append(registrationsName).append(".containsKey(subscriber)) { return; }\n");
+            }
+
+            //the registration of the subscriber classes with many subscriber methods is split to parts (the parts fill in the dispatchers of
+            //the registration record)
+            final boolean isRegisterSplit = subscribers.size() > METHOD_PART_SIZE;
+            final List<StringBuilder> codeBuildersForRegistration = new ArrayList<>();
+            for (int index = 0; index < subscribers.size(); index++) {
+                final Subscriber subscriber = subscribers.get(index);
+                final StringBuilder codeBuilderForRegistration = getCodeBuilderForPart(codeBuildersForRegistration, index);
+
+                final int dispatcherUid = subscriber.getUid();
+                final String dispatcherClassName = getDispatcherClassName(subscriber);
+                final String dispatcherVariableName = "dispatcher" + dispatcherUid;
+                final String eventClass = subscriber.getEventClass();
+                final int eventClassId = subscriber.getEventClassId();
+                final int ringBufferCapacity = getRingBufferCapacity(subscriber);
+
+                if (dispatcherShardClassNames != null) {
+                    //the dispatcher is created by its shard class (the event bus class does not refer to the dispatcher classes), typed by the
+                    //event class so that the sticky event is dispatched unchecked warning free
+                    final String queuedEventClass = subscriber.isPrimitive() ? "Void" : getQueuedEventClass(eventClass);
+                    codeBuilderForRegistration
+                            .append("\t\tfinal Dispatcher<?, ").append(queuedEventClass).append("> ").append(dispatcherVariableName).append(" = ")
+                            .append(getDispatcherShardClassName(subscriber)).append(".<").append(queuedEventClass).append(">create(").append(dispatcherUid)
+                            .append(weakSubscribers ? ", null, registration, " : ", subscriber, null, ").append(getExecutor(subscriber))
+                            .append(ringBufferCapacity > 0 ? ", mOverflowCount" + eventClassId : ", null");
+                    if (metricsTemplate != null) {
+                        codeBuilderForRegistration
+                                .append(subscriber.isPrimitive() ? ", null" : ", mDispatcherMetrics" + dispatcherUid);
+                    }
+                    if (latencyTemplate != null) {
+                        codeBuilderForRegistration
+                                .append(subscriber.isPrimitive() ? ", null" : ", " + getLatencyRecorderName(eventClassId, subscriber));
+                    }
+                } else {
+                    //typed by the dispatcher class (the shared dispatcher classes take Object events, so the sticky event is dispatched unchecked
+                    //free in both layouts)
+                    codeBuilderForRegistration
+                            .append("\t\tfinal ").append(dispatcherClassName).append(" ").append(dispatcherVariableName)
+                            .append(" = new ").append(dispatcherClassName).append(weakSubscribers ? "(null, registration, " : "(subscriber, null, ");
+
+                    codeBuilderForRegistration.append(getExecutor(subscriber));
+                    if (switchDispatchers) {
+                        //the handler id selects the subscriber method, the capacity and the overflow policy are passed to the shared dispatcher
+                        codeBuilderForRegistration.append(", ").append(handlerIds.get(subscriber));
+                        if (ringBufferCapacity > 0 || subscriber.isPrimitive()) {
+                            codeBuilderForRegistration.append(", ").append(ringBufferCapacity).append(", ").append(subscriber.getOverflowPolicy().ordinal());
+                        }
+                    }
+                    if (ringBufferCapacity > 0) {
+                        codeBuilderForRegistration.append(", mOverflowCount").append(eventClassId);
+                    } else if (switchDispatchers && subscriber.isPrimitive()) {
+                        codeBuilderForRegistration.append(", null");
+                    }
+                    if (metricsTemplate != null && !subscriber.isPrimitive()) {
+                        codeBuilderForRegistration.append(", mDispatcherMetrics").append(dispatcherUid);
+                    }
+                    if (latencyTemplate != null && !subscriber.isPrimitive()) {
+                        codeBuilderForRegistration.append(", ").append(getLatencyRecorderName(eventClassId, subscriber));
+                        if (switchDispatchers) {
+                            codeBuilderForRegistration.append(", \"").append(getSubscriberMethodName(subscriber)).append("\"");
+                        }
+                    }
+                }
+                codeBuilderForRegistration
+                        .append(");\n");
+                if (isRegisterSplit) {
+                    codeBuilderForRegistration
+                            .append("\t\tdispatchers[").append(index).append("] = ").append(dispatcherVariableName).append(";\n");
+                }
+
+                final String dispatchersName = getDispatchersName(eventClassId, subscriber.getPriority());
+
+                if (subscriber.isPrimitive()) {
+                    //no sticky values on the primitive channels
+                    codeBuilderForRegistration
+                            .append("\t\t").append(dispatchersName).append(" = ").append(getDispatcherSlotsName(dispatchersName)).append(".add(")
+                            .append(dispatcherVariableName).append(");\n");
+                    continue;
+                }
+                //the sticky events of the event class and of its subscribed subtypes are delivered before the dispatcher is added
+                for (final String stickyEventClass : getStickyEventClasses(eventClass)) {
+                    final int stickyEventClassId = getEventClassIdByEventClass(stickyEventClass);
+                    final String stickyEventVariableName = stickyEventClassId == eventClassId ? "stickyEvent" + dispatcherUid
+                            : "stickyEvent" + dispatcherUid + "_" + stickyEventClassId;
+                    codeBuilderForRegistration
+                            .append("\t\tfinal ").append(stickyEventClass).append(" ").append(stickyEventVariableName).append(" = mStickyEvent")
+                            .append(stickyEventClassId).append(";\n")
+                            .append("\t\tif (").append(stickyEventVariableName).append(" != null) { ").append(dispatcherVariableName).append(".dispatch(")
+                            .append(getQueuedEvent(switchDispatchers ? "Object" : eventClass, stickyEventVariableName)).append("); }\n");
+                }
+                codeBuilderForRegistration
+                        .append("\t\t").append(dispatchersName).append(" = ").append(getDispatcherSlotsName(dispatchersName)).append(".add(")
+                        .append(dispatcherVariableName).append(");\n");
+
+            }
+
+            //the registration record: the dispatchers of the subscriber instance in the order of the subscriber methods
+            final StringBuilder dispatcherArrayBuilder = new StringBuilder();
+            final String registerPartName = "register" + subscriberClassId + "_";
+            final String registrationArgument = weakSubscribers ? ", registration" : "";
+            if (isRegisterSplit) {
+                dispatcherArrayBuilder.append("dispatchers");
+                codeBuilderForMethods
+                        .append("\t\tfinal Dispatcher[] dispatchers = new Dispatcher[").append(subscribers.size()).append("];\n")
+                        .append(getMethodPartCalls("\t\t" + registerPartName + "%d(subscriber, dispatchers" + registrationArgument + ");\n",
+                                codeBuildersForRegistration.size()));
+            } else {
+                dispatcherArrayBuilder.append("new Dispatcher[] { ");
+                for (int index = 0; index < subscribers.size(); index++) {
+                    dispatcherArrayBuilder
+                            .append(index == 0 ? "" : ", ").append("dispatcher").append(subscribers.get(index).getUid());
+                }
+                dispatcherArrayBuilder.append(" }");
+                appendMethodFragment(codeBuildersForRegistration.get(0));
+            }
+            if (weakSubscribers) {
+                codeBuilderForMethods
+                        .append("\t\tregistration.mDispatchers = ").append(dispatcherArrayBuilder).append(";\n")
+                        .append("\t\t").append(registrationsName).append(".add(registration);\n");
+            } else {
+                codeBuilderForMethods
+                        .append("\t\t").append(registrationsName).append(".put(subscriber, ").append(dispatcherArrayBuilder).append(");\n");
+            }
+            codeBuilderForMethods
+                    .append("\t}\n")
+                    .append("}\n\n");
+            if (isRegisterSplit) {
+                appendMethodParts("private void " + registerPartName + "%d(final " + subscriberClass + " subscriber, final Dispatcher[] dispatchers"
+                        + (weakSubscribers ? ", final SubscriberReference registration" : "") + ")", "", codeBuildersForRegistration, "");
+            }
+
+            // generate 'unregister' methods
+            logBuilder
+                    .append("Generating 'unregister' for ").append(subscriberClass).append("\n");
+
+            codeBuilderForMethods
+                    .append("public final void unregister(final ").append(subscriberClass).append(" subscriber) {\n")
+                    .append("\tif (subscriber == null) { return; }\n")
+                    .append("\tsynchronized(this) {\n");
+            if (weakSubscribers) {
+                codeBuilderForMethods
+                        .append("\t\tpruneCollectedSubscribers(mCollectedSubscribers.poll());\n")
+                        .append("\t\tfinal SubscriberReference registration = ").append(registrationsName).append(".get(subscriber);\n")
+                        .append("\t\tif (registration == null) { return; }\n")
+                        .append("\t\t").append(registrationsName).append(".remove(registration);\n")
+                        //a cleared reference is not enqueued to the reference queue
+                        .append("\t\tregistration.clear();\n");
+                appendDispatcherRemovals(codeBuilderForMethods, subscribers, "registration.mDispatchers", "\t\t");
+
+                //the removal of the collected subscriber instances of the subscriber class
+                if (codeBuildersForPruning.isEmpty() || pruningPartSubscriberCount >= METHOD_PART_SIZE) {
+                    codeBuildersForPruning.add(new StringBuilder());
+                    pruningPartFirstSubscriberClassIds.add(subscriberClassId);
+                    pruningPartSubscriberCount = 0;
+                }
+                pruningPartSubscriberCount += subscribers.size();
+                final StringBuilder codeBuilderForPruning = codeBuildersForPruning.get(codeBuildersForPruning.size() - 1);
+                codeBuilderForPruning
+                        .append("\t\tcase ").append(subscriberClassId).append(":\n")
+                        .append("\t\t\tif (").append(registrationsName).append(".remove(registration)) {\n");
+                appendDispatcherRemovals(codeBuilderForPruning, subscribers, "registration.mDispatchers", "\t\t\t\t");
+                codeBuilderForPruning
+                        .append("\t\t\t}\n")
+                        .append("\t\t\tbreak;\n");
+            } else {
+                codeBuilderForMethods
+                        .append("\t\tfinal Dispatcher[] registration = ").append(registrationsName).append(".remove(subscriber);\n")
+                        .append("\t\tif (registration == null) { return; }\n");
+                appendDispatcherRemovals(codeBuilderForMethods, subscribers, "registration", "\t\t");
+            }
+
+            codeBuilderForMethods
+                    .append("\t}\n")
+                    .append("}\n\n");
+
+            subscriberClassId++;
+        }
+
+        if (weakSubscribers) {
+            //generate 'prune collected subscribers' method (removes the dispatchers of the collected subscriber instances incrementally, called
+            //by register and unregister: posting does not poll the reference queue, the dispatchers of a collected subscriber instance drop
+            //the events until the next register or unregister removes them)
+            codeBuilderForFields
+                    .append("private final ReferenceQueue<Object> mCollectedSubscribers = new ReferenceQueue<>();\n");
+            codeBuilderForMethods
+                    .append("private synchronized void pruneCollectedSubscribers(Reference<?> reference) {\n")
+                    .append("\twhile (reference != null) {\n")
+                    .append("\t\tfinal SubscriberReference registration = (SubscriberReference) reference;\n");
+            if (codeBuildersForPruning.size() > 1) {
+                //the part of the subscriber class is selected by the ranges of the subscriber class ids
+                for (int part = 0; part < codeBuildersForPruning.size(); part++) {
+                    if (part < codeBuildersForPruning.size() - 1) {
+                        codeBuilderForMethods
+                                .append(part == 0 ? "\t\tif" : " else if").append(" (registration.mSubscriberClassId < ")
+                                .append(pruningPartFirstSubscriberClassIds.get(part + 1)).append(") {\n");
+                    } else {
+                        codeBuilderForMethods
+                                .append(" else {\n");
+                    }
+                    codeBuilderForMethods
+                            .append("\t\t\tpruneCollectedSubscribers").append(part).append("(registration);\n")
+                            .append("\t\t}");
+                }
+                codeBuilderForMethods
+                        .append("\n");
+            } else {
+                codeBuilderForMethods
+                        .append("\t\tswitch (registration.mSubscriberClassId) {\n");
+                if (!codeBuildersForPruning.isEmpty()) {
+                    appendMethodFragment(codeBuildersForPruning.get(0));
+                }
+                codeBuilderForMethods
+                        .append("\t\t}\n");
+            }
+            codeBuilderForMethods
+                    .append("\t\treference = mCollectedSubscribers.poll();\n")
+                    .append("\t}\n")
+                    .append("}\n\n");
+            if (codeBuildersForPruning.size() > 1) {
+                appendMethodParts("private void pruneCollectedSubscribers%d(final SubscriberReference registration)",
+                        "\t\tswitch (registration.mSubscriberClassId) {\n", codeBuildersForPruning, "\t\t}\n");
+            }
+        }
+    }
+
+    /**
+     * Generate a field of the event bus class. The fields of the large event buses are initialized by part methods instead of field
+     * initializers (the field initializers are compiled into the constructor, which would exceed the 64KB limit of the class file format), so
+     * they are not final (they are assigned before the constructor returns).
+     *
+     * @param modifiers   The modifiers of the field (private final or private volatile).
+     * @param type        The type of the field.
+     * @param name        The name of the field.
+     * @param initializer The initializer expression of the field.
+     */
+    private void appendField(final String modifiers, final String type, final String name, final String initializer) {
+        if (codeBuildersForFieldInitializers == null) {
+            codeBuilderForFields
+                    .append(modifiers).append(" ").append(type).append(" ").append(name).append(" = ").append(initializer).append(";\n");
+            return;
+        }
+        codeBuilderForFields
+                .append(modifiers.replace(" final", "")).append(" ").append(type).append(" ").append(name).append(";\n");
+        getCodeBuilderForPart(codeBuildersForFieldInitializers, fieldInitializerCount++)
+                .append("\t").append(name).append(" = ").append(initializer).append(";\n");
+    }
+
+    /**
+     * Generate the initializer of the fields which are initialized by part methods (large event buses only). The instance initializer follows
+     * the declarations of the fields, so the part methods see the fields declared with initializers initialized.
+     */
+    private void generateFieldInitializers() {
+        if (codeBuildersForFieldInitializers == null || codeBuildersForFieldInitializers.isEmpty()) {
+            return;
+        }
+        codeBuilderForFields
+                .append("\n")
+                .append("{\n")
+                .append(getMethodPartCalls("\tinitializeFields%d();\n", codeBuildersForFieldInitializers.size()))
+                .append("}\n");
+        for (int part = 0; part < codeBuildersForFieldInitializers.size(); part++) {
+            codeBuilderForMethods
+                    .append("private void initializeFields").append(part).append("() {\n");
+            appendMethodFragment(codeBuildersForFieldInitializers.get(part));
+            codeBuilderForMethods
+                    .append("}\n\n");
+        }
+    }
+
+    /**
+     * Get the code builder of the next code fragment of a generated method, which is split to parts of METHOD_PART_SIZE code fragments.
+     *
+     * @param codeBuildersForParts The code builders of the parts of the method.
+     * @param fragmentIndex        The index of the code fragment in the method.
+     * @return The code builder of the part of the code fragment.
+     */
+    private static StringBuilder getCodeBuilderForPart(final List<StringBuilder> codeBuildersForParts, final int fragmentIndex) {
+        if (fragmentIndex % METHOD_PART_SIZE == 0) {
+            codeBuildersForParts.add(new StringBuilder());
+        }
+        return codeBuildersForParts.get(codeBuildersForParts.size() - 1);
+    }
+
+    /**
+     * Get the code which calls the part methods of a generated method which is split to parts.
+     *
+     * @param call      The statement which calls a part method (format string of the index of the part).
+     * @param partCount The number of parts.
+     * @return The code which calls the part methods in the order of the parts.
+     */
+    private static String getMethodPartCalls(final String call, final int partCount) {
+        final StringBuilder codeBuilder = new StringBuilder();
+        for (int part = 0; part < partCount; part++) {
+            codeBuilder.append(String.format(call, part));
+        }
+        return codeBuilder.toString();
+    }
+
+    /**
+     * Generate the code fragments of a generated method: the code fragments themselves if they fit in one part, or the calls of the part
+     * methods.
+     *
+     * @param codeBuildersForParts The code fragments of the parts.
+     * @param call                 The statement which calls a part method (format string of the index of the part).
+     */
+    private void appendMethodCode(final List<StringBuilder> codeBuildersForParts, final String call) {
+        if (codeBuildersForParts.size() > 1) {
+            codeBuilderForMethods.append(getMethodPartCalls(call, codeBuildersForParts.size()));
+        } else if (!codeBuildersForParts.isEmpty()) {
+            appendMethodFragment(codeBuildersForParts.get(0));
+        }
+    }
+
+    /**
+     * Generate the part methods of a generated method which is split to parts (nothing is generated if the method is not split).
+     *
+     * @param declaration          The declaration of the part methods (format string of the index of the part).
+     * @param prologue             The code of the part methods before the code fragments.
+     * @param codeBuildersForParts The code fragments of the parts.
+     * @param epilogue             The code of the part methods after the code fragments.
+     */
+    private void appendMethodParts(final String declaration, final String prologue, final List<StringBuilder> codeBuildersForParts,
+                                   final String epilogue) {
+        if (codeBuildersForParts.size() < 2) {
+            return;
+        }
+        for (int part = 0; part < codeBuildersForParts.size(); part++) {
+            codeBuilderForMethods
+                    .append(String.format(declaration, part)).append(" {\n")
+                    .append(prologue);
+            appendMethodFragment(codeBuildersForParts.get(part));
+            codeBuilderForMethods
+                    .append(epilogue)
+                    .append("}\n\n");
+        }
+    }
+
+    /**
+     * Append a code fragment to the code of the methods without copying it: the code of the methods generated so far is closed to a segment,
+     * and the code fragment is written after it as it is (the code fragment is not changed after it is appended).
+     *
+     * @param codeFragment The code fragment.
+     */
+    private void appendMethodFragment(final StringBuilder codeFragment) {
+        codeSegmentsForMethods.add(codeBuilderForMethods);
+        codeSegmentsForMethods.add(codeFragment);
+        codeBuilderForMethods = new StringBuilder();
+    }
+
+    /**
+     * Generate event class related code segments of the custom generated event bus (import for event class, list of dispatcher class instances,
+     * 'post', 'postSticky', dispatcher class and list of registered dispatcher instances.
+     */
+    private void generateEventClassRelatedCode() {
+
+        //the methods dispatched by the event class are split to parts of METHOD_PART_SIZE event classes (or subscriber methods)
+        final boolean isEventClassMethodSplit = subscribersByEventClass.size() > METHOD_PART_SIZE;
+        final List<StringBuilder> codeBuildersForOverflowCounts = new ArrayList<>();
+        final List<StringBuilder> codeBuildersForBatchPosts = new ArrayList<>();
+        final List<StringBuilder> codeBuildersForStickyEventGetters = new ArrayList<>();
+        final List<StringBuilder> codeBuildersForStickyEventRemovals = new ArrayList<>();
+        final List<StringBuilder> codeBuildersForMetricsSnapshot = new ArrayList<>();
+        final List<StringBuilder> codeBuildersForLatencySnapshot = new ArrayList<>();
+        int eventClassIndex = 0;
+        int overflowCountIndex = 0;
+        int metricsSnapshotIndex = 0;
+        int latencySnapshotIndex = 0;
+
+        //the typed sticky event accessors are named after the simple name of the event class unless it is ambiguous
+        final Set<String> simpleNames = new HashSet<>();
+        final Set<String> ambiguousSimpleNames = new HashSet<>();
+        for (final String eventClass : subscribersByEventClass.keySet()) {
+            if (!simpleNames.add(getSimpleName(eventClass))) {
+                ambiguousSimpleNames.add(getSimpleName(eventClass));
+            }
+        }
+
+        for (final String eventClass : subscribersByEventClass.keySet()) {
+            final int eventClassId = getEventClassIdByEventClass(eventClass);
+            final ArrayList<Subscriber> subscribers = subscribersByEventClass.get(eventClass);
+            final StringBuilder codeBuilderForBatchPosts = getCodeBuilderForPart(codeBuildersForBatchPosts, eventClassIndex);
+            final StringBuilder codeBuilderForStickyEventGetters = getCodeBuilderForPart(codeBuildersForStickyEventGetters, eventClassIndex);
+            final StringBuilder codeBuilderForStickyEventRemovals = getCodeBuilderForPart(codeBuildersForStickyEventRemovals, eventClassIndex);
+            eventClassIndex++;
+
+            logBuilder
+                    .append("Number of subscribers by event ").append(eventClass).append(": ").append(subscribers.size()).append("\n");
 
             //import event class
             codeBuilderForEventClassImports.append("import ").append(eventClass).append(";\n");
 
-            //generate 'list of dispatchers' field for event class
-            final String dispatcherListName = "mDispatcherList" + eventClassId;
-            codeBuilderForFields
-                    .append("private final ArrayList<Dispatcher> ").append(dispatcherListName).append(" = new ArrayList<>(EVENT_DISPATCHER_LIST_INITIAL_CAPACITY);\n");
+            //generate 'array of dispatchers' fields for event class per subscriber priority (managed by DispatcherSlots under the lock: register
+            //writes the next free slot of the shared array, unregister empties the slot, both re-publish the array through the volatile field)
+            final Set<Integer> priorities = new TreeSet<>();
+            for (final Subscriber subscriber : subscribers) {
+                priorities.add(subscriber.getPriority());
+            }
+            for (final int priority : priorities) {
+                final String dispatchersName = getDispatchersName(eventClassId, priority);
+                appendField("private volatile", "Dispatcher[]", dispatchersName, "EMPTY_DISPATCHERS");
+                appendField("private final", "DispatcherSlots", getDispatcherSlotsName(dispatchersName), "new DispatcherSlots()");
+            }
+
+            //the dispatcher arrays of the event class and its subscribed supertypes in the order of priorities (resolved in compile time)
+            final Map<String, Boolean> dispatchersNames = getDispatchersNames(eventClass);
+
+            //generate 'posted count' field for event class (metrics only)
+            final String postedCountName = "mPostedCount" + eventClassId;
+            if (metricsTemplate != null) {
+                appendField("private final", "StripedCounter", postedCountName, "new StripedCounter()");
+                getCodeBuilderForPart(codeBuildersForMetricsSnapshot, metricsSnapshotIndex++)
+                        .append("\tsnapshot.mPostedCounts.put(").append(eventClass).append(".class, ").append(postedCountName).append(".sum());\n");
+            }
 
             logBuilder
-                    .append("Generating 'post' for event ").append(eventClass).append("\n");
+                    .append("Generating 'post' for event ").append(eventClass).append(" (dispatched to ").append(dispatchersNames.keySet()).append(")\n");
+
+            //generate 'post method' for event class (lock free: reads the volatile dispatcher arrays once and skips the empty slots; a slot
+            //written concurrently is either seen as empty or as a fully constructed dispatcher, whose fields are final), its body is repeated
+            //in the 'post sticky method' (a post(event) call would make the compiler resolve it among the overloads of every event class)
+            final StringBuilder codeBuilderForPost = new StringBuilder();
+            if (metricsTemplate != null) {
+                codeBuilderForPost
+                        .append("\t").append(postedCountName).append(".increment();\n");
+            }
+            final String dispatchedEventName;
+            if (latencyTemplate != null) {
+                //one timed event per post, shared by the dispatchers
+                dispatchedEventName = "timedEvent";
+                codeBuilderForPost
+                        .append("\tfinal ").append(getQueuedEventClass(eventClass)).append(" ").append(dispatchedEventName).append(" = ")
+                        .append(getQueuedEvent(eventClass, "event")).append(";\n");
+            } else {
+                dispatchedEventName = "event";
+            }
+            //a full bounded event queue throws on posting: the failure is thrown after the event is dispatched to every dispatcher
+            final boolean isFailureCollected = hasBoundedEventQueue(getDispatchedSubscribers(eventClass));
+            if (isFailureCollected) {
+                codeBuilderForPost
+                        .append("\tIllegalStateException failure = null;\n");
+            }
+            for (final Map.Entry<String, Boolean> dispatchersNameEntry : dispatchersNames.entrySet()) {
+                appendFanOut(codeBuilderForPost, "\t", dispatchersNameEntry.getKey(), "dispatcher.dispatch(" + dispatchedEventName + ")",
+                        dispatchersNameEntry.getValue() ? "return;" : null, isFailureCollected);
+            }
+            if (isFailureCollected) {
+                codeBuilderForPost
+                        .append("\tif (failure != null) { throw failure; }\n");
+            }
+            codeBuilderForMethods
+                    .append("@SuppressWarnings(\"unchecked\")\n")
+                    .append("public final void post(final ").append(eventClass).append(" event) {\n")
+                    .append(codeBuilderForPost)
+                    .append("}\n\n");
 
-            //generate 'post method' for event class
+            //generate 'post all' methods for event class (the batch is enqueued to each dispatcher in one operation)
+            codeBuilderForMethods
+                    .append("public final void postAll(final ").append(eventClass).append("[] events) {\n")
+                    .append("\tif (events == null || events.length == 0) { return; }\n")
+                    .append("\tfinal List<").append(getQueuedEventClass(eventClass)).append("> eventList = ")
+                    .append(latencyTemplate == null ? "Arrays.asList(events)" : "timestamp(Arrays.asList(events))").append(";\n");
+            codeBuilderForBatchPosts
+                    .append("\tif (eventClass == ").append(eventClass).append(".class) {\n");
+            if (metricsTemplate != null) {
+                codeBuilderForMethods
+                        .append("\t").append(postedCountName).append(".add(events.length);\n");
+                codeBuilderForBatchPosts
+                        .append("\t\t").append(postedCountName).append(".add(events.size());\n");
+            }
+            //the first failure of the fan-out is thrown after the events are dispatched to every dispatcher
             codeBuilderForMethods
-                    .append("public final void post(final ").append(eventClass).append(" event) {\n")
-                    //TODO if we keep the list size separately then this method is not thread safe: HOWTO sync this without loosing performance?
-                    // e.g. when .unregister is called from a separate thread this could cause NPE with list.get(...).dispatch(...)
-                    .append("\tfinal int dispatcherListSize = ").append(dispatcherListName).append(".size();\n")
-                    .append("\tfor (int index = 0; index < dispatcherListSize; index++) {\n")
-                    .append("\t\t").append(dispatcherListName).append(".get(index).dispatch(event);\n")
-                    .append("\t}\n")
+                    .append("\tIllegalStateException failure = null;\n");
+            codeBuilderForBatchPosts
+                    .append("\t\tIllegalStateException failure = null;\n");
+            for (final String dispatchersName : dispatchersNames.keySet()) {
+                codeBuilderForMethods
+                        .append("\tfailure = dispatchAll(").append(dispatchersName).append(", eventList, failure);\n");
+                codeBuilderForBatchPosts
+                        .append("\t\tfailure = dispatchAll(").append(dispatchersName).append(latencyTemplate == null ? ", events" : ", timedEvents")
+                        .append(", failure);\n");
+            }
+            codeBuilderForMethods
+                    .append("\tif (failure != null) { throw failure; }\n")
                     .append("}\n\n");
+            codeBuilderForBatchPosts
+                    .append("\t\tif (failure != null) { throw failure; }\n");
+            //the parts of a split method return whether the event class was dispatched
+            codeBuilderForBatchPosts
+                    .append(isEventClassMethodSplit ? "\t\treturn true;\n" : "\t\treturn;\n")
+                    .append("\t}\n");
+
+            //generate 'sticky event' field for event class (plain field instead of map lookup)
+            final String stickyEventName = "mStickyEvent" + eventClassId;
+            final String stickyEventAccessorName = ambiguousSimpleNames.contains(getSimpleName(eventClass)) ? eventClass.replace('.', '_') : getSimpleName(eventClass);
+            codeBuilderForFields
+                    .append("private volatile ").append(eventClass).append(" ").append(stickyEventName).append(";\n");
 
             //generate 'post sticky method' for event class
             codeBuilderForMethods
+                    .append("@SuppressWarnings(\"unchecked\")\n")
                     .append("public final void postSticky(final ").append(eventClass).append(" event) {\n")
                     .append("\tif (event == null) { return; }\n")
-                    .append("\tmStickyEvents.put(event.getClass(), event);\n")
-                            //TODO msagi: unrolling this call would increase speed on background thread with multi core CPUs if event delivery order is not important
-                    .append("\tpost(event);\n")
+                    .append("\t").append(stickyEventName).append(" = event;\n")
+                    .append(codeBuilderForPost)
+                    .append("}\n\n");
+
+            //generate typed 'get sticky' and 'remove sticky' methods for event class
+            codeBuilderForMethods
+                    .append("public final ").append(eventClass).append(" getSticky").append(stickyEventAccessorName).append("() {\n")
+                    .append("\treturn ").append(stickyEventName).append(";\n")
+                    .append("}\n\n")
+                    .append("public final void removeSticky").append(stickyEventAccessorName).append("() {\n")
+                    .append("\t").append(stickyEventName).append(" = null;\n")
                     .append("}\n\n");
+            codeBuilderForStickyEventGetters
+                    .append("\tif (eventClass == ").append(eventClass).append(".class) { return (T) ").append(stickyEventName).append("; }\n");
+            codeBuilderForStickyEventRemovals
+                    .append("\tif (eventClass == ").append(eventClass).append(".class) { ").append(stickyEventName).append(" = null; return; }\n");
+
+            //generate 'overflow counter' field for event class (if it has subscribers with bounded event queue)
+            for (final Subscriber subscriber : subscribers) {
+                if (getRingBufferCapacity(subscriber) > 0) {
+                    final String overflowCountName = "mOverflowCount" + eventClassId;
+                    appendField("private final", "AtomicLong", overflowCountName, "new AtomicLong()");
+                    getCodeBuilderForPart(codeBuildersForOverflowCounts, overflowCountIndex++)
+                            .append("\tif (eventClass == ").append(eventClass).append(".class) { return ").append(overflowCountName).append(".get(); }\n");
+                    break;
+                }
+            }
 
+            final Set<String> latencyRecorderNames = new HashSet<>();
             for (final Subscriber subscriber : subscribers) {
 
                 final String subscriberClass = subscriber.getSubscriberClass();
-                final String subscriberMethod = subscriber.getMethod();
+                final String subscriberMethodName = getSubscriberMethodName(subscriber);
+
+                final String dispatcherClassName = getDispatcherClassName(subscriber);
+
+                //generate 'metrics' field for the subscriber method (metrics only)
+                final String dispatcherMetricsName = "mDispatcherMetrics" + subscriber.getUid();
+                if (metricsTemplate != null) {
+                    final StringBuilder codeBuilderForMetricsSnapshot = getCodeBuilderForPart(codeBuildersForMetricsSnapshot, metricsSnapshotIndex++);
+                    appendField("private final", "DispatcherMetrics", dispatcherMetricsName, "new DispatcherMetrics(\"" + subscriberMethodName + "\")");
+                    if (subscriber.isPosting()) {
+                        //nothing is queued for the posting thread subscribers
+                        codeBuilderForMetricsSnapshot
+                                .append("\tsnapshot.mDispatcherMetrics.add(").append(dispatcherMetricsName).append(".snapshot(0));\n");
+                    } else {
+                        final String queueDepthName = "queueDepth" + subscriber.getUid();
+                        codeBuilderForMetricsSnapshot
+                                .append("\tlong ").append(queueDepthName).append(" = 0;\n")
+                                .append("\tfor (final Dispatcher dispatcher : ").append(getDispatchersName(eventClassId, subscriber.getPriority())).append(") {\n");
+                        if (dispatcherShardClassNames != null) {
+                            //the dispatcher classes are known by their shard classes only
+                            codeBuilderForMetricsSnapshot
+                                    .append("\t\t").append(queueDepthName).append(" += ").append(getDispatcherShardClassName(subscriber))
+                                    .append(".getQueueDepth(").append(subscriber.getUid()).append(", dispatcher);\n");
+                        } else {
+                            codeBuilderForMetricsSnapshot
+                                    .append("\t\tif (dispatcher instanceof ").append(dispatcherClassName);
+                            if (switchDispatchers) {
+                                //the shared dispatcher classes are told apart by the handler id
+                                codeBuilderForMetricsSnapshot
+                                        .append(" && ((").append(dispatcherClassName).append(") dispatcher).mHandlerId == ").append(handlerIds.get(subscriber));
+                            }
+                            codeBuilderForMetricsSnapshot
+                                    .append(") { ").append(queueDepthName).append(" += ((")
+                                    .append(dispatcherClassName).append(") dispatcher).getQueueDepth(); }\n");
+                        }
+                        codeBuilderForMetricsSnapshot
+                                .append("\t}\n")
+                                .append("\tsnapshot.mDispatcherMetrics.add(").append(dispatcherMetricsName).append(".snapshot(").append(queueDepthName)
+                                .append("));\n");
+                    }
+                }
+
+                //generate 'latency recorder' field for the event class and the thread of the subscriber (latency tracking only)
+                final String latencyRecorderName = getLatencyRecorderName(eventClassId, subscriber);
+                if (latencyTemplate != null && latencyRecorderNames.add(latencyRecorderName)) {
+                    appendField("private final", "LatencyRecorder", latencyRecorderName,
+                            "new LatencyRecorder(" + eventClass + ".class, \"" + subscriber.getThreadId().name() + "\", mTracer)");
+                    getCodeBuilderForPart(codeBuildersForLatencySnapshot, latencySnapshotIndex++)
+                            .append("\tsnapshots.add(").append(latencyRecorderName).append(".snapshot());\n");
+                }
 
-                //generate dispatcher for each event handler method of each event subscriber classes
+                //dispatcher for each event handler method of each event subscriber classes (the dispatcher classes are generated when the
+                //code is written, the shared dispatcher classes are logged after all the subscribers)
+                if (!switchDispatchers) {
+                    logBuilder
+                            .append("Generating Dispatcher (").append(dispatcherClassName).append(" for subscriber ").append(subscriberClass).append(", event ")
+                            .append(eventClass).append("\n");
+                }
+            }
+        }
 
-                final String dispatcherClassName = "Dispatcher" + subscriber.getUid();
+        //generate 'post all' method for collections (dispatched by the event class since the collection overloads would have the same erasure)
+        codeBuilderForMethods
+                .append("public final <T> void postAll(final Class<T> eventClass, final Collection<? extends T> events) {\n")
+                .append("\tif (events == null || events.isEmpty()) { return; }\n")
+                .append(latencyTemplate == null ? "" : "\tfinal List<TimedEvent<T>> timedEvents = timestamp(events);\n");
+        appendMethodCode(codeBuildersForBatchPosts,
+                "\tif (postAll%d(eventClass, events" + (latencyTemplate == null ? "" : ", timedEvents") + ")) { return; }\n");
+        codeBuilderForMethods
+                .append("\tlogError(\"Events produced without subscriber implementation: event class \" + eventClass, /* throwable */ null);\n")
+                .append("}\n\n");
+        appendMethodParts("private boolean postAll%d(final Class<?> eventClass, final Collection<?> events"
+                + (latencyTemplate == null ? "" : ", final Collection<?> timedEvents") + ")", "", codeBuildersForBatchPosts, "\treturn false;\n");
+
+        //generate 'get sticky event' and 'remove sticky event' methods (dispatched by the event class)
+        codeBuilderForMethods
+                .append("@SuppressWarnings(\"unchecked\")\n")
+                .append("public final <T> T getStickyEvent(final Class<T> eventClass) {\n")
+                .append(codeBuildersForStickyEventGetters.size() > 1 ? "\tT stickyEvent;\n" : "");
+        appendMethodCode(codeBuildersForStickyEventGetters, "\tif ((stickyEvent = getStickyEvent%d(eventClass)) != null) { return stickyEvent; }\n");
+        codeBuilderForMethods
+                .append("\treturn null;\n")
+                .append("}\n\n");
+        appendMethodParts("@SuppressWarnings(\"unchecked\")\nprivate <T> T getStickyEvent%d(final Class<T> eventClass)", "", codeBuildersForStickyEventGetters,
+                "\treturn null;\n");
+        codeBuilderForMethods
+                .append("public final void removeStickyEvent(final Class<?> eventClass) {\n");
+        appendMethodCode(codeBuildersForStickyEventRemovals, "\tremoveStickyEvent%d(eventClass);\n");
+        codeBuilderForMethods
+                .append("}\n\n");
+        appendMethodParts("private void removeStickyEvent%d(final Class<?> eventClass)", "", codeBuildersForStickyEventRemovals, "");
+
+        //generate 'overflow count' method (the parts of a split method return -1 for the event classes of the other parts)
+        codeBuilderForMethods
+                .append("public final long getOverflowCount(final Class<?> eventClass) {\n")
+                .append(codeBuildersForOverflowCounts.size() > 1 ? "\tlong overflowCount;\n" : "");
+        appendMethodCode(codeBuildersForOverflowCounts, "\tif ((overflowCount = getOverflowCount%d(eventClass)) >= 0) { return overflowCount; }\n");
+        codeBuilderForMethods
+                .append("\treturn 0;\n")
+                .append("}\n\n");
+        appendMethodParts("private long getOverflowCount%d(final Class<?> eventClass)", "", codeBuildersForOverflowCounts, "\treturn -1;\n");
+
+        //generate 'set tracer' and 'latency snapshot' methods (latency tracking only)
+        if (latencyTemplate != null) {
+            codeBuilderForMethods
+                    .append("public final void setTracer(final Tracer tracer) {\n")
+                    .append("\tmTracer.set(tracer);\n")
+                    .append("}\n\n")
+                    .append("public final List<LatencySnapshot> latencySnapshot() {\n")
+                    .append("\tfinal List<LatencySnapshot> snapshots = new ArrayList<>();\n");
+            appendMethodCode(codeBuildersForLatencySnapshot, "\tlatencySnapshot%d(snapshots);\n");
+            codeBuilderForMethods
+                    .append("\treturn snapshots;\n")
+                    .append("}\n\n");
+            appendMethodParts("private void latencySnapshot%d(final List<LatencySnapshot> snapshots)", "", codeBuildersForLatencySnapshot, "");
+        }
 
-                logBuilder
-                        .append("Generating Dispatcher (").append(dispatcherClassName).append(" for subscriber ").append(subscriberClass).append(", event ")
-                        .append(eventClass).append("\n");
+        //generate 'metrics snapshot' method (metrics only)
+        if (metricsTemplate != null) {
+            codeBuilderForMethods
+                    .append("public final MetricsSnapshot metricsSnapshot() {\n")
+                    .append("\tfinal MetricsSnapshot snapshot = new MetricsSnapshot();\n");
+            appendMethodCode(codeBuildersForMetricsSnapshot, "\tmetricsSnapshot%d(snapshot);\n");
+            codeBuilderForMethods
+                    .append("\treturn snapshot;\n")
+                    .append("}\n\n");
+            appendMethodParts("private void metricsSnapshot%d(final MetricsSnapshot snapshot)", "", codeBuildersForMetricsSnapshot, "");
+        }
+    }
 
-                codeBuilderForInnerClasses
-                        .append("private static final class ").append(dispatcherClassName).append(" extends Dispatcher<").append(subscriberClass).append(", ")
-                        .append(eventClass).append("> {\n")
-                        .append("\n")
-                        .append("\tpublic ").append(dispatcherClassName).append("(final ").append(subscriberClass).append(" subscriber, final Handler handler) {\n")
-                        .append("\t\tsuper(subscriber, handler);\n")
-                        .append("\t}\n")
+    /**
+     * Generate a dispatcher class: the dispatcher class of one subscriber method, or the shared dispatcher class of the subscriber methods
+     * of the same kind which selects the subscriber method by the handler id (switch dispatchers only).
+     *
+     * @param dispatcherClassName The name of the dispatcher class.
+     * @param subscribers         The subscribers delivered by the dispatcher class (in the order of their handler ids).
+     */
+    private void generateDispatcherClass(final String dispatcherClassName, final List<Subscriber> subscribers) {
+        //the subscribers of a shared dispatcher class are of the same kind (posting, conflating, batch, queue type)
+        final Subscriber subscriber = subscribers.get(0);
+        final StringBuilder codeBuilder = codeBuilderForDispatcherClass;
+        final String subscriberClass = switchDispatchers ? "Object" : subscriber.getSubscriberClass();
+        final String eventClass = switchDispatchers ? "Object" : subscriber.getEventClass();
+        final String queuedEventClass = getQueuedEventClass(eventClass);
+        final String dispatcherSuperClassName = getDispatcherSuperClassName(subscriber);
+        final boolean isRingBuffer = "RingBufferDispatcher".equals(dispatcherSuperClassName);
+        boolean isCancellable = false;
+        for (final Subscriber handler : subscribers) {
+            isCancellable |= handler.isCancellable();
+        }
+
+        codeBuilder
+                .append("private static final class ").append(dispatcherClassName).append(" extends ").append(dispatcherSuperClassName).append("<")
+                .append(subscriberClass).append(", ").append(queuedEventClass).append("> {\n")
+                .append("\n");
+        if (switchDispatchers) {
+            codeBuilder
+                    .append("\tfinal int mHandlerId;\n")
+                    .append("\n");
+            if (isRingBuffer) {
+                codeBuilder
+                        .append("\tprivate final int mOverflowPolicy;\n")
+                        .append("\n");
+            }
+        }
+        if (latencyTemplate != null) {
+            if (switchDispatchers) {
+                codeBuilder
+                        .append("\tprivate final String mSubscriberMethod;\n")
+                        .append("\n");
+            } else {
+                codeBuilder
+                        .append("\tprivate static final String SUBSCRIBER_METHOD = \"").append(getSubscriberMethodName(subscriber)).append("\";\n")
+                        .append("\n");
+            }
+            codeBuilder
+                    .append("\tprivate final LatencyRecorder mLatency;\n")
+                    .append("\n");
+        }
+        if (metricsTemplate != null) {
+            codeBuilder
+                    .append("\tprivate final DispatcherMetrics mMetrics;\n")
+                    .append("\n");
+        }
+        codeBuilder
+                .append("\tpublic ").append(dispatcherClassName).append("(final ").append(subscriberClass)
+                .append(" subscriber, final SubscriberReference subscriberReference, final Executor executor");
+        if (switchDispatchers) {
+            codeBuilder
+                    .append(", final int handlerId");
+            if (isRingBuffer) {
+                codeBuilder
+                        .append(", final int capacity, final int overflowPolicy");
+            }
+        }
+        if (isRingBuffer) {
+            codeBuilder
+                    .append(", final AtomicLong overflowCount");
+        }
+        if (metricsTemplate != null) {
+            codeBuilder
+                    .append(", final DispatcherMetrics metrics");
+        }
+        if (latencyTemplate != null) {
+            codeBuilder
+                    .append(", final LatencyRecorder latency");
+            if (switchDispatchers) {
+                codeBuilder
+                        .append(", final String subscriberMethod");
+            }
+        }
+        codeBuilder
+                .append(") {\n");
+        if (isRingBuffer) {
+            codeBuilder
+                    .append("\t\tsuper(subscriber, subscriberReference, executor, ").append(switchDispatchers ? "capacity" : String.valueOf(getRingBufferCapacity(subscriber)))
+                    .append(", overflowCount);\n");
+        } else {
+            codeBuilder
+                    .append("\t\tsuper(subscriber, subscriberReference, executor);\n");
+        }
+        if (switchDispatchers) {
+            codeBuilder
+                    .append("\t\tmHandlerId = handlerId;\n");
+            if (isRingBuffer) {
+                codeBuilder
+                        .append("\t\tmOverflowPolicy = overflowPolicy;\n");
+            }
+        }
+        if (metricsTemplate != null) {
+            codeBuilder
+                    .append("\t\tmMetrics = metrics;\n");
+        }
+        if (latencyTemplate != null) {
+            codeBuilder
+                    .append("\t\tmLatency = latency;\n");
+            if (switchDispatchers) {
+                codeBuilder
+                        .append("\t\tmSubscriberMethod = subscriberMethod;\n");
+            }
+        }
+        codeBuilder
+                .append("\t}\n");
+        if (isRingBuffer) {
+            codeBuilder
+                    .append("\n")
+                    .append("\t@Override\n")
+                    .append("\tprotected void enqueue(final ").append(queuedEventClass).append(" event) {\n");
+            if (switchDispatchers) {
+                //the overflow policy is selected per dispatcher instance
+                appendOverflowPolicySwitch(codeBuilder, "enqueue", "event");
+            } else {
+                //the overflow policy is compiled in (no branching on posting)
+                codeBuilder
+                        .append("\t\t").append(getEnqueueMethod(subscriber.getOverflowPolicy())).append("(event);\n");
+            }
+            codeBuilder
+                    .append("\t}\n");
+        }
+        //deliver single event (called by the dispatching loop, the posting thread and the same thread delivery)
+        codeBuilder
+                .append("\n")
+                .append("\t@Override\n")
+                .append("\tprotected void deliver(final ").append(queuedEventClass).append(latencyTemplate == null ? " event) {\n" : " timedEvent) {\n")
+                .append(getTimedEventLoad(eventClass, "\t\t"))
+                .append(getSubscriberLoad(subscriberClass, "\t\t", "return;"))
+                .append(getInstrumentationStart("\t\t", "event"))
+                .append(getQueueWaitRecording("\t\t", "startTime"))
+                .append("\t\ttry {\n")
+                .append("\t\t\t").append(getInvocation(subscriber, subscriber.isBatch() ? "Collections.singletonList(event)" : "event")).append(";\n")
+                .append("\t\t} catch (RuntimeException re) {\n")
+                .append("\t\t\tlogError(\"Error dispatching event\", re);\n")
+                .append(getInstrumentationFinally("\t\t", "1", "event"))
+                .append("\t\t}\n")
+                .append("\t}\n");
+        if (subscriber.isPosting()) {
+            //no event queue, no scheduling
+            if (isCancellable) {
+                codeBuilder
                         .append("\n")
                         .append("\t@Override\n")
-                        .append("\tpublic void run() {\n")
-                        .append("\t\t").append(eventClass).append(" event;\n")
-                        .append("\t\twhile ((event = mEventQueue.poll()) != null) {\n")
-                        .append("\t\t\ttry {\n")
-                        .append("\t\t\t\tmSubscriber.").append(subscriberMethod).append("(event);\n")
-                        .append("\t\t\t} catch (RuntimeException re) {\n")
-                        .append("\t\t\t\tLog.e(TAG, \"Error dispatching event\", re);\n")
-                        .append("\t\t\t}\n")
+                        .append("\tprotected boolean consume(final ").append(queuedEventClass)
+                        .append(latencyTemplate == null ? " event) {\n" : " timedEvent) {\n")
+                        .append(getTimedEventLoad(eventClass, "\t\t"))
+                        .append(getSubscriberLoad(subscriberClass, "\t\t", "return false;"))
+                        .append(getInstrumentationStart("\t\t", "event"))
+                        .append(getQueueWaitRecording("\t\t", "startTime"))
+                        .append("\t\ttry {\n")
+                        .append("\t\t\treturn ").append(getInvocation(subscriber, "event")).append(";\n")
+                        .append("\t\t} catch (RuntimeException re) {\n")
+                        .append("\t\t\tlogError(\"Error dispatching event\", re);\n")
+                        .append("\t\t\treturn false;\n")
+                        .append(getInstrumentationFinally("\t\t", "1", "event"))
                         .append("\t\t}\n")
-                        .append("\t\tmIsDispatchingActive.set(false);\n")
-                        .append("\t}\n")
-                        .append("}\n\n");
+                        .append("\t}\n");
+            }
+            appendInvokeMethods(subscribers, isCancellable ? "boolean" : "void", "Object");
+            codeBuilder
+                    .append("}\n\n");
+            return;
+        }
+        if (metricsTemplate != null) {
+            //the number of events waiting for delivery (read by the metrics snapshot)
+            codeBuilder
+                    .append("\n")
+                    .append("\tint getQueueDepth() {\n")
+                    .append(subscriber.isConflate() ? "\t\treturn mLatestEvent.get() == null ? 0 : 1;\n" : "\t\treturn mEventQueue.size();\n")
+                    .append("\t}\n");
+        }
+        codeBuilder
+                .append("\n")
+                .append("\t@Override\n")
+                .append("\tpublic void run() {\n");
+        if (isRingBuffer) {
+            //posting to the full event queue on the draining thread must not wait for itself (see enqueueOrWait())
+            codeBuilder
+                    .append("\t\tmDrainingThread = Thread.currentThread();\n");
+        }
+        if (subscriber.isConflate()) {
+            //deliver the latest event only (once per dispatching round)
+            codeBuilder
+                    .append("\t\tfinal ").append(queuedEventClass).append(" event = mLatestEvent.getAndSet(null);\n")
+                    .append("\t\tif (event != null) {\n")
+                    .append("\t\t\tdeliver(event);\n")
+                    .append("\t\t}\n");
+        } else if (subscriber.isBatch()) {
+            //deliver all the queued events in one call
+            codeBuilder
+                    .append("\t\tArrayList<").append(eventClass).append("> events = null;\n")
+                    .append("\t\t").append(queuedEventClass).append(" event;\n");
+            if (latencyTemplate != null) {
+                codeBuilder
+                        .append("\t\tfinal long pollTime = System.nanoTime();\n");
+            }
+            codeBuilder
+                    .append("\t\twhile ((event = mEventQueue.poll()) != null) {\n")
+                    .append("\t\t\tif (events == null) { events = new ArrayList<>(); }\n");
+            if (latencyTemplate != null) {
+                codeBuilder
+                        .append("\t\t\tevents.add(event.mEvent);\n")
+                        .append("\t\t\tmLatency.recordQueueWait(pollTime - event.mPostTime);\n");
+            } else {
+                codeBuilder
+                        .append("\t\t\tevents.add(event);\n");
+            }
+            if (drainBudgetEvents > 0) {
+                //a batch is at most as large as the drain budget
+                codeBuilder
+                        .append("\t\t\tif (events.size() == DRAIN_BUDGET_EVENTS) { break; }\n");
+            }
+            codeBuilder
+                    .append("\t\t}\n")
+                    .append("\t\tif (events != null) {\n")
+                    .append(getSubscriberLoad(subscriberClass, "\t\t\t", "finishDispatching(); return;"))
+                    .append(getInstrumentationStart("\t\t\t", "events"))
+                    .append("\t\t\ttry {\n")
+                    .append("\t\t\t\t").append(getInvocation(subscriber, "events")).append(";\n")
+                    .append("\t\t\t} catch (RuntimeException re) {\n")
+                    .append("\t\t\t\tlogError(\"Error dispatching event\", re);\n")
+                    .append(getInstrumentationFinally("\t\t\t", "events.size()", "events"))
+                    .append("\t\t\t}\n");
+            if (metricsTemplate != null) {
+                codeBuilder
+                        .append("\t\t\tmMetrics.recordDispatchingRound(events.size());\n");
+            }
+            if (drainBudgetEvents > 0) {
+                codeBuilder
+                        .append("\t\t\tif (events.size() == DRAIN_BUDGET_EVENTS && hasPendingEvents()) {\n")
+                        .append("\t\t\t\tyieldDispatching();\n")
+                        .append("\t\t\t\treturn;\n")
+                        .append("\t\t\t}\n");
+            }
+            codeBuilder
+                    .append("\t\t}\n");
+        } else {
+            //the events are counted for the metrics and for the drain budget
+            final boolean isCounting = metricsTemplate != null || drainBudgetEvents > 0;
+            codeBuilder
+                    .append("\t\t").append(queuedEventClass).append(" event;\n");
+            if (isCounting) {
+                codeBuilder
+                        .append("\t\tint eventCount = 0;\n");
+            }
+            if (drainBudgetNanos > 0) {
+                codeBuilder
+                        .append("\t\tfinal long drainStartTime = System.nanoTime();\n");
+            }
+            codeBuilder
+                    .append("\t\twhile ((event = mEventQueue.poll()) != null) {\n")
+                    .append("\t\t\tdeliver(event);\n");
+            if (isCounting) {
+                codeBuilder
+                        .append("\t\t\teventCount++;\n");
+            }
+            final String drainBudgetCondition = getDrainBudgetCondition();
+            if (drainBudgetCondition != null) {
+                //the drain budget is used up: yield the delivery thread if there are more events to deliver
+                codeBuilder
+                        .append("\t\t\tif (").append(drainBudgetCondition).append(" && hasPendingEvents()) {\n");
+                if (metricsTemplate != null) {
+                    codeBuilder
+                            .append("\t\t\t\tmMetrics.recordDispatchingRound(eventCount);\n");
+                }
+                codeBuilder
+                        .append("\t\t\t\tyieldDispatching();\n")
+                        .append("\t\t\t\treturn;\n")
+                        .append("\t\t\t}\n");
+            }
+            codeBuilder
+                    .append("\t\t}\n");
+            if (metricsTemplate != null) {
+                codeBuilder
+                        .append("\t\tmMetrics.recordDispatchingRound(eventCount);\n");
+            }
+        }
+        codeBuilder
+                .append("\t\tfinishDispatching();\n")
+                .append("\t}\n");
+        appendInvokeMethods(subscribers, "void", "Object");
+        codeBuilder
+                .append("}\n\n");
+    }
+
+    /**
+     * Get the expression which converts a posted primitive value to the long value passed to the primitive dispatchers.
+     *
+     * @param primitiveType The primitive type of the channel (int, long or double).
+     * @param value         The expression of the value.
+     * @return The expression of the long value (raw long bits in case of double).
+     */
+    private static String getValueBits(final String primitiveType, final String value) {
+        return "double".equals(primitiveType) ? "Double.doubleToRawLongBits(" + value + ")" : value;
+    }
+
+    /**
+     * Get the expression which converts the long value of a primitive dispatcher back to the primitive type of the channel.
+     *
+     * @param primitiveType The primitive type of the channel (int, long or double).
+     * @param bits          The expression of the long value.
+     * @return The expression of the value of the primitive type.
+     */
+    private static String getValueFromBits(final String primitiveType, final String bits) {
+        if ("double".equals(primitiveType)) {
+            return "Double.longBitsToDouble(" + bits + ")";
+        } else if ("int".equals(primitiveType)) {
+            return "(int) " + bits;
+        }
+        return bits;
+    }
+
+    /**
+     * Generate primitive channel related code segments of the custom generated event bus (list of dispatcher class instances, 'postInt',
+     * 'postLong', 'postDouble' methods and dispatcher classes of the channels).
+     */
+    private void generateChannelRelatedCode() {
+        if (subscribersByChannel.isEmpty()) {
+            return;
+        }
+
+        //the cases of the channels in the post methods by primitive type (split to parts of METHOD_PART_SIZE channels)
+        final Map<String, List<StringBuilder>> codeBuildersForChannelPosts = new TreeMap<>();
+        final Map<String, Integer> channelCounts = new HashMap<>();
+        for (final ArrayList<Subscriber> subscribers : subscribersByChannel.values()) {
+            final Integer channelCount = channelCounts.get(subscribers.get(0).getEventClass());
+            channelCounts.put(subscribers.get(0).getEventClass(), channelCount == null ? 1 : channelCount + 1);
+        }
+        final Map<String, Integer> channelIndexes = new HashMap<>();
+        final List<StringBuilder> codeBuildersForOverflowCounts = new ArrayList<>();
+        int overflowCountIndex = 0;
+
+        for (final String channelKey : subscribersByChannel.keySet()) {
+            final ArrayList<Subscriber> subscribers = subscribersByChannel.get(channelKey);
+            final String primitiveType = subscribers.get(0).getEventClass();
+            final String channel = subscribers.get(0).getChannel();
+            final int channelId = subscribers.get(0).getEventClassId();
+            final boolean isChannelPostSplit = channelCounts.get(primitiveType) > METHOD_PART_SIZE;
+
+            logBuilder
+                    .append("Number of subscribers by channel ").append(channelKey).append(": ").append(subscribers.size()).append("\n");
+
+            //generate 'array of dispatchers' fields for the channel per subscriber priority (the order of priorities resolved in compile time)
+            final TreeMap<Integer, Boolean> cancellableByPriority = new TreeMap<>(Collections.<Integer>reverseOrder());
+            for (final Subscriber subscriber : subscribers) {
+                cancellableByPriority.put(subscriber.getPriority(), subscriber.isCancellable() || Boolean.TRUE.equals(cancellableByPriority.get(subscriber.getPriority())));
+            }
+            for (final int priority : cancellableByPriority.keySet()) {
+                final String dispatchersName = getDispatchersName(channelId, priority);
+                appendField("private volatile", "Dispatcher[]", dispatchersName, "EMPTY_DISPATCHERS");
+                appendField("private final", "DispatcherSlots", getDispatcherSlotsName(dispatchersName), "new DispatcherSlots()");
+            }
+
+            //generate the case of the channel in the post method of the primitive type
+            List<StringBuilder> codeBuildersForPrimitiveTypePosts = codeBuildersForChannelPosts.get(primitiveType);
+            if (codeBuildersForPrimitiveTypePosts == null) {
+                codeBuildersForPrimitiveTypePosts = new ArrayList<>();
+                codeBuildersForChannelPosts.put(primitiveType, codeBuildersForPrimitiveTypePosts);
+            }
+            final Integer channelIndex = channelIndexes.get(primitiveType);
+            channelIndexes.put(primitiveType, channelIndex == null ? 1 : channelIndex + 1);
+            final StringBuilder codeBuilderForChannelPosts = getCodeBuilderForPart(codeBuildersForPrimitiveTypePosts, channelIndex == null ? 0 : channelIndex);
+            codeBuilderForChannelPosts
+                    .append("\t\tcase \"").append(channel).append("\": {\n");
+            final boolean isFailureCollected = hasBoundedEventQueue(subscribers);
+            if (isFailureCollected) {
+                codeBuilderForChannelPosts
+                        .append("\t\t\tIllegalStateException failure = null;\n");
+            }
+            for (final Map.Entry<Integer, Boolean> cancellableEntry : cancellableByPriority.entrySet()) {
+                appendFanOut(codeBuilderForChannelPosts, "\t\t\t", getDispatchersName(channelId, cancellableEntry.getKey()),
+                        "((PrimitiveDispatcher<?>) dispatcher).dispatchValue(bits)",
+                        cancellableEntry.getValue() ? (isChannelPostSplit ? "return true;" : "return;") : null, isFailureCollected);
+            }
+            if (isFailureCollected) {
+                codeBuilderForChannelPosts
+                        .append("\t\t\tif (failure != null) { throw failure; }\n");
+            }
+            //the parts of a split method return whether the channel was dispatched
+            codeBuilderForChannelPosts
+                    .append(isChannelPostSplit ? "\t\t\treturn true;\n" : "\t\t\treturn;\n")
+                    .append("\t\t}\n");
+
+            //generate 'overflow counter' field for the channel (if it has subscribers with value queue)
+            final String overflowCountName = "mOverflowCount" + channelId;
+            for (final Subscriber subscriber : subscribers) {
+                if (getRingBufferCapacity(subscriber) > 0) {
+                    appendField("private final", "AtomicLong", overflowCountName, "new AtomicLong()");
+                    getCodeBuilderForPart(codeBuildersForOverflowCounts, overflowCountIndex++)
+                            .append("\tif (\"").append(channel).append("\".equals(channel)) { overflowCount += ").append(overflowCountName).append(".get(); }\n");
+                    break;
+                }
+            }
+
+            //dispatcher for each event handler method of the channel (the dispatcher classes are generated when the code is written, the
+            //shared dispatcher classes are logged after all the subscribers)
+            for (final Subscriber subscriber : switchDispatchers ? Collections.<Subscriber>emptyList() : subscribers) {
+                logBuilder
+                        .append("Generating Dispatcher (").append(getDispatcherClassName(subscriber)).append(" for subscriber ")
+                        .append(subscriber.getSubscriberClass()).append(", channel ").append(channelKey).append("\n");
+            }
+        }
+
+        //generate 'post value' methods per primitive type (dispatched by the channel name, the value is passed to the dispatchers as long)
+        for (final Map.Entry<String, List<StringBuilder>> channelPostsEntry : codeBuildersForChannelPosts.entrySet()) {
+            final String primitiveType = channelPostsEntry.getKey();
+            final String postMethod = "post" + Character.toUpperCase(primitiveType.charAt(0)) + primitiveType.substring(1);
+
+            logBuilder
+                    .append("Generating '").append(postMethod).append("' for channels of type ").append(primitiveType).append("\n");
+
+            codeBuilderForMethods
+                    .append("public final void ").append(postMethod).append("(final String channel, final ").append(primitiveType).append(" value) {\n")
+                    .append("\tif (channel == null) { return; }\n");
+            final List<StringBuilder> codeBuildersForPrimitiveTypePosts = channelPostsEntry.getValue();
+            codeBuilderForMethods
+                    .append("\tfinal long bits = ").append(getValueBits(primitiveType, "value")).append(";\n");
+            if (codeBuildersForPrimitiveTypePosts.size() > 1) {
+                codeBuilderForMethods
+                        .append(getMethodPartCalls("\tif (" + postMethod + "%d(channel, bits)) { return; }\n", codeBuildersForPrimitiveTypePosts.size()));
+            } else {
+                codeBuilderForMethods
+                        .append("\tswitch (channel) {\n");
+                appendMethodFragment(codeBuildersForPrimitiveTypePosts.get(0));
+                codeBuilderForMethods
+                        .append("\t}\n");
+            }
+            codeBuilderForMethods
+                    .append("\tlogError(\"Values produced without subscriber implementation: ").append(primitiveType)
+                    .append(" channel \" + channel, /* throwable */ null);\n")
+                    .append("}\n\n");
+            appendMethodParts("private boolean " + postMethod + "%d(final String channel, final long bits)", "\tswitch (channel) {\n",
+                    codeBuildersForPrimitiveTypePosts, "\t}\n\treturn false;\n");
+        }
+
+        //generate 'overflow count' method for the channels (the channels of the same name are summed up)
+        codeBuilderForMethods
+                .append("public final long getOverflowCount(final String channel) {\n")
+                .append("\tlong overflowCount = 0;\n");
+        appendMethodCode(codeBuildersForOverflowCounts, "\toverflowCount += getOverflowCount%d(channel);\n");
+        codeBuilderForMethods
+                .append("\treturn overflowCount;\n")
+                .append("}\n\n");
+        appendMethodParts("private long getOverflowCount%d(final String channel)", "\tlong overflowCount = 0;\n", codeBuildersForOverflowCounts,
+                "\treturn overflowCount;\n");
+    }
+
+    /**
+     * Generate a primitive dispatcher class: the dispatcher class of one subscriber method of a primitive channel, or the shared dispatcher
+     * class of the subscriber methods of the primitive channels which selects the subscriber method by the handler id (switch dispatchers
+     * only).
+     *
+     * @param dispatcherClassName The name of the dispatcher class.
+     * @param subscribers         The subscribers delivered by the dispatcher class (in the order of their handler ids).
+     */
+    private void generatePrimitiveDispatcherClass(final String dispatcherClassName, final List<Subscriber> subscribers) {
+        final Subscriber subscriber = subscribers.get(0);
+        final StringBuilder codeBuilder = codeBuilderForDispatcherClass;
+        final String subscriberClass = switchDispatchers ? "Object" : subscriber.getSubscriberClass();
+        final int ringBufferCapacity = getRingBufferCapacity(subscriber);
+        boolean isCancellable = false;
+        for (final Subscriber handler : subscribers) {
+            isCancellable |= handler.isCancellable();
+        }
+
+        codeBuilder
+                .append("private static final class ").append(dispatcherClassName).append(" extends PrimitiveDispatcher<").append(subscriberClass)
+                .append("> {\n")
+                .append("\n");
+        if (switchDispatchers) {
+            //the capacity and the overflow policy are selected per dispatcher instance (no value queue for the posting thread subscribers)
+            codeBuilder
+                    .append("\tfinal int mHandlerId;\n")
+                    .append("\n")
+                    .append("\tprivate final int mOverflowPolicy;\n")
+                    .append("\n")
+                    .append("\tpublic ").append(dispatcherClassName).append("(final Object subscriber, final SubscriberReference subscriberReference, ")
+                    .append("final Executor executor, final int handlerId, final int capacity, final int overflowPolicy, final AtomicLong overflowCount) {\n")
+                    .append("\t\tsuper(subscriber, subscriberReference, executor, capacity, overflowCount);\n")
+                    .append("\t\tmHandlerId = handlerId;\n")
+                    .append("\t\tmOverflowPolicy = overflowPolicy;\n")
+                    .append("\t}\n")
+                    .append("\n")
+                    .append("\t@Override\n")
+                    .append("\tprotected void enqueueValue(final long value) {\n");
+            appendOverflowPolicySwitch(codeBuilder, "enqueueValue", "value");
+            codeBuilder
+                    .append("\t}\n");
+        } else {
+            codeBuilder
+                    .append("\tpublic ").append(dispatcherClassName).append("(final ").append(subscriberClass)
+                    .append(" subscriber, final SubscriberReference subscriberReference, final Executor executor");
+            if (ringBufferCapacity > 0) {
+                codeBuilder
+                        .append(", final AtomicLong overflowCount) {\n")
+                        .append("\t\tsuper(subscriber, subscriberReference, executor, ").append(ringBufferCapacity).append(", overflowCount);\n");
+            } else {
+                codeBuilder
+                        .append(") {\n")
+                        .append("\t\tsuper(subscriber, subscriberReference, executor, 0, null);\n");
+            }
+            codeBuilder
+                    .append("\t}\n");
+            if (ringBufferCapacity > 0 && subscriber.getOverflowPolicy() != OverflowPolicy.BLOCK) {
+                //the overflow policy is compiled in (no branching on posting)
+                codeBuilder
+                        .append("\n")
+                        .append("\t@Override\n")
+                        .append("\tprotected void enqueueValue(final long value) {\n")
+                        .append("\t\tenqueueValue").append(getEnqueueMethod(subscriber.getOverflowPolicy()).substring("enqueue".length())).append("(value);\n")
+                        .append("\t}\n");
+            }
+        }
+        final String value = getValueFromBits(subscriber.getEventClass(), "value");
+        codeBuilder
+                .append("\n")
+                .append("\t@Override\n")
+                .append("\tprotected void deliverValue(final long value) {\n")
+                .append(getSubscriberLoad(subscriberClass, "\t\t", "return;"))
+                .append("\t\ttry {\n")
+                .append("\t\t\t").append(getInvocation(subscriber, switchDispatchers ? "value" : value)).append(";\n")
+                .append("\t\t} catch (RuntimeException re) {\n")
+                .append("\t\t\tlogError(\"Error dispatching value\", re);\n")
+                .append("\t\t}\n")
+                .append("\t}\n");
+        if (isCancellable) {
+            codeBuilder
+                    .append("\n")
+                    .append("\t@Override\n")
+                    .append("\tprotected boolean consumeValue(final long value) {\n")
+                    .append(getSubscriberLoad(subscriberClass, "\t\t", "return false;"))
+                    .append("\t\ttry {\n")
+                    .append("\t\t\treturn ").append(getInvocation(subscriber, switchDispatchers ? "value" : value)).append(";\n")
+                    .append("\t\t} catch (RuntimeException re) {\n")
+                    .append("\t\t\tlogError(\"Error dispatching value\", re);\n")
+                    .append("\t\t\treturn false;\n")
+                    .append("\t\t}\n")
+                    .append("\t}\n");
+        }
+        codeBuilder
+                .append("\n")
+                .append("\t@Override\n")
+                .append("\tpublic void run() {\n");
+        if (ringBufferCapacity == 0 && !switchDispatchers) {
+            codeBuilder
+                    .append("\t\t//nothing to do, the values are never queued\n")
+                    .append("\t}\n")
+                    .append("}\n\n");
+            return;
+        }
+        //deliver the queued values in chunks (the values are taken from the value queue without boxing)
+        codeBuilder
+                .append("\t\tmDrainingThread = Thread.currentThread();\n")
+                .append("\t\tfinal long[] values = mDrainedValues;\n")
+                .append("\t\tint valueCount;\n");
+        if (drainBudgetEvents > 0) {
+            codeBuilder
+                    .append("\t\tint eventCount = 0;\n");
+        }
+        if (drainBudgetNanos > 0) {
+            codeBuilder
+                    .append("\t\tfinal long drainStartTime = System.nanoTime();\n");
+        }
+        codeBuilder
+                .append("\t\twhile ((valueCount = mValueQueue.drainTo(values, ")
+                .append(drainBudgetEvents > 0 ? "Math.min(values.length, DRAIN_BUDGET_EVENTS - eventCount)" : "values.length").append(")) > 0) {\n")
+                .append("\t\t\tfor (int index = 0; index < valueCount; index++) {\n")
+                .append("\t\t\t\tdeliverValue(values[index]);\n")
+                .append("\t\t\t}\n");
+        if (drainBudgetEvents > 0) {
+            codeBuilder
+                    .append("\t\t\teventCount += valueCount;\n");
+        }
+        final String drainBudgetCondition = getDrainBudgetCondition();
+        if (drainBudgetCondition != null) {
+            //the time budget is checked once per chunk
+            codeBuilder
+                    .append("\t\t\tif (").append(drainBudgetCondition).append(" && hasPendingEvents()) {\n")
+                    .append("\t\t\t\tyieldDispatching();\n")
+                    .append("\t\t\t\treturn;\n")
+                    .append("\t\t\t}\n");
+        }
+        codeBuilder
+                .append("\t\t}\n")
+                .append("\t\tfinishDispatching();\n")
+                .append("\t}\n");
+        appendInvokeMethods(subscribers, isCancellable ? "boolean" : "void", "long");
+        codeBuilder
+                .append("}\n\n");
+    }
+
+    /**
+     * Generate the 'invoke' method of a shared dispatcher class, which calls the subscriber method selected by the handler id (switch
+     * dispatchers only). The switch is split to chunks of SWITCH_CHUNK_SIZE handlers (one method per chunk) so that the methods stay small
+     * enough to be compiled by the JIT compiler.
+     *
+     * @param subscribers  The subscribers delivered by the dispatcher class (in the order of their handler ids).
+     * @param returnType   The return type of the method (boolean if the subscribers can cancel the further delivery, void otherwise).
+     * @param argumentType The type of the argument passed to the subscriber methods (Object or long).
+     */
+    private void appendInvokeMethods(final List<Subscriber> subscribers, final String returnType, final String argumentType) {
+        if (!switchDispatchers) {
+            return;
+        }
+        if (subscribers.size() <= SWITCH_CHUNK_SIZE) {
+            appendInvokeMethod("invoke", subscribers, 0, subscribers.size(), returnType, argumentType);
+            return;
+        }
+        final String argumentName = getInvokeArgumentName(argumentType);
+        final int chunkCount = (subscribers.size() + SWITCH_CHUNK_SIZE - 1) / SWITCH_CHUNK_SIZE;
+        codeBuilderForDispatcherClass
+                .append("\n")
+                .append("\tprivate ").append(returnType).append(" invoke(final Object subscriber, final ").append(argumentType).append(" ")
+                .append(argumentName).append(") {\n")
+                .append("\t\tswitch (mHandlerId / ").append(SWITCH_CHUNK_SIZE).append(") {\n");
+        for (int chunk = 0; chunk < chunkCount; chunk++) {
+            codeBuilderForDispatcherClass
+                    .append("\t\t\tcase ").append(chunk).append(":\n")
+                    .append("\t\t\t\t").append("void".equals(returnType) ? "" : "return ").append("invoke").append(chunk).append("(subscriber, ")
+                    .append(argumentName).append(");\n");
+            if ("void".equals(returnType)) {
+                codeBuilderForDispatcherClass
+                        .append("\t\t\t\treturn;\n");
+            }
+        }
+        codeBuilderForDispatcherClass
+                .append("\t\t}\n")
+                .append("void".equals(returnType) ? "" : "\t\treturn false;\n")
+                .append("\t}\n");
+        for (int chunk = 0; chunk < chunkCount; chunk++) {
+            appendInvokeMethod("invoke" + chunk, subscribers, chunk * SWITCH_CHUNK_SIZE, Math.min(subscribers.size(), (chunk + 1) * SWITCH_CHUNK_SIZE),
+                    returnType, argumentType);
+        }
+    }
+
+    /**
+     * Generate a method of a shared dispatcher class which calls the subscriber method selected by the handler id from the given range of
+     * handler ids (switch dispatchers only).
+     *
+     * @param methodName   The name of the method.
+     * @param subscribers  The subscribers delivered by the dispatcher class (in the order of their handler ids).
+     * @param from         The first handler id of the switch (inclusive).
+     * @param to           The last handler id of the switch (exclusive).
+     * @param returnType   The return type of the method (boolean if the subscribers can cancel the further delivery, void otherwise).
+     * @param argumentType The type of the argument passed to the subscriber methods (Object or long).
+     */
+    private void appendInvokeMethod(final String methodName, final List<Subscriber> subscribers, final int from, final int to, final String returnType,
+                                    final String argumentType) {
+        final String argumentName = getInvokeArgumentName(argumentType);
+        final boolean isVoid = "void".equals(returnType);
+        codeBuilderForDispatcherClass
+                .append("\n");
+        for (int handlerId = from; handlerId < to; handlerId++) {
+            if (subscribers.get(handlerId).isBatch()) {
+                //the batch of events is passed as Object
+                codeBuilderForDispatcherClass
+                        .append("\t@SuppressWarnings(\"unchecked\")\n");
+                break;
+            }
+        }
+        codeBuilderForDispatcherClass
+                .append("\tprivate ").append(returnType).append(" ").append(methodName).append("(final Object subscriber, final ").append(argumentType)
+                .append(" ").append(argumentName).append(") {\n")
+                .append("\t\tswitch (mHandlerId) {\n");
+        for (int handlerId = from; handlerId < to; handlerId++) {
+            final Subscriber handler = subscribers.get(handlerId);
+            final String handlerArgument;
+            if (handler.isPrimitive()) {
+                handlerArgument = getValueFromBits(handler.getEventClass(), argumentName);
+            } else if (handler.isBatch()) {
+                handlerArgument = "(List<" + handler.getEventClass() + ">) " + argumentName;
+            } else {
+                handlerArgument = "(" + handler.getEventClass() + ") " + argumentName;
+            }
+            final String call = "((" + handler.getSubscriberClass() + ") subscriber)." + handler.getMethod() + "(" + handlerArgument + ")";
+            codeBuilderForDispatcherClass
+                    .append("\t\t\tcase ").append(handlerId).append(":\n");
+            if (!isVoid && handler.isCancellable()) {
+                codeBuilderForDispatcherClass
+                        .append("\t\t\t\treturn ").append(call).append(";\n");
+            } else {
+                codeBuilderForDispatcherClass
+                        .append("\t\t\t\t").append(call).append(";\n")
+                        .append(isVoid ? "\t\t\t\treturn;\n" : "\t\t\t\treturn false;\n");
+            }
+        }
+        codeBuilderForDispatcherClass
+                .append("\t\t}\n")
+                .append(isVoid ? "" : "\t\treturn false;\n")
+                .append("\t}\n");
+    }
+
+    /**
+     * Get the name of the argument of the 'invoke' methods of the shared dispatcher classes.
+     *
+     * @param argumentType The type of the argument (Object or long).
+     * @return The name of the argument.
+     */
+    private static String getInvokeArgumentName(final String argumentType) {
+        return "long".equals(argumentType) ? "value" : "argument";
+    }
+
+    /**
+     * Generate the code which enqueues an event (or value) with the overflow policy of the dispatcher instance in a shared dispatcher class
+     * (switch dispatchers only).
+     *
+     * @param codeBuilder The code builder to append the code to.
+     * @param methodName  The name prefix of the enqueue helper methods (enqueue or enqueueValue).
+     * @param argument    The expression of the event instance (or value).
+     */
+    private static void appendOverflowPolicySwitch(final StringBuilder codeBuilder, final String methodName, final String argument) {
+        codeBuilder
+                .append("\t\tswitch (mOverflowPolicy) {\n");
+        for (final OverflowPolicy overflowPolicy : OverflowPolicy.values()) {
+            if (overflowPolicy == OverflowPolicy.BLOCK) {
+                continue;
+            }
+            codeBuilder
+                    .append("\t\t\tcase ").append(overflowPolicy.ordinal()).append(": //").append(overflowPolicy.name()).append("\n")
+                    .append("\t\t\t\t").append(methodName).append(getEnqueueMethod(overflowPolicy).substring("enqueue".length())).append("(")
+                    .append(argument).append(");\n")
+                    .append("\t\t\t\treturn;\n");
+        }
+        codeBuilder
+                .append("\t\t\tdefault: //").append(OverflowPolicy.BLOCK.name()).append("\n")
+                .append("\t\t\t\t").append(methodName).append(getEnqueueMethod(OverflowPolicy.BLOCK).substring("enqueue".length())).append("(")
+                .append(argument).append(");\n")
+                .append("\t\t}\n");
+    }
+
+    /**
+     * Write the dispatcher classes of the given subscribers (one dispatcher class per subscriber method). The dispatcher classes are generated
+     * one by one, each is written before the next one is generated.
+     *
+     * @param writer      The writer to write the code to.
+     * @param subscribers The subscribers to write the dispatcher classes for.
+     * @throws IOException If writing the code fails.
+     */
+    private void writeDispatcherClasses(final Writer writer, final List<Subscriber> subscribers) throws IOException {
+        for (final Subscriber subscriber : subscribers) {
+            codeBuilderForDispatcherClass.setLength(0);
+            if (subscriber.isPrimitive()) {
+                generatePrimitiveDispatcherClass(getDispatcherClassName(subscriber), Collections.singletonList(subscriber));
+            } else {
+                generateDispatcherClass(getDispatcherClassName(subscriber), Collections.singletonList(subscriber));
+            }
+            write(writer, codeBuilderForDispatcherClass);
+        }
+    }
+
+    /**
+     * Write the shared dispatcher classes of the subscribers (switch dispatchers only). The dispatcher classes are generated one by one, each
+     * is written before the next one is generated.
+     *
+     * @param writer The writer to write the code to.
+     * @throws IOException If writing the code fails.
+     */
+    private void writeSwitchDispatcherClasses(final Writer writer) throws IOException {
+        for (final Map.Entry<String, ArrayList<Subscriber>> dispatcherClassEntry : subscribersBySwitchDispatcherClass.entrySet()) {
+            final String dispatcherClassName = dispatcherClassEntry.getKey();
+            final ArrayList<Subscriber> subscribers = dispatcherClassEntry.getValue();
+
+            logBuilder
+                    .append("Generating shared Dispatcher (").append(dispatcherClassName).append(" for ").append(subscribers.size()).append(" subscriber methods\n");
+
+            codeBuilderForDispatcherClass.setLength(0);
+            if (subscribers.get(0).isPrimitive()) {
+                generatePrimitiveDispatcherClass(dispatcherClassName, subscribers);
+            } else {
+                generateDispatcherClass(dispatcherClassName, subscribers);
+            }
+            write(writer, codeBuilderForDispatcherClass);
+        }
+    }
+
+    /**
+     * Get the names of the dispatcher shard classes of the large event buses (one dispatcher class per subscriber method only). The shard
+     * classes are package private top level classes in the package of the event bus, generated by buildDispatcherShard(int, Writer) after
+     * the event bus class is built.
+     *
+     * @return The names of the dispatcher shard classes in the order of their indexes (empty if the dispatcher classes are not split to shard
+     * classes).
+     */
+    public List<String> getDispatcherShardClassNames() {
+        if (subscribersByUid == null) {
+            throw new IllegalStateException("Invalid builder state");
+        }
+        return dispatcherShardClassNames == null ? Collections.<String>emptyList() : Collections.unmodifiableList(dispatcherShardClassNames);
+    }
+
+    /**
+     * Generate the code of a dispatcher shard class to the given writer (after the event bus class is built). A shard class holds the
+     * dispatcher classes of DISPATCHER_SHARD_SIZE subscriber methods and creates their instances, so that the event bus class refers to the
+     * shard classes only (its constant pool stays small) and each generated source file stays small enough to be compiled quickly. The shard
+     * class uses the nested classes and the static members of the event bus class by a static import.
+     *
+     * @param shard  The index of the dispatcher shard class.
+     * @param writer The writer to write the generated code to.
+     * @throws IOException If writing the code fails.
+     */
+    public void buildDispatcherShard(final int shard, final Writer writer) throws IOException {
+        if (writer == null) {
+            throw new IllegalArgumentException("writer == null");
+        }
+        if (getDispatcherShardClassNames().isEmpty() || codeBuilderForDispatcherClass == null) {
+            throw new IllegalStateException("Invalid builder state");
+        }
+        if (shard < 0 || shard >= dispatcherShardClassNames.size()) {
+            throw new IllegalArgumentException("Unknown dispatcher shard: " + shard);
+        }
+        final List<Subscriber> subscribers = subscribersByUid.subList(shard * DISPATCHER_SHARD_SIZE,
+                Math.min(subscribersByUid.size(), (shard + 1) * DISPATCHER_SHARD_SIZE));
+        final String dispatcherShardClassName = dispatcherShardClassNames.get(shard);
+
+        //the header, the package and the imports of the event bus class
+        final int packageIndex = template.indexOf(MARKER_PACKAGE);
+        final int importsIndex = template.indexOf(MARKER_IMPORTS);
+        writer.write(template, 0, packageIndex);
+        write(writer, codeBuilderForPackage);
+        writer.write(template, packageIndex + MARKER_PACKAGE.length(), importsIndex - packageIndex - MARKER_PACKAGE.length());
+        write(writer, codeBuilderForSubscriberClassImports);
+        writer.write("\nimport static " + packageName + "." + EVENT_BUS_CLASS + ".*;\n\n");
+
+        codeBuilderForDispatcherClass.setLength(0);
+        codeBuilderForDispatcherClass
+                .append("/**\n")
+                .append(" * Dispatcher classes of the subscriber methods ").append(subscribers.get(0).getUid()).append(" to ")
+                .append(subscribers.get(subscribers.size() - 1).getUid()).append(" of the event bus.\n")
+                .append(" */\n")
+                .append("final class ").append(dispatcherShardClassName).append(" {\n")
+                .append("\n")
+                .append("\tprivate ").append(dispatcherShardClassName).append("() {\n")
+                .append("\t}\n")
+                .append("\n")
+                //the caller states the event type of the dispatcher (the dispatcher uid selects the dispatcher class of the same event class)
+                .append("\t@SuppressWarnings(\"unchecked\")\n")
+                .append("\tstatic <T> Dispatcher<?, T> create(final int dispatcherUid, final Object subscriber, final SubscriberReference subscriberReference, ")
+                .append("final Executor executor, ")
+                .append("final AtomicLong overflowCount").append(metricsTemplate == null ? "" : ", final DispatcherMetrics metrics")
+                .append(latencyTemplate == null ? "" : ", final LatencyRecorder latency").append(") {\n")
+                .append("\t\tfinal Dispatcher<?, ?> dispatcher;\n")
+                .append("\t\tswitch (dispatcherUid) {\n");
+        for (final Subscriber subscriber : subscribers) {
+            codeBuilderForDispatcherClass
+                    .append("\t\t\tcase ").append(subscriber.getUid()).append(":\n")
+                    .append("\t\t\t\tdispatcher = new ").append(getDispatcherClassName(subscriber)).append("((").append(subscriber.getSubscriberClass())
+                    .append(") subscriber, subscriberReference, executor").append(getRingBufferCapacity(subscriber) > 0 ? ", overflowCount" : "")
+                    .append(metricsTemplate != null && !subscriber.isPrimitive() ? ", metrics" : "")
+                    .append(latencyTemplate != null && !subscriber.isPrimitive() ? ", latency" : "").append(");\n")
+                    .append("\t\t\t\tbreak;\n");
+        }
+        codeBuilderForDispatcherClass
+                .append("\t\t\tdefault:\n")
+                .append("\t\t\t\tthrow new IllegalArgumentException(\"Unknown dispatcher: \" + dispatcherUid);\n")
+                .append("\t\t}\n")
+                .append("\t\treturn (Dispatcher<?, T>) dispatcher;\n")
+                .append("\t}\n")
+                .append("\n");
+        if (metricsTemplate != null) {
+            codeBuilderForDispatcherClass
+                    .append("\tstatic int getQueueDepth(final int dispatcherUid, final Dispatcher dispatcher) {\n")
+                    .append("\t\tswitch (dispatcherUid) {\n");
+            for (final Subscriber subscriber : subscribers) {
+                //nothing is queued for the posting thread subscribers
+                if (subscriber.isPrimitive() || subscriber.isPosting()) {
+                    continue;
+                }
+                final String dispatcherClassName = getDispatcherClassName(subscriber);
+                codeBuilderForDispatcherClass
+                        .append("\t\t\tcase ").append(subscriber.getUid()).append(":\n")
+                        .append("\t\t\t\treturn dispatcher instanceof ").append(dispatcherClassName).append(" ? ((").append(dispatcherClassName)
+                        .append(") dispatcher).getQueueDepth() : 0;\n");
             }
+            codeBuilderForDispatcherClass
+                    .append("\t\t}\n")
+                    .append("\t\treturn 0;\n")
+                    .append("\t}\n")
+                    .append("\n");
         }
+        write(writer, codeBuilderForDispatcherClass);
+        writeDispatcherClasses(writer, subscribers);
+        writer.write("}\n");
     }
 
     /**
@@ -351,6 +2641,27 @@ public class FlashBusBuilder {
      * @return The generated code.
      */
     public String build() {
+        final StringWriter writer = new StringWriter();
+        try {
+            build(writer);
+        } catch (IOException ioe) {
+            //not thrown by StringWriter
+            throw new IllegalStateException(ioe);
+        }
+        return writer.toString();
+    }
+
+    /**
+     * Generate code to the given writer. The template and the generated code segments are streamed to the writer (no copy of the whole
+     * generated class is made in memory).
+     *
+     * @param writer The writer to write the generated code to.
+     * @throws IOException If writing the code fails.
+     */
+    public void build(final Writer writer) throws IOException {
+        if (writer == null) {
+            throw new IllegalArgumentException("writer == null");
+        }
         if (template == null || subscriberList == null) {
             throw new IllegalStateException("Invalid builder state");
         }
@@ -367,23 +2678,131 @@ public class FlashBusBuilder {
         codeBuilderForInnerClasses = new StringBuilder();
         codeBuilderForFields = new StringBuilder();
         codeBuilderForMethods = new StringBuilder();
+        codeSegmentsForMethods = new ArrayList<>();
+        codeBuilderForDispatcherClass = new StringBuilder();
+
+        if (metricsTemplate != null) {
+            //the metrics classes are part of the generated event bus only if the metrics are compiled in
+            codeBuilderForSubscriberClassImports
+                    .append("import java.util.LinkedHashMap;\n")
+                    .append("import java.util.Map;\n");
+            codeBuilderForInnerClasses
+                    .append(metricsTemplate)
+                    .append("\n");
+        }
+        if (latencyTemplate != null) {
+            //the latency tracking classes are part of the generated event bus only if the latency tracking is compiled in
+            codeBuilderForInnerClasses
+                    .append(latencyTemplate)
+                    .append("\n");
+            codeBuilderForFields
+                    .append("private final AtomicReference<Tracer> mTracer = new AtomicReference<>();\n");
+        }
 
         logBuilder
                 .append("Generating event bus...\n")
                 .append("Total subscribers: ").append(subscriberList.size()).append("\n");
 
+        //the flag is a compile time constant so the fast path is compiled out when disabled (package private like the drain budget, the
+        //dispatcher classes of the dispatcher shard classes use them)
+        codeBuilderForFields
+                .append("static final boolean SAME_THREAD_DELIVERY = ").append(sameThreadDelivery).append(";\n\n");
+        if (drainBudgetEvents > 0) {
+            codeBuilderForFields
+                    .append("static final int DRAIN_BUDGET_EVENTS = ").append(drainBudgetEvents).append(";\n\n");
+        }
+        if (drainBudgetNanos > 0) {
+            codeBuilderForFields
+                    .append("static final long DRAIN_BUDGET_NANOS = ").append(drainBudgetNanos).append("L;\n\n");
+        }
+
         preProcessSubscribers();
 
         generateSubscriberClassRelatedCode();
 
         generateEventClassRelatedCode();
 
-        return template
-                .replace(MARKER_PACKAGE, codeBuilderForPackage)
-                .replace(MARKER_IMPORTS, codeBuilderForSubscriberClassImports.toString() + "\n" + codeBuilderForEventClassImports.toString())
-                .replace(MARKER_INNER_CLASSES, codeBuilderForInnerClasses.toString())
-                .replace(MARKER_FIELDS, codeBuilderForFields.toString())
-                .replace(MARKER_METHODS, codeBuilderForMethods.toString())
-                .concat("\n\n/*\n" + logBuilder.toString() + "*/");
+        generateChannelRelatedCode();
+
+        generateFieldInitializers();
+
+        if (dispatcherShardClassNames != null) {
+            //the shard classes import the nested classes of the event bus class, which is not possible from the unnamed package
+            if (packageName == null) {
+                throw new IllegalStateException("The package of the event bus is required for " + subscribersByUid.size() + " subscriber methods");
+            }
+            for (final String dispatcherShardClassName : dispatcherShardClassNames) {
+                logBuilder
+                        .append("Generating Dispatcher shard (").append(dispatcherShardClassName).append(")\n");
+            }
+        }
+
+        //replace the markers of the template with the generated code segments
+        final String[] markers = {MARKER_PACKAGE, MARKER_IMPORTS, MARKER_INNER_CLASSES, MARKER_FIELDS, MARKER_METHODS};
+        int position = 0;
+        while (true) {
+            int markerIndex = -1;
+            String marker = null;
+            for (final String candidateMarker : markers) {
+                final int candidateIndex = template.indexOf(candidateMarker, position);
+                if (candidateIndex >= 0 && (markerIndex < 0 || candidateIndex < markerIndex)) {
+                    markerIndex = candidateIndex;
+                    marker = candidateMarker;
+                }
+            }
+            if (marker == null) {
+                writer.write(template, position, template.length() - position);
+                break;
+            }
+            writer.write(template, position, markerIndex - position);
+            switch (marker) {
+                case MARKER_PACKAGE:
+                    write(writer, codeBuilderForPackage);
+                    break;
+                case MARKER_IMPORTS:
+                    write(writer, codeBuilderForSubscriberClassImports);
+                    writer.write("\n");
+                    write(writer, codeBuilderForEventClassImports);
+                    break;
+                case MARKER_INNER_CLASSES:
+                    write(writer, codeBuilderForInnerClasses);
+                    //the dispatcher classes of the shards are written to the source files of the shard classes
+                    if (switchDispatchers) {
+                        writeSwitchDispatcherClasses(writer);
+                    } else if (dispatcherShardClassNames == null) {
+                        writeDispatcherClasses(writer, subscribersByUid);
+                    }
+                    break;
+                case MARKER_FIELDS:
+                    write(writer, codeBuilderForFields);
+                    break;
+                default:
+                    for (final StringBuilder codeSegment : codeSegmentsForMethods) {
+                        write(writer, codeSegment);
+                    }
+                    write(writer, codeBuilderForMethods);
+                    break;
+            }
+            position = markerIndex + marker.length();
+        }
+        writer.write("\n\n/*\n");
+        write(writer, logBuilder);
+        writer.write("*/");
+    }
+
+    /**
+     * Write the content of the given code builder to the writer (in chunks, without copying the whole content to a string).
+     *
+     * @param writer      The writer.
+     * @param codeBuilder The code builder.
+     * @throws IOException If writing the code fails.
+     */
+    private static void write(final Writer writer, final StringBuilder codeBuilder) throws IOException {
+        final char[] buffer = new char[8192];
+        for (int start = 0; start < codeBuilder.length(); start += buffer.length) {
+            final int end = Math.min(codeBuilder.length(), start + buffer.length);
+            codeBuilder.getChars(start, end, buffer, 0);
+            writer.write(buffer, 0, end - start);
+        }
     }
 }
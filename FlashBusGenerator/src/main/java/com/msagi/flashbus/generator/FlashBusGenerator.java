@@ -16,36 +16,69 @@
 package com.msagi.flashbus.generator;
 
 import com.msagi.flashbus.annotation.Subscribe;
+import com.msagi.flashbus.annotation.SubscriberIndex;
 
 import java.io.BufferedReader;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.PrintWriter;
 import java.io.StringWriter;
+import java.io.Writer;
 import java.net.URL;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 import javax.annotation.processing.AbstractProcessor;
 import javax.annotation.processing.Messager;
 import javax.annotation.processing.ProcessingEnvironment;
 import javax.annotation.processing.RoundEnvironment;
-import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.annotation.processing.SupportedOptions;
 import javax.annotation.processing.SupportedSourceVersion;
 import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
 import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.PackageElement;
 import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
 import javax.tools.Diagnostic;
 import javax.tools.JavaFileObject;
 
 /**
  * Annotation processor to generate FlashBus event bus class.
+ * The event bus class is generated once, in the first round with subscribers (the application code refers to the event bus class, so it
+ * cannot wait for the last round). It is an aggregating processor of the Gradle incremental annotation processing (see
+ * META-INF/gradle/incremental.annotation.processors): the event bus class is generated from all the subscriber classes, which are recorded
+ * as its originating elements. The processor keeps no static state and the generated code is sorted, so the same subscribers produce the
+ * same event bus class in every build of a long lived compiler process (e.g. Gradle daemon).
+ * Library modules (-Alibrary=true) generate a subscriber index class instead of the event bus class. The application module finds the
+ * subscriber index classes of the libraries on the classpath (in the SUBSCRIBER_INDEX_PACKAGE package, or the ones listed by the
+ * -AsubscriberIndexes compiler parameter) and generates one event bus for its own subscribers and the subscribers of the libraries. The
+ * processor supports the Subscribe and SubscriberIndex annotations only, so an application module without subscriber methods of its own
+ * annotates one of its classes with SubscriberIndex to have the event bus generated.
  *
  * @author msagi (miklos.sagi@gmail.com)
  */
-@SupportedAnnotationTypes("com.msagi.flashbus.annotation.Subscribe")
+@SupportedOptions({FlashBusGenerator.PARAMETER_PACKAGE, FlashBusGenerator.PARAMETER_RUNTIME, FlashBusGenerator.PARAMETER_QUEUE,
+        FlashBusGenerator.PARAMETER_QUEUE_CAPACITY, FlashBusGenerator.PARAMETER_SAME_THREAD_DELIVERY,
+        FlashBusGenerator.PARAMETER_WEAK_SUBSCRIBERS, FlashBusGenerator.PARAMETER_METRICS, FlashBusGenerator.PARAMETER_LATENCY,
+        FlashBusGenerator.PARAMETER_DRAIN_BUDGET_EVENTS, FlashBusGenerator.PARAMETER_DRAIN_BUDGET_NANOS, FlashBusGenerator.PARAMETER_LIBRARY,
+        FlashBusGenerator.PARAMETER_DISPATCHERS, FlashBusGenerator.PARAMETER_DEAD_POSTS, FlashBusGenerator.PARAMETER_SUBSCRIBER_INDEXES})
 @SupportedSourceVersion(SourceVersion.RELEASE_7)
 public class FlashBusGenerator extends AbstractProcessor {
 
@@ -65,30 +98,266 @@ public class FlashBusGenerator extends AbstractProcessor {
     private static final java.lang.String EVENT_BUS_CLASS = "FlashBus";
 
     /**
-     * The event bus class template file resource path.
+     * The event bus class template file resource path (both runtimes).
      */
     private static final String EVENT_BUS_CLASS_TEMPLATE = "/com/msagi/flashbus/FlashBus.java.template";
 
+    /**
+     * The runtime specific code template file resource path (Android runtime).
+     */
+    private static final String EVENT_BUS_RUNTIME_TEMPLATE = "/com/msagi/flashbus/FlashBusRuntime.android.java.template";
+
+    /**
+     * The runtime specific code template file resource path (plain JVM runtime).
+     */
+    private static final String EVENT_BUS_RUNTIME_TEMPLATE_JVM = "/com/msagi/flashbus/FlashBusRuntime.jvm.java.template";
+
+    /**
+     * The pattern of the section markers of the runtime specific code template (a section replaces the same marker of the event bus class
+     * template).
+     */
+    private static final Pattern RUNTIME_SECTION_MARKER = Pattern.compile("^\\{Runtime\\w+\\}$", Pattern.MULTILINE);
+
+    /**
+     * The metrics classes template file resource path (both runtimes).
+     */
+    private static final String EVENT_BUS_METRICS_TEMPLATE = "/com/msagi/flashbus/FlashBusMetrics.java.template";
+
+    /**
+     * The latency tracking classes template file resource path (both runtimes).
+     */
+    private static final String EVENT_BUS_LATENCY_TEMPLATE = "/com/msagi/flashbus/FlashBusLatency.java.template";
+
+    /**
+     * The subscriber index class template file resource path (library modules).
+     */
+    private static final String SUBSCRIBER_INDEX_CLASS_TEMPLATE = "/com/msagi/flashbus/FlashBusIndex.java.template";
+
+    /**
+     * The package of the subscriber index classes of the library modules (shared by the library modules, so that the application module can
+     * list the subscriber index classes on the classpath).
+     */
+    private static final String SUBSCRIBER_INDEX_PACKAGE = "com.msagi.flashbus.index";
+
+    /**
+     * The (simple) class name prefix of the subscriber index classes (followed by the package of the library module).
+     */
+    private static final String SUBSCRIBER_INDEX_CLASS_PREFIX = "FlashBusIndex_";
+
     /**
      * The compiler parameter for event class package.
      */
-    private static final String PARAMETER_PACKAGE = "package";
+    static final String PARAMETER_PACKAGE = "package";
+
+    /**
+     * The compiler parameter for the target runtime of the event bus.
+     */
+    static final String PARAMETER_RUNTIME = "runtime";
+
+    /**
+     * The compiler parameter for the event queue type of the dispatchers.
+     */
+    static final String PARAMETER_QUEUE = "queue";
+
+    /**
+     * The compiler parameter for the default capacity of the ring buffer event queues.
+     */
+    static final String PARAMETER_QUEUE_CAPACITY = "queueCapacity";
+
+    /**
+     * The compiler parameter to deliver the events inline when posting on the thread of the subscriber.
+     */
+    static final String PARAMETER_SAME_THREAD_DELIVERY = "sameThreadDelivery";
+
+    /**
+     * The compiler parameter to hold the subscriber instances by weak references.
+     */
+    static final String PARAMETER_WEAK_SUBSCRIBERS = "weakSubscribers";
+
+    /**
+     * The compiler parameter to compile in the metrics of the event bus.
+     */
+    static final String PARAMETER_METRICS = "metrics";
+
+    /**
+     * The compiler parameter to compile in the latency tracking of the event bus.
+     */
+    static final String PARAMETER_LATENCY = "latency";
+
+    /**
+     * The compiler parameter for the maximum number of events a dispatcher delivers in one run.
+     */
+    static final String PARAMETER_DRAIN_BUDGET_EVENTS = "drainBudgetEvents";
+
+    /**
+     * The compiler parameter for the maximum time (in nanoseconds) a dispatcher delivers events in one run.
+     */
+    static final String PARAMETER_DRAIN_BUDGET_NANOS = "drainBudgetNanos";
+
+    /**
+     * The compiler parameter to generate the subscriber index class of a library module instead of the event bus class.
+     */
+    static final String PARAMETER_LIBRARY = "library";
+
+    /**
+     * The compiler parameter for the subscriber index classes of the library modules (comma separated class names, instead of the subscriber
+     * index classes found in the SUBSCRIBER_INDEX_PACKAGE package).
+     */
+    static final String PARAMETER_SUBSCRIBER_INDEXES = "subscriberIndexes";
+
+    /**
+     * The compiler parameter for the layout of the generated dispatcher classes.
+     */
+    static final String PARAMETER_DISPATCHERS = "dispatchers";
+
+    /**
+     * The compiler parameter for the reporting of the post calls without subscribers. The check needs the Compiler Tree API of javac, it is
+     * skipped (with a warning if the dead posts are errors) if the processing environment is not the one of javac or a Gradle wrapper of it.
+     */
+    static final String PARAMETER_DEAD_POSTS = "deadPosts";
+
+    /**
+     * The unbounded linked event queue type (default).
+     */
+    private static final String QUEUE_LINKED = "linked";
+
+    /**
+     * The bounded, preallocated ring buffer event queue type.
+     */
+    private static final String QUEUE_RING = "ring";
+
+    /**
+     * One dispatcher class per subscriber method (default).
+     */
+    private static final String DISPATCHERS_CLASS = "class";
+
+    /**
+     * Shared dispatcher classes which select the subscriber method by handler id (fewer classes to load).
+     */
+    private static final String DISPATCHERS_SWITCH = "switch";
+
+    /**
+     * Report the post calls without subscribers as warnings (default).
+     */
+    private static final String DEAD_POSTS_WARNING = "warning";
+
+    /**
+     * Report the post calls without subscribers as errors (fail the build).
+     */
+    private static final String DEAD_POSTS_ERROR = "error";
+
+    /**
+     * Do not look for post calls without subscribers.
+     */
+    private static final String DEAD_POSTS_IGNORE = "ignore";
+
+    /**
+     * The Android target runtime (default).
+     */
+    private static final String RUNTIME_ANDROID = "android";
+
+    /**
+     * The plain JVM target runtime (java.util.concurrent executors instead of android.os handlers).
+     */
+    private static final String RUNTIME_JVM = "jvm";
 
     /**
      * The list of subscribers to build the event bus for.
      */
     private final List<Subscriber> subscriberList = new ArrayList<>();
 
+    /**
+     * The classes containing the subscriber methods (the originating elements of the event bus class).
+     */
+    private final Set<String> subscriberClasses = new TreeSet<>();
+
     /**
      * The event bus package (configurable with compiler parameter -Apackage='packagename')
      */
     private String eventBusPackage = DEFAULT_EVENT_BUS_PACKAGE;
 
+    /**
+     * The runtime specific code template resource path (configurable with compiler parameter -Aruntime='android|jvm')
+     */
+    private String runtimeTemplate = EVENT_BUS_RUNTIME_TEMPLATE;
+
+    /**
+     * Flag to use ring buffer event queues for all the dispatchers (configurable with compiler parameter -Aqueue='linked|ring')
+     */
+    private boolean ringBufferQueues;
+
+    /**
+     * The default capacity of the ring buffer event queues (configurable with compiler parameter -AqueueCapacity=capacity)
+     */
+    private int defaultQueueCapacity = FlashBusBuilder.DEFAULT_QUEUE_CAPACITY;
+
+    /**
+     * Flag to deliver the events inline when posting on the thread of the subscriber (configurable with compiler parameter
+     * -AsameThreadDelivery='true|false')
+     */
+    private boolean sameThreadDelivery;
+
+    /**
+     * Flag to hold the subscriber instances by weak references (configurable with compiler parameter -AweakSubscribers='true|false')
+     */
+    private boolean weakSubscribers;
+
+    /**
+     * Flag to compile in the metrics of the event bus (configurable with compiler parameter -Ametrics='true|false')
+     */
+    private boolean metrics;
+
+    /**
+     * Flag to compile in the latency tracking of the event bus (configurable with compiler parameter -Alatency='true|false')
+     */
+    private boolean latency;
+
+    /**
+     * The maximum number of events a dispatcher delivers in one run, 0 for no limit (configurable with compiler parameter
+     * -AdrainBudgetEvents=count)
+     */
+    private int drainBudgetEvents;
+
+    /**
+     * The maximum time a dispatcher delivers events in one run, 0 for no limit (configurable with compiler parameter
+     * -AdrainBudgetNanos=nanoseconds)
+     */
+    private long drainBudgetNanos;
+
+    /**
+     * Flag to generate the subscriber index class of a library module instead of the event bus class (configurable with compiler parameter
+     * -Alibrary='true|false')
+     */
+    private boolean library;
+
+    /**
+     * The subscriber index classes of the library modules, null to find them in the SUBSCRIBER_INDEX_PACKAGE package (configurable with
+     * compiler parameter -AsubscriberIndexes='class,class,...')
+     */
+    private List<String> subscriberIndexes;
+
+    /**
+     * Flag to generate shared dispatcher classes selecting the subscriber method by handler id instead of one dispatcher class per
+     * subscriber method (configurable with compiler parameter -Adispatchers='class|switch')
+     */
+    private boolean switchDispatchers;
+
+    /**
+     * The kind of the messages reporting the post calls without subscribers, null to ignore them (configurable with compiler parameter
+     * -AdeadPosts='warning|error|ignore')
+     */
+    private Diagnostic.Kind deadPostsMessageKind = Diagnostic.Kind.WARNING;
+
     /**
      * The index of build round.
      */
     private int roundIndex;
 
+    /**
+     * Flag to track if the event bus class has been generated.
+     */
+    private boolean eventBusGenerated;
+
     /**
      * Print log message to diagnostic log.
      *
@@ -138,42 +407,147 @@ public class FlashBusGenerator extends AbstractProcessor {
             final String optionValue = options.get(optionKey);
             if (optionKey.equalsIgnoreCase(PARAMETER_PACKAGE)) {
                 eventBusPackage = optionValue;
+            } else if (optionKey.equalsIgnoreCase(PARAMETER_RUNTIME)) {
+                if (RUNTIME_JVM.equalsIgnoreCase(optionValue)) {
+                    runtimeTemplate = EVENT_BUS_RUNTIME_TEMPLATE_JVM;
+                } else if (RUNTIME_ANDROID.equalsIgnoreCase(optionValue)) {
+                    runtimeTemplate = EVENT_BUS_RUNTIME_TEMPLATE;
+                } else {
+                    logError("init: unknown runtime: " + optionValue + " (supported: " + RUNTIME_ANDROID + ", " + RUNTIME_JVM + ")", /* throwable */ null);
+                }
+            } else if (optionKey.equalsIgnoreCase(PARAMETER_QUEUE)) {
+                if (QUEUE_RING.equalsIgnoreCase(optionValue)) {
+                    ringBufferQueues = true;
+                } else if (QUEUE_LINKED.equalsIgnoreCase(optionValue)) {
+                    ringBufferQueues = false;
+                } else {
+                    logError("init: unknown queue type: " + optionValue + " (supported: " + QUEUE_LINKED + ", " + QUEUE_RING + ")", /* throwable */ null);
+                }
+            } else if (optionKey.equalsIgnoreCase(PARAMETER_QUEUE_CAPACITY)) {
+                try {
+                    final int queueCapacity = Integer.parseInt(optionValue);
+                    if (queueCapacity < 1 || queueCapacity > FlashBusBuilder.MAX_QUEUE_CAPACITY) {
+                        logError("init: invalid queue capacity: " + optionValue + " (supported: 1.." + FlashBusBuilder.MAX_QUEUE_CAPACITY + ")",
+                                /* throwable */ null);
+                    } else {
+                        defaultQueueCapacity = queueCapacity;
+                    }
+                } catch (NumberFormatException nfe) {
+                    logError("init: invalid queue capacity: " + optionValue, nfe);
+                }
+            } else if (optionKey.equalsIgnoreCase(PARAMETER_SAME_THREAD_DELIVERY)) {
+                sameThreadDelivery = Boolean.parseBoolean(optionValue);
+            } else if (optionKey.equalsIgnoreCase(PARAMETER_WEAK_SUBSCRIBERS)) {
+                weakSubscribers = Boolean.parseBoolean(optionValue);
+            } else if (optionKey.equalsIgnoreCase(PARAMETER_METRICS)) {
+                metrics = Boolean.parseBoolean(optionValue);
+            } else if (optionKey.equalsIgnoreCase(PARAMETER_LATENCY)) {
+                latency = Boolean.parseBoolean(optionValue);
+            } else if (optionKey.equalsIgnoreCase(PARAMETER_DRAIN_BUDGET_EVENTS)) {
+                try {
+                    drainBudgetEvents = Integer.parseInt(optionValue);
+                } catch (NumberFormatException nfe) {
+                    logError("init: invalid drain budget events: " + optionValue, nfe);
+                }
+            } else if (optionKey.equalsIgnoreCase(PARAMETER_DRAIN_BUDGET_NANOS)) {
+                try {
+                    drainBudgetNanos = Long.parseLong(optionValue);
+                } catch (NumberFormatException nfe) {
+                    logError("init: invalid drain budget nanos: " + optionValue, nfe);
+                }
+            } else if (optionKey.equalsIgnoreCase(PARAMETER_LIBRARY)) {
+                library = Boolean.parseBoolean(optionValue);
+            } else if (optionKey.equalsIgnoreCase(PARAMETER_SUBSCRIBER_INDEXES)) {
+                subscriberIndexes = new ArrayList<>();
+                for (final String subscriberIndex : (optionValue == null ? "" : optionValue).split(",")) {
+                    if (!subscriberIndex.trim().isEmpty()) {
+                        subscriberIndexes.add(subscriberIndex.trim());
+                    }
+                }
+            } else if (optionKey.equalsIgnoreCase(PARAMETER_DISPATCHERS)) {
+                if (DISPATCHERS_SWITCH.equalsIgnoreCase(optionValue)) {
+                    switchDispatchers = true;
+                } else if (DISPATCHERS_CLASS.equalsIgnoreCase(optionValue)) {
+                    switchDispatchers = false;
+                } else {
+                    logError("init: unknown dispatchers layout: " + optionValue + " (supported: " + DISPATCHERS_CLASS + ", " + DISPATCHERS_SWITCH + ")",
+                            /* throwable */ null);
+                }
+            } else if (optionKey.equalsIgnoreCase(PARAMETER_DEAD_POSTS)) {
+                if (DEAD_POSTS_WARNING.equalsIgnoreCase(optionValue)) {
+                    deadPostsMessageKind = Diagnostic.Kind.WARNING;
+                } else if (DEAD_POSTS_ERROR.equalsIgnoreCase(optionValue)) {
+                    deadPostsMessageKind = Diagnostic.Kind.ERROR;
+                } else if (DEAD_POSTS_IGNORE.equalsIgnoreCase(optionValue)) {
+                    deadPostsMessageKind = null;
+                } else {
+                    logError("init: unknown dead posts reporting: " + optionValue + " (supported: " + DEAD_POSTS_WARNING + ", " + DEAD_POSTS_ERROR + ", "
+                            + DEAD_POSTS_IGNORE + ")", /* throwable */ null);
+                }
             } else {
                 log("init: unknown option: key: " + optionKey + ", value: " + optionValue);
             }
         }
         log("init: event bus package: " + eventBusPackage);
+        log("init: runtime template: " + runtimeTemplate);
+        log("init: ring buffer event queues: " + ringBufferQueues + " (default capacity: " + defaultQueueCapacity + ")");
+        log("init: same thread delivery: " + sameThreadDelivery);
+        log("init: weak subscribers: " + weakSubscribers);
+        log("init: metrics: " + metrics);
+        log("init: latency tracking: " + latency);
+        log("init: drain budget: " + drainBudgetEvents + " events, " + drainBudgetNanos + " ns (0: no limit)");
+        log("init: library (subscriber index only): " + library);
+        log("init: subscriber indexes: " + (subscriberIndexes == null ? "package " + SUBSCRIBER_INDEX_PACKAGE : subscriberIndexes));
+        log("init: switch dispatchers: " + switchDispatchers);
+        log("init: dead posts: " + (deadPostsMessageKind == null ? DEAD_POSTS_IGNORE : deadPostsMessageKind.toString()));
+
+        //library modules do not generate the event bus class, so they have no post calls to check
+        if (!library && deadPostsMessageKind != null) {
+            try {
+                DeadPostScanner.install(processingEnv, eventBusPackage + "." + EVENT_BUS_CLASS, deadPostsMessageKind);
+            } catch (RuntimeException | LinkageError e) {
+                //e.g. the classes of the Compiler Tree API are missing (the scanner skips the other compilers itself)
+                log("init: dead post detection is not available: " + e);
+            }
+        }
 
         log("init: done");
     }
 
+    @Override
+    public Set<String> getSupportedAnnotationTypes() {
+        if (library) {
+            return Collections.singleton(Subscribe.class.getName());
+        }
+        //an application module without subscribers of its own is processed if one of its classes is annotated with SubscriberIndex
+        return new HashSet<>(Arrays.asList(Subscribe.class.getName(), SubscriberIndex.class.getName()));
+    }
+
     @Override
     public boolean process(final Set<? extends TypeElement> annotations, final RoundEnvironment roundEnv) {
 
         log("generate: start (round: " + roundIndex + ")");
 
         try {
-            final String subscribeAnnotationClass = Subscribe.class.getName();
-            for (final TypeElement annotation : annotations) {
-                final String annotationClass = annotation.toString();
-                if (subscribeAnnotationClass.equals(annotationClass)) {
-                    for (final Element element : roundEnv.getElementsAnnotatedWith(annotation)) {
-
-                        try {
-                            final Subscriber subscriber = Subscriber.fromElement(element);
-                            log("generate: detected: " + subscriber.toString());
-                            subscriberList.add(subscriber);
-                        } catch (RuntimeException rte) {
-                            logError("generate: error processing subscriber", rte);
-                        }
-                    }
-                } else {
-                    logError("generate: annotation not supported: " + annotationClass, /* throwable */ null);
+            for (final Element element : roundEnv.getElementsAnnotatedWith(Subscribe.class)) {
+
+                if (eventBusGenerated) {
+                    //e.g. subscribers in the sources generated by other processors
+                    log(Diagnostic.Kind.WARNING, "generate: subscriber found after the event bus class was generated: ignored: " + element,
+                            /* throwable */ null);
+                    continue;
                 }
+                addSubscriber(element);
             }
 
-            if (roundIndex == 0) {
-                generateEventBusClass();
+            if (!eventBusGenerated && !roundEnv.processingOver()) {
+                eventBusGenerated = true;
+                if (library) {
+                    generateSubscriberIndexClass();
+                } else {
+                    loadSubscriberIndexes(roundEnv);
+                    generateEventBusClass();
+                }
             }
         } catch (RuntimeException rte) {
             logError("generate: runtime error", rte);
@@ -182,24 +556,153 @@ public class FlashBusGenerator extends AbstractProcessor {
         log("generate: done (round: " + roundIndex + ")");
 
         roundIndex++;
-        return true;
+        //the annotations are not claimed (other processors may process them too)
+        return false;
+    }
+
+    /**
+     * Add the subscriber of the given subscriber method element.
+     *
+     * @param element The subscriber method element.
+     */
+    private void addSubscriber(final Element element) {
+        try {
+            final Subscriber subscriber = Subscriber.fromElement(element);
+            log("generate: detected: " + subscriber.toString());
+            subscriberList.add(subscriber);
+            subscriberClasses.add(subscriber.getSubscriberClass());
+        } catch (RuntimeException rte) {
+            logError("generate: error processing subscriber", rte);
+        }
+    }
+
+    /**
+     * Load the subscribers of the subscriber index classes: the subscriber index classes of the library modules (listed by the
+     * -AsubscriberIndexes compiler parameter or found in the SUBSCRIBER_INDEX_PACKAGE package on the classpath) and the classes of the
+     * application module annotated with SubscriberIndex.
+     *
+     * @param roundEnv The environment of the processing round.
+     */
+    private void loadSubscriberIndexes(final RoundEnvironment roundEnv) {
+        final Elements elementUtils = processingEnv.getElementUtils();
+        final Set<Element> indexElements = new LinkedHashSet<>(roundEnv.getElementsAnnotatedWith(SubscriberIndex.class));
+        if (subscriberIndexes != null) {
+            for (final String subscriberIndex : subscriberIndexes) {
+                final TypeElement indexElement = elementUtils.getTypeElement(subscriberIndex);
+                if (indexElement == null) {
+                    logError("loadSubscriberIndexes: subscriber index class not found: " + subscriberIndex, /* throwable */ null);
+                    continue;
+                }
+                indexElements.add(indexElement);
+            }
+        } else {
+            final PackageElement indexPackage = elementUtils.getPackageElement(SUBSCRIBER_INDEX_PACKAGE);
+            if (indexPackage != null) {
+                indexElements.addAll(indexPackage.getEnclosedElements());
+            }
+        }
+        for (final Element indexElement : indexElements) {
+            loadSubscriberIndex(indexElement);
+        }
+    }
+
+    /**
+     * Load the subscribers of the given subscriber index class (the classes without SubscriberIndex annotation are skipped).
+     *
+     * @param indexElement The subscriber index class element.
+     */
+    private void loadSubscriberIndex(final Element indexElement) {
+        final String subscriberIndexAnnotationClass = SubscriberIndex.class.getName();
+        for (final AnnotationMirror annotationMirror : indexElement.getAnnotationMirrors()) {
+            final TypeElement annotationElement = (TypeElement) annotationMirror.getAnnotationType().asElement();
+            if (!subscriberIndexAnnotationClass.contentEquals(annotationElement.getQualifiedName())) {
+                continue;
+            }
+            log("loadSubscriberIndexes: subscriber index: " + indexElement);
+            for (final AnnotationValue annotationValue : annotationMirror.getElementValues().values()) {
+                @SuppressWarnings("unchecked")
+                final List<? extends AnnotationValue> subscriberClassValues = (List<? extends AnnotationValue>) annotationValue.getValue();
+                for (final AnnotationValue subscriberClassValue : subscriberClassValues) {
+                    final TypeElement subscriberClassElement = (TypeElement) ((DeclaredType) subscriberClassValue.getValue()).asElement();
+                    if (subscriberClasses.contains(subscriberClassElement.getQualifiedName().toString())) {
+                        //compiled in the application module too (or listed by an other subscriber index)
+                        continue;
+                    }
+                    for (final Element element : subscriberClassElement.getEnclosedElements()) {
+                        if (element.getKind() == ElementKind.METHOD && element.getAnnotation(Subscribe.class) != null) {
+                            addSubscriber(element);
+                        }
+                    }
+                }
+            }
+        }
     }
 
     /**
-     * Load the event bus java class template content.
+     * Generate the subscriber index class of the library module (lists the classes containing subscriber methods).
+     */
+    private void generateSubscriberIndexClass() {
+        if (subscriberClasses.isEmpty()) {
+            return;
+        }
+        final String indexClass = SUBSCRIBER_INDEX_CLASS_PREFIX + eventBusPackage.replace('.', '_');
+        final String indexClassName = SUBSCRIBER_INDEX_PACKAGE + "." + indexClass;
+        log("generateSubscriberIndexClass: start (class: " + indexClassName + ")");
+
+        PrintWriter classWriter = null;
+        JavaFileObject subscriberIndexClass = null;
+        try {
+            final StringBuilder subscriberClassesBuilder = new StringBuilder();
+            final List<Element> originatingElements = new ArrayList<>();
+            for (final String subscriberClass : subscriberClasses) {
+                subscriberClassesBuilder.append("        ").append(subscriberClass).append(".class,\n");
+                final TypeElement subscriberClassElement = processingEnv.getElementUtils().getTypeElement(subscriberClass);
+                if (subscriberClassElement != null) {
+                    originatingElements.add(subscriberClassElement);
+                }
+            }
+            final String subscriberIndexCode = loadTemplate(SUBSCRIBER_INDEX_CLASS_TEMPLATE)
+                    .replace("{Package}", "package " + SUBSCRIBER_INDEX_PACKAGE + ";\n")
+                    .replace("{SubscriberClasses}", subscriberClassesBuilder)
+                    .replace("{Class}", indexClass);
+
+            subscriberIndexClass = processingEnv.getFiler().createSourceFile(indexClassName,
+                    originatingElements.toArray(new Element[originatingElements.size()]));
+            classWriter = new PrintWriter(subscriberIndexClass.openWriter());
+            classWriter.write(subscriberIndexCode);
+
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        } finally {
+            if (classWriter != null) {
+                try {
+                    classWriter.close();
+                    log("generateSubscriberIndexClass: subscriber index class generated (class: " + subscriberIndexClass.getName() + ")");
+                } catch (Exception ioe) {
+                    logError("generateSubscriberIndexClass: I/O error writing subscriber index class (class: " + subscriberIndexClass.getName() + ")", ioe);
+                }
+            }
+        }
+
+        log("generateSubscriberIndexClass: done");
+    }
+
+    /**
+     * Load java class template content.
      *
+     * @param template The template file resource path.
      * @return The template content.
      * @throws Exception If error happens during loading.
      */
-    private String loadTemplate() throws Exception {
+    private String loadTemplate(final String template) throws Exception {
 
-        log("loadTemplate: start (template: " + EVENT_BUS_CLASS_TEMPLATE + ")");
+        log("loadTemplate: start (template: " + template + ")");
 
         //this is a workaround of a bug (the URLConnection is caching the jar file; the other solution would be to load the Event Bus template file manually)
         new URL("http://localhost/").openConnection().setDefaultUseCaches(false);
         log("loadTemplate: java.net.URLConnection cache bug workaround applied");
 
-        final InputStream inputStream = getClass().getResourceAsStream(EVENT_BUS_CLASS_TEMPLATE);
+        final InputStream inputStream = getClass().getResourceAsStream(template);
         final BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream));
         final StringBuilder builder = new StringBuilder();
         String line;
@@ -213,6 +716,80 @@ public class FlashBusGenerator extends AbstractProcessor {
         return builder.toString();
     }
 
+    /**
+     * Load the event bus class template with the code of the target runtime: every section of the runtime template (starting with its
+     * marker line, e.g. {RuntimeLogging}) replaces the marker line of the event bus class template.
+     *
+     * @return The event bus class template of the target runtime.
+     * @throws Exception If error happens during loading.
+     */
+    private String loadEventBusTemplate() throws Exception {
+        String eventBusTemplate = loadTemplate(EVENT_BUS_CLASS_TEMPLATE);
+        final String runtimeCode = loadTemplate(runtimeTemplate);
+        final Matcher markerMatcher = RUNTIME_SECTION_MARKER.matcher(runtimeCode);
+        boolean hasMarker = markerMatcher.find();
+        while (hasMarker) {
+            final String marker = markerMatcher.group() + "\n";
+            final int sectionStart = markerMatcher.end() + 1;
+            hasMarker = markerMatcher.find();
+            final int sectionEnd = hasMarker ? markerMatcher.start() : runtimeCode.length();
+            if (!eventBusTemplate.contains(marker)) {
+                throw new IllegalStateException("Unknown runtime template section: " + marker.trim());
+            }
+            eventBusTemplate = eventBusTemplate.replace(marker, runtimeCode.substring(sectionStart, sectionEnd));
+        }
+        if (RUNTIME_SECTION_MARKER.matcher(eventBusTemplate).find()) {
+            throw new IllegalStateException("Runtime template section missing: " + runtimeTemplate);
+        }
+        return eventBusTemplate;
+    }
+
+    /**
+     * Resolve the subscribed supertypes (super classes and interfaces) of the subscribed event classes, so that the generated event bus can
+     * deliver the events to the subscribers of their supertypes without any runtime lookup.
+     *
+     * @return The subscribed supertypes by event class (ordered from the most specific supertype).
+     */
+    private Map<String, List<String>> resolveEventClassHierarchy() {
+        final Set<String> eventClasses = new TreeSet<>();
+        for (final Subscriber subscriber : subscriberList) {
+            if (!subscriber.isPrimitive()) {
+                eventClasses.add(subscriber.getEventClass());
+            }
+        }
+
+        final Elements elementUtils = processingEnv.getElementUtils();
+        final Types typeUtils = processingEnv.getTypeUtils();
+        final Map<String, List<String>> supertypesByEventClass = new HashMap<>();
+        for (final String eventClass : eventClasses) {
+            final List<String> supertypes = new ArrayList<>();
+            final TypeElement eventClassElement = elementUtils.getTypeElement(eventClass);
+            if (eventClassElement != null) {
+                //breadth first walk, so that the more specific supertypes come first
+                final LinkedList<TypeMirror> supertypeQueue = new LinkedList<>(typeUtils.directSupertypes(eventClassElement.asType()));
+                final Set<String> visitedSupertypes = new HashSet<>();
+                while (!supertypeQueue.isEmpty()) {
+                    final TypeMirror supertype = supertypeQueue.removeFirst();
+                    final String supertypeClass = typeUtils.erasure(supertype).toString();
+                    if (!visitedSupertypes.add(supertypeClass)) {
+                        continue;
+                    }
+                    if (eventClasses.contains(supertypeClass)) {
+                        supertypes.add(supertypeClass);
+                    }
+                    supertypeQueue.addAll(typeUtils.directSupertypes(supertype));
+                }
+            } else {
+                log("resolveEventClassHierarchy: event class not found: " + eventClass);
+            }
+            if (!supertypes.isEmpty()) {
+                log("resolveEventClassHierarchy: " + eventClass + " is dispatched to the subscribers of " + supertypes);
+            }
+            supertypesByEventClass.put(eventClass, supertypes);
+        }
+        return supertypesByEventClass;
+    }
+
     /**
      * Generate custom event bus class.
      */
@@ -223,15 +800,50 @@ public class FlashBusGenerator extends AbstractProcessor {
         PrintWriter classWriter = null;
         JavaFileObject eventBusClass = null;
         try {
-            final String eventBusCode = new FlashBusBuilder()
+            final FlashBusBuilder eventBusBuilder = new FlashBusBuilder()
                     .withPackage(eventBusPackage)
                     .withSubscribers(subscriberList)
-                    .withTemplate(loadTemplate())
-                    .build();
-
-            eventBusClass = processingEnv.getFiler().createSourceFile(eventBusClassName);
+                    .withEventClassHierarchy(resolveEventClassHierarchy())
+                    .withRingBufferQueues(ringBufferQueues)
+                    .withDefaultQueueCapacity(defaultQueueCapacity)
+                    .withSameThreadDelivery(sameThreadDelivery)
+                    .withWeakSubscribers(weakSubscribers)
+                    .withDrainBudget(drainBudgetEvents, drainBudgetNanos)
+                    .withSwitchDispatchers(switchDispatchers)
+                    .withTemplate(loadEventBusTemplate());
+            if (metrics) {
+                eventBusBuilder.withMetricsTemplate(loadTemplate(EVENT_BUS_METRICS_TEMPLATE));
+            }
+            if (latency) {
+                eventBusBuilder.withLatencyTemplate(loadTemplate(EVENT_BUS_LATENCY_TEMPLATE));
+            }
+            //one originating element per subscriber class
+            final List<Element> originatingElements = new ArrayList<>();
+            for (final String subscriberClass : subscriberClasses) {
+                final TypeElement subscriberClassElement = processingEnv.getElementUtils().getTypeElement(subscriberClass);
+                if (subscriberClassElement != null) {
+                    originatingElements.add(subscriberClassElement);
+                }
+            }
+            final Element[] originatingElementArray = originatingElements.toArray(new Element[originatingElements.size()]);
+            eventBusClass = processingEnv.getFiler().createSourceFile(eventBusClassName, originatingElementArray);
             classWriter = new PrintWriter(eventBusClass.openWriter());
-            classWriter.write(eventBusCode);
+            //the generated code is streamed to the source file
+            eventBusBuilder.build(classWriter);
+
+            //the dispatcher shard classes of the large event buses are generated to source files of their own
+            final List<String> dispatcherShardClassNames = eventBusBuilder.getDispatcherShardClassNames();
+            for (int shard = 0; shard < dispatcherShardClassNames.size(); shard++) {
+                final String dispatcherShardClassName = eventBusPackage + "." + dispatcherShardClassNames.get(shard);
+                final JavaFileObject dispatcherShardClass = processingEnv.getFiler().createSourceFile(dispatcherShardClassName, originatingElementArray);
+                final Writer shardWriter = dispatcherShardClass.openWriter();
+                try {
+                    eventBusBuilder.buildDispatcherShard(shard, shardWriter);
+                } finally {
+                    shardWriter.close();
+                }
+                log("generateEventBusClass: dispatcher shard class generated (class: " + dispatcherShardClassName + ")");
+            }
 
         } catch (Exception e) {
             throw new RuntimeException(e);
@@ -15,10 +15,10 @@
  */
 package com.msagi.flashbus.generator;
 
+import com.msagi.flashbus.annotation.OverflowPolicy;
 import com.msagi.flashbus.annotation.Subscribe;
 import com.msagi.flashbus.annotation.ThreadId;
 
-import java.util.ArrayList;
 import java.util.List;
 
 import javax.lang.model.element.Element;
@@ -26,7 +26,10 @@ import javax.lang.model.element.ElementKind;
 import javax.lang.model.element.ExecutableElement;
 import javax.lang.model.element.Modifier;
 import javax.lang.model.element.Name;
+import javax.lang.model.element.TypeElement;
 import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
 import javax.lang.model.type.TypeMirror;
 
 /**
@@ -34,22 +37,18 @@ import javax.lang.model.type.TypeMirror;
  *
  * @author msagi (miklos.sagi@gmail.com)
  */
-public class Subscriber {
+public class Subscriber implements Comparable<Subscriber> {
 
     /**
-     * The list of event classes processed so far.
+     * The unique id of the current subscriber instance (assigned by the builder in the sorted order of the subscribers).
      */
-    private static final List<String> sEventClasses = new ArrayList<>();
+    private int uid = -1;
 
     /**
-     * The counter for unique id generator for the subscriber instances.
+     * The unique id of the event class (or primitive channel) of the subscriber (assigned by the builder in the sorted order of the event
+     * classes).
      */
-    private static int sUidCounter = 0;
-
-    /**
-     * The unique id of the current subscriber instance.
-     */
-    private final int uid = sUidCounter++;
+    private int eventClassId = -1;
 
     /**
      * The class containing the subscriber method.
@@ -62,24 +61,67 @@ public class Subscriber {
     private final String method;
 
     /**
-     * The class of the event in the subscriber method.
+     * The class of the event in the subscriber method (the primitive type in case of primitive channel subscriber).
      */
     private final String eventClass;
 
+    /**
+     * The name of the primitive value channel of the subscriber (null for event class subscriber).
+     */
+    private final String channel;
+
     /**
      * The thread id of the thread the event is to be delivered on.
      */
     private final ThreadId threadId;
 
+    /**
+     * The capacity of the bounded event queue of the subscriber (0 for default event queue).
+     */
+    private final int queueCapacity;
+
+    /**
+     * The policy for posting to the full event queue of the subscriber.
+     */
+    private final OverflowPolicy overflowPolicy;
+
+    /**
+     * Flag to deliver only the latest event to the subscriber.
+     */
+    private final boolean conflate;
+
+    /**
+     * Flag to deliver the events to the subscriber in batches (java.util.List of the event class).
+     */
+    private final boolean batch;
+
+    /**
+     * The priority of the subscriber (subscribers with higher priority receive the events earlier).
+     */
+    private final int priority;
+
+    /**
+     * Flag to let the subscriber cancel the further delivery of the event (the subscriber method returns boolean).
+     */
+    private final boolean cancellable;
+
     /**
      * Create new instance.
      *
      * @param subscriberClass The class containing the subscriber method.
      * @param method          The subscriber method.
      * @param eventClass      The class of the event in the subscriber method.
+     * @param channel         The name of the primitive value channel (null for event class subscriber).
      * @param threadId        The thread id of the thread the event is to be delivered on.
+     * @param queueCapacity   The capacity of the bounded event queue of the subscriber (0 for default event queue).
+     * @param overflowPolicy  The policy for posting to the full event queue of the subscriber.
+     * @param conflate        The flag to deliver only the latest event to the subscriber.
+     * @param batch           The flag to deliver the events to the subscriber in batches.
+     * @param priority        The priority of the subscriber.
+     * @param cancellable     The flag to let the subscriber cancel the further delivery of the event.
      */
-    private Subscriber(final String subscriberClass, final String method, final String eventClass, final ThreadId threadId) {
+    private Subscriber(final String subscriberClass, final String method, final String eventClass, final String channel, final ThreadId threadId,
+                       final int queueCapacity, final OverflowPolicy overflowPolicy, final boolean conflate, final boolean batch, final int priority, final boolean cancellable) {
         if (subscriberClass == null) {
             throw new IllegalArgumentException("subscriberClass == null");
         }
@@ -94,16 +136,29 @@ public class Subscriber {
             throw new IllegalArgumentException("eventClass == null");
         }
         this.eventClass = eventClass;
-
-        if (!sEventClasses.contains(eventClass)) {
-            sEventClasses.add(eventClass);
-        }
+        this.channel = channel;
 
         if (threadId == null) {
             this.threadId = ThreadId.MAIN;
         } else {
             this.threadId = threadId;
         }
+
+        if (queueCapacity < 0) {
+            throw new IllegalArgumentException("queueCapacity < 0");
+        }
+        this.queueCapacity = queueCapacity;
+
+        if (overflowPolicy == null) {
+            this.overflowPolicy = OverflowPolicy.BLOCK;
+        } else {
+            this.overflowPolicy = overflowPolicy;
+        }
+
+        this.conflate = conflate;
+        this.batch = batch;
+        this.priority = priority;
+        this.cancellable = cancellable;
     }
 
     /**
@@ -133,14 +188,81 @@ public class Subscriber {
 
         final Element subscriberClassElement = element.getEnclosingElement();
         final Name methodName = executableElement.getSimpleName();
-        final TypeMirror eventClass = variableElements.get(0).asType();
-        final ThreadId threadId = element.getAnnotation(Subscribe.class).thread();
+        TypeMirror eventClass = variableElements.get(0).asType();
+        boolean batch = false;
+        final boolean primitive = eventClass.getKind().isPrimitive();
+        if (primitive && eventClass.getKind() != TypeKind.INT && eventClass.getKind() != TypeKind.LONG && eventClass.getKind() != TypeKind.DOUBLE) {
+            throw new IllegalArgumentException("Illegal use of @Subscribe annotation: primitive channel subscriber method parameter must be int, long or double: ignored: "
+                    + element);
+        }
+        if (eventClass.getKind() == TypeKind.DECLARED) {
+            final DeclaredType declaredType = (DeclaredType) eventClass;
+            final TypeElement typeElement = (TypeElement) declaredType.asElement();
+            if (List.class.getName().contentEquals(typeElement.getQualifiedName())) {
+                final List<? extends TypeMirror> typeArguments = declaredType.getTypeArguments();
+                if (typeArguments.size() != 1 || typeArguments.get(0).getKind() != TypeKind.DECLARED) {
+                    throw new IllegalArgumentException("Illegal use of @Subscribe annotation: batch subscriber method parameter must be java.util.List of the event class: ignored: "
+                            + element);
+                }
+                eventClass = typeArguments.get(0);
+                batch = true;
+            }
+        }
+        final Subscribe subscribe = element.getAnnotation(Subscribe.class);
+        final String channel = subscribe.channel();
+        if (primitive && channel.isEmpty()) {
+            throw new IllegalArgumentException("Illegal use of @Subscribe annotation: primitive parameter requires channel: ignored: " + element);
+        }
+        if (!primitive && !channel.isEmpty()) {
+            throw new IllegalArgumentException("Illegal use of @Subscribe annotation: channel requires int, long or double parameter: ignored: " + element);
+        }
+        if (primitive && !channel.matches("[\\w.-]+")) {
+            throw new IllegalArgumentException("Illegal use of @Subscribe annotation: channel name can contain letters, digits, '_', '.' and '-' only: ignored: "
+                    + element);
+        }
+        if (primitive && subscribe.conflate()) {
+            throw new IllegalArgumentException("Illegal use of @Subscribe annotation: conflate cannot be combined with primitive channel: ignored: " + element);
+        }
+        if (subscribe.capacity() < 0) {
+            throw new IllegalArgumentException("Illegal use of @Subscribe annotation: capacity cannot be negative: ignored: " + element);
+        }
+        if (subscribe.capacity() > FlashBusBuilder.MAX_QUEUE_CAPACITY) {
+            throw new IllegalArgumentException("Illegal use of @Subscribe annotation: capacity cannot be greater than " + FlashBusBuilder.MAX_QUEUE_CAPACITY
+                    + ": ignored: " + element);
+        }
+        if (subscribe.conflate() && batch) {
+            throw new IllegalArgumentException("Illegal use of @Subscribe annotation: conflate cannot be combined with batch subscriber method: ignored: " + element);
+        }
+        if (subscribe.conflate() && (subscribe.capacity() != 0 || subscribe.overflow() != OverflowPolicy.BLOCK)) {
+            throw new IllegalArgumentException("Illegal use of @Subscribe annotation: conflate cannot be combined with capacity or overflow: ignored: " + element);
+        }
+        if (subscribe.thread() == ThreadId.POSTING && (batch || subscribe.conflate() || subscribe.capacity() != 0 || subscribe.overflow() != OverflowPolicy.BLOCK)) {
+            throw new IllegalArgumentException("Illegal use of @Subscribe annotation: POSTING thread cannot be combined with capacity, overflow, conflate and batch subscriber method: ignored: "
+                    + element);
+        }
+
+        final boolean cancellable = executableElement.getReturnType().getKind() == TypeKind.BOOLEAN;
+        if (cancellable && subscribe.thread() != ThreadId.POSTING) {
+            throw new IllegalArgumentException("Illegal use of @Subscribe annotation: only POSTING thread subscriber method can return boolean to cancel the event delivery: ignored: "
+                    + element);
+        }
 
-        return new Subscriber(subscriberClassElement.toString(), methodName.toString(), eventClass.toString(), threadId);
+        return new Subscriber(subscriberClassElement.toString(), methodName.toString(), eventClass.toString(), primitive ? channel : null,
+                subscribe.thread(), subscribe.capacity(), subscribe.overflow(), subscribe.conflate(), batch, subscribe.priority(), cancellable);
     }
 
     public int getEventClassId() {
-        return getEventClassIdByEventClass(eventClass);
+        return eventClassId;
+    }
+
+    /**
+     * Get the key of the events of the subscriber: the event class, or the primitive type and the channel name (e.g. 'int:progress') in case
+     * of primitive channel subscriber.
+     *
+     * @return The key of the events.
+     */
+    public String getEventKey() {
+        return channel == null ? eventClass : eventClass + ":" + channel;
     }
 
     public String getSubscriberClass() {
@@ -151,10 +273,46 @@ public class Subscriber {
         return eventClass;
     }
 
+    public String getChannel() {
+        return channel;
+    }
+
+    public boolean isPrimitive() {
+        return channel != null;
+    }
+
     public ThreadId getThreadId() {
         return threadId;
     }
 
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    public OverflowPolicy getOverflowPolicy() {
+        return overflowPolicy;
+    }
+
+    public boolean isConflate() {
+        return conflate;
+    }
+
+    public boolean isPosting() {
+        return threadId == ThreadId.POSTING;
+    }
+
+    public boolean isBatch() {
+        return batch;
+    }
+
+    public int getPriority() {
+        return priority;
+    }
+
+    public boolean isCancellable() {
+        return cancellable;
+    }
+
     public String getMethod() {
         return method;
     }
@@ -163,36 +321,42 @@ public class Subscriber {
         return uid;
     }
 
-    @Override
-    public int hashCode() {
-        return uid;
+    /**
+     * Assign the ids of the subscriber (the ids are part of the names in the generated code, so they are assigned in a stable order instead
+     * of the order of processing).
+     *
+     * @param uid          The unique id of the subscriber.
+     * @param eventClassId The unique id of the event class (or primitive channel) of the subscriber.
+     */
+    void assignIds(final int uid, final int eventClassId) {
+        this.uid = uid;
+        this.eventClassId = eventClassId;
     }
 
     @Override
-    public boolean equals(final Object obj) {
-        if (obj instanceof Subscriber) {
-            final Subscriber subscriber = (Subscriber) obj;
-            return subscriber.getUid() == uid;
+    public int compareTo(final Subscriber subscriber) {
+        int result = subscriberClass.compareTo(subscriber.subscriberClass);
+        if (result == 0) {
+            result = method.compareTo(subscriber.method);
         }
-        return false;
+        if (result == 0) {
+            result = getEventKey().compareTo(subscriber.getEventKey());
+        }
+        //the overloads of the method with the same event class differ in the kind of the subscriber only (e.g. onEvent(Foo) and
+        //onEvent(List<Foo>)), the order must not depend on the order of processing
+        if (result == 0) {
+            result = Boolean.compare(batch, subscriber.batch);
+        }
+        if (result == 0) {
+            result = Boolean.compare(isPrimitive(), subscriber.isPrimitive());
+        }
+        return result;
     }
 
     @Override
     public String toString() {
-        return String.format("Subscriber[class: %s, method: %s, eventClass: %s, thread: %s]", subscriberClass, method, eventClass, threadId);
-    }
-
-    /**
-     * Get the event class id for the given event class.
-     *
-     * @param eventClass The event class to get the id for.
-     * @return The unique event class id.
-     */
-    public static int getEventClassIdByEventClass(final String eventClass) {
-        final int eventClassId = sEventClasses.indexOf(eventClass);
-        if (-1 == eventClassId) {
-            throw new IllegalArgumentException("Unknown event class: " + eventClass);
-        }
-        return eventClassId;
+        return String.format("Subscriber[class: %s, method: %s, eventClass: %s, channel: %s, thread: %s, queueCapacity: %d, overflow: %s, conflate: %b, "
+                        + "batch: %b, priority: %d, cancellable: %b]", subscriberClass, method, eventClass, channel, threadId, queueCapacity, overflowPolicy,
+                conflate, batch, priority, cancellable);
     }
 }
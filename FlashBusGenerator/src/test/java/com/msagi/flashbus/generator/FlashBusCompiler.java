@@ -0,0 +1,740 @@
+/*
+ * Copyright 2015 Miklos Sagi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.msagi.flashbus.generator;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.MalformedURLException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import javax.annotation.processing.Completion;
+import javax.annotation.processing.Filer;
+import javax.annotation.processing.Messager;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.annotation.processing.Processor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.FileObject;
+import javax.tools.ForwardingJavaFileManager;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+
+/**
+ * In-memory compiler of the test fixtures: compiles the fixture sources (test resources under fixtures/) with the FlashBus annotation
+ * processor and keeps the generated sources and the class files in memory.
+ *
+ * @author msagi (miklos.sagi@gmail.com)
+ */
+public class FlashBusCompiler {
+
+    /**
+     * The charset of the fixture sources and the generated sources.
+     */
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    /**
+     * The sources to compile.
+     */
+    private final List<JavaFileObject> sources = new ArrayList<>();
+
+    /**
+     * The compiler options (e.g. the -A parameters of the annotation processor).
+     */
+    private final List<String> options = new ArrayList<>();
+
+    /**
+     * The extra classpath entries (e.g. the compiled library modules).
+     */
+    private final List<File> classpath = new ArrayList<>();
+
+    /**
+     * The wrapper of the processing environment of the annotation processor.
+     */
+    private EnvironmentWrapper environmentWrapper = EnvironmentWrapper.NONE;
+
+    /**
+     * Add the sources of the given fixture directory (test resource directory fixtures/fixture).
+     *
+     * @param fixture The name of the fixture directory.
+     * @return The compiler.
+     */
+    public FlashBusCompiler withFixture(final String fixture) {
+        if (fixture == null) {
+            throw new IllegalArgumentException("fixture == null");
+        }
+        final URL fixtureUrl = FlashBusCompiler.class.getClassLoader().getResource("fixtures/" + fixture);
+        if (fixtureUrl == null) {
+            throw new IllegalArgumentException("Unknown fixture: " + fixture);
+        }
+        try {
+            addSources(new File(fixtureUrl.toURI()));
+        } catch (URISyntaxException use) {
+            throw new IllegalArgumentException("Invalid fixture location: " + fixtureUrl, use);
+        }
+        return this;
+    }
+
+    /**
+     * Add source of the given class.
+     *
+     * @param className The fully qualified name of the class.
+     * @param code      The source code of the class.
+     * @return The compiler.
+     */
+    public FlashBusCompiler withSource(final String className, final String code) {
+        if (className == null) {
+            throw new IllegalArgumentException("className == null");
+        }
+        if (code == null) {
+            throw new IllegalArgumentException("code == null");
+        }
+        sources.add(new MemorySource(className, code));
+        return this;
+    }
+
+    /**
+     * Add compiler options.
+     *
+     * @param compilerOptions The compiler options (e.g. -Aruntime=jvm).
+     * @return The compiler.
+     */
+    public FlashBusCompiler withOptions(final String... compilerOptions) {
+        if (compilerOptions == null) {
+            throw new IllegalArgumentException("compilerOptions == null");
+        }
+        options.addAll(Arrays.asList(compilerOptions));
+        return this;
+    }
+
+    /**
+     * Add extra classpath entry.
+     *
+     * @param classpathEntry The directory or jar file.
+     * @return The compiler.
+     */
+    public FlashBusCompiler withClasspath(final File classpathEntry) {
+        if (classpathEntry == null) {
+            throw new IllegalArgumentException("classpathEntry == null");
+        }
+        classpath.add(classpathEntry);
+        return this;
+    }
+
+    /**
+     * Wrap the processing environment of the annotation processor (like the build tools do).
+     *
+     * @param wrapper The wrapper of the processing environment.
+     * @return The compiler.
+     */
+    public FlashBusCompiler withEnvironmentWrapper(final EnvironmentWrapper wrapper) {
+        if (wrapper == null) {
+            throw new IllegalArgumentException("wrapper == null");
+        }
+        environmentWrapper = wrapper;
+        return this;
+    }
+
+    /**
+     * Compile the sources with the annotation processor.
+     *
+     * @return The result of the compilation.
+     */
+    public Result compile() {
+        final JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        if (compiler == null) {
+            throw new IllegalStateException("No system java compiler (the tests need a JDK)");
+        }
+        final DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        final StandardJavaFileManager standardFileManager = compiler.getStandardFileManager(diagnostics, Locale.ROOT, UTF_8);
+        final MemoryFileManager fileManager = new MemoryFileManager(standardFileManager);
+
+        final StringBuilder classpathBuilder = new StringBuilder(System.getProperty("java.class.path"));
+        for (final File classpathEntry : classpath) {
+            classpathBuilder.append(File.pathSeparator).append(classpathEntry.getAbsolutePath());
+        }
+        final List<String> compilerOptions = new ArrayList<>(options);
+        compilerOptions.addAll(Arrays.asList("-classpath", classpathBuilder.toString()));
+
+        final JavaCompiler.CompilationTask task = compiler.getTask(/* out */ null, fileManager, diagnostics, compilerOptions,
+                /* classes */ null, sources);
+        final Processor processor = environmentWrapper == EnvironmentWrapper.NONE ? new FlashBusGenerator()
+                : new WrappingProcessor(new FlashBusGenerator(), environmentWrapper);
+        task.setProcessors(Collections.singletonList(processor));
+        final boolean success = task.call();
+        try {
+            fileManager.close();
+        } catch (IOException ioe) {
+            throw new IllegalStateException(ioe);
+        }
+        return new Result(success, diagnostics.getDiagnostics(), fileManager.generatedSources, fileManager.classFiles, classpath);
+    }
+
+    /**
+     * Add the java sources of the given directory (recursively).
+     *
+     * @param directory The directory.
+     */
+    private void addSources(final File directory) {
+        final File[] files = directory.listFiles();
+        if (files == null) {
+            return;
+        }
+        Arrays.sort(files);
+        for (final File file : files) {
+            if (file.isDirectory()) {
+                addSources(file);
+            } else if (file.getName().endsWith(".java")) {
+                sources.add(new MemorySource(file.toURI()));
+            }
+        }
+    }
+
+    /**
+     * The result of a compilation.
+     */
+    public static final class Result {
+
+        /**
+         * Flag to track if the compilation succeeded.
+         */
+        private final boolean success;
+
+        /**
+         * The diagnostics of the compilation (errors, warnings and notes).
+         */
+        private final List<Diagnostic<? extends JavaFileObject>> diagnostics;
+
+        /**
+         * The generated sources by class name.
+         */
+        private final Map<String, String> generatedSources;
+
+        /**
+         * The class files by class name.
+         */
+        private final Map<String, byte[]> classFiles;
+
+        /**
+         * The extra classpath entries of the compilation (loaded by the class loaders of the compiled classes too).
+         */
+        private final List<File> classpath;
+
+        /**
+         * Create new instance.
+         *
+         * @param success          Flag to track if the compilation succeeded.
+         * @param diagnostics      The diagnostics of the compilation.
+         * @param generatedSources The generated sources by class name.
+         * @param classFiles       The class files by class name.
+         * @param classpath        The extra classpath entries of the compilation.
+         */
+        private Result(final boolean success, final List<Diagnostic<? extends JavaFileObject>> diagnostics,
+                       final Map<String, MemoryOutput> generatedSources, final Map<String, MemoryOutput> classFiles,
+                       final List<File> classpath) {
+            this.success = success;
+            this.diagnostics = diagnostics;
+            this.generatedSources = new TreeMap<>();
+            for (final Map.Entry<String, MemoryOutput> generatedSource : generatedSources.entrySet()) {
+                this.generatedSources.put(generatedSource.getKey(), new String(generatedSource.getValue().getBytes(), UTF_8));
+            }
+            this.classFiles = new TreeMap<>();
+            for (final Map.Entry<String, MemoryOutput> classFile : classFiles.entrySet()) {
+                this.classFiles.put(classFile.getKey(), classFile.getValue().getBytes());
+            }
+            this.classpath = new ArrayList<>(classpath);
+        }
+
+        /**
+         * Check if the compilation succeeded.
+         *
+         * @return True if the compilation succeeded, false otherwise.
+         */
+        public boolean isSuccess() {
+            return success;
+        }
+
+        /**
+         * Get the messages of the given kind.
+         *
+         * @param kind The kind of the messages.
+         * @return The messages (with the line number of the source position, if any).
+         */
+        public List<String> getMessages(final Diagnostic.Kind kind) {
+            final List<String> messages = new ArrayList<>();
+            for (final Diagnostic<? extends JavaFileObject> diagnostic : diagnostics) {
+                if (diagnostic.getKind() != kind) {
+                    continue;
+                }
+                final String source = diagnostic.getSource() == null ? "" : diagnostic.getSource().getName() + ":" + diagnostic.getLineNumber() + ": ";
+                messages.add(source + diagnostic.getMessage(Locale.ROOT));
+            }
+            return messages;
+        }
+
+        /**
+         * Get all the diagnostic messages (for assertion messages).
+         *
+         * @return The diagnostic messages, one per line.
+         */
+        public String getDiagnosticsReport() {
+            final StringBuilder report = new StringBuilder();
+            for (final Diagnostic.Kind kind : new Diagnostic.Kind[]{Diagnostic.Kind.ERROR, Diagnostic.Kind.WARNING, Diagnostic.Kind.MANDATORY_WARNING}) {
+                for (final String message : getMessages(kind)) {
+                    report.append(kind).append(": ").append(message).append('\n');
+                }
+            }
+            return report.toString();
+        }
+
+        /**
+         * Get the generated source of the given class.
+         *
+         * @param className The fully qualified name of the class.
+         * @return The generated source, or null if the class was not generated.
+         */
+        public String getGeneratedSource(final String className) {
+            return generatedSources.get(className);
+        }
+
+        /**
+         * Get the generated sources.
+         *
+         * @return The generated sources by class name.
+         */
+        public Map<String, String> getGeneratedSources() {
+            return Collections.unmodifiableMap(generatedSources);
+        }
+
+        /**
+         * Get the names of the compiled classes.
+         *
+         * @return The names of the compiled classes (sorted).
+         */
+        public List<String> getClassNames() {
+            return new ArrayList<>(classFiles.keySet());
+        }
+
+        /**
+         * Create a new class loader of the compiled classes (the fixtures of every test run in a class loader of their own, so that their
+         * static state does not leak between the tests).
+         *
+         * @return The class loader.
+         */
+        public ClassLoader newClassLoader() {
+            ClassLoader parent = FlashBusCompiler.class.getClassLoader();
+            if (!classpath.isEmpty()) {
+                final URL[] urls = new URL[classpath.size()];
+                for (int index = 0; index < urls.length; index++) {
+                    try {
+                        urls[index] = classpath.get(index).toURI().toURL();
+                    } catch (MalformedURLException mue) {
+                        throw new IllegalStateException(mue);
+                    }
+                }
+                parent = new URLClassLoader(urls, parent);
+            }
+            return new MemoryClassLoader(classFiles, parent);
+        }
+
+        /**
+         * Write the compiled classes to the given directory (e.g. to put a compiled library module on the classpath of the application).
+         *
+         * @param directory The output directory.
+         * @throws IOException If writing the class files fails.
+         */
+        public void writeClasses(final File directory) throws IOException {
+            for (final Map.Entry<String, byte[]> classFile : classFiles.entrySet()) {
+                final File file = new File(directory, classFile.getKey().replace('.', File.separatorChar) + ".class");
+                if (!file.getParentFile().isDirectory() && !file.getParentFile().mkdirs()) {
+                    throw new IOException("Cannot create directory: " + file.getParentFile());
+                }
+                final OutputStream outputStream = new FileOutputStream(file);
+                try {
+                    outputStream.write(classFile.getValue());
+                } finally {
+                    outputStream.close();
+                }
+            }
+        }
+    }
+
+    /**
+     * The wrappers of the processing environment.
+     */
+    public enum EnvironmentWrapper {
+
+        /**
+         * The processing environment of javac is not wrapped.
+         */
+        NONE,
+
+        /**
+         * Wrapper keeping the processing environment of javac in its 'delegate' field (like the incremental annotation processing of
+         * Gradle).
+         */
+        GRADLE,
+
+        /**
+         * Wrapper which does not expose the processing environment of javac.
+         */
+        OPAQUE
+    }
+
+    /**
+     * Annotation processor which wraps the processing environment of the given one.
+     */
+    private static final class WrappingProcessor implements Processor {
+
+        /**
+         * The wrapped annotation processor.
+         */
+        private final Processor processor;
+
+        /**
+         * The wrapper of the processing environment.
+         */
+        private final EnvironmentWrapper wrapper;
+
+        /**
+         * Create new instance.
+         *
+         * @param processor The wrapped annotation processor.
+         * @param wrapper   The wrapper of the processing environment.
+         */
+        WrappingProcessor(final Processor processor, final EnvironmentWrapper wrapper) {
+            this.processor = processor;
+            this.wrapper = wrapper;
+        }
+
+        @Override
+        public Set<String> getSupportedOptions() {
+            return processor.getSupportedOptions();
+        }
+
+        @Override
+        public Set<String> getSupportedAnnotationTypes() {
+            return processor.getSupportedAnnotationTypes();
+        }
+
+        @Override
+        public SourceVersion getSupportedSourceVersion() {
+            return processor.getSupportedSourceVersion();
+        }
+
+        @Override
+        public void init(final ProcessingEnvironment processingEnv) {
+            processor.init(wrapper == EnvironmentWrapper.GRADLE ? new DelegatingEnvironment(processingEnv)
+                    : new OpaqueEnvironment(processingEnv));
+        }
+
+        @Override
+        public boolean process(final Set<? extends TypeElement> annotations, final RoundEnvironment roundEnv) {
+            return processor.process(annotations, roundEnv);
+        }
+
+        @Override
+        public Iterable<? extends Completion> getCompletions(final Element element, final AnnotationMirror annotation,
+                                                             final ExecutableElement member, final String userText) {
+            return processor.getCompletions(element, annotation, member, userText);
+        }
+    }
+
+    /**
+     * Processing environment forwarding to the wrapped one.
+     */
+    private abstract static class ForwardingEnvironment implements ProcessingEnvironment {
+
+        /**
+         * Get the wrapped processing environment.
+         *
+         * @return The wrapped processing environment.
+         */
+        abstract ProcessingEnvironment getEnvironment();
+
+        @Override
+        public Map<String, String> getOptions() {
+            return getEnvironment().getOptions();
+        }
+
+        @Override
+        public Messager getMessager() {
+            return getEnvironment().getMessager();
+        }
+
+        @Override
+        public Filer getFiler() {
+            return getEnvironment().getFiler();
+        }
+
+        @Override
+        public Elements getElementUtils() {
+            return getEnvironment().getElementUtils();
+        }
+
+        @Override
+        public Types getTypeUtils() {
+            return getEnvironment().getTypeUtils();
+        }
+
+        @Override
+        public SourceVersion getSourceVersion() {
+            return getEnvironment().getSourceVersion();
+        }
+
+        @Override
+        public Locale getLocale() {
+            return getEnvironment().getLocale();
+        }
+    }
+
+    /**
+     * Processing environment wrapper keeping the wrapped one in its 'delegate' field (like the wrappers of Gradle).
+     */
+    private static final class DelegatingEnvironment extends ForwardingEnvironment {
+
+        /**
+         * The wrapped processing environment.
+         */
+        private final ProcessingEnvironment delegate;
+
+        /**
+         * Create new instance.
+         *
+         * @param delegate The wrapped processing environment.
+         */
+        DelegatingEnvironment(final ProcessingEnvironment delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        ProcessingEnvironment getEnvironment() {
+            return delegate;
+        }
+    }
+
+    /**
+     * Processing environment wrapper which does not expose the wrapped one.
+     */
+    private static final class OpaqueEnvironment extends ForwardingEnvironment {
+
+        /**
+         * The wrapped processing environment.
+         */
+        private final ProcessingEnvironment environment;
+
+        /**
+         * Create new instance.
+         *
+         * @param environment The wrapped processing environment.
+         */
+        OpaqueEnvironment(final ProcessingEnvironment environment) {
+            this.environment = environment;
+        }
+
+        @Override
+        ProcessingEnvironment getEnvironment() {
+            return environment;
+        }
+    }
+
+    /**
+     * Source file in memory (fixture source file or source code string).
+     */
+    private static final class MemorySource extends SimpleJavaFileObject {
+
+        /**
+         * The source code (null to read the source file).
+         */
+        private final String code;
+
+        /**
+         * Create new instance of a source file.
+         *
+         * @param uri The location of the source file.
+         */
+        MemorySource(final URI uri) {
+            super(uri, Kind.SOURCE);
+            this.code = null;
+        }
+
+        /**
+         * Create new instance of a source code string.
+         *
+         * @param className The fully qualified name of the class.
+         * @param code      The source code.
+         */
+        MemorySource(final String className, final String code) {
+            super(URI.create("string:///" + className.replace('.', '/') + Kind.SOURCE.extension), Kind.SOURCE);
+            this.code = code;
+        }
+
+        @Override
+        public CharSequence getCharContent(final boolean ignoreEncodingErrors) throws IOException {
+            if (code != null) {
+                return code;
+            }
+            final java.io.InputStream inputStream = toUri().toURL().openStream();
+            try {
+                final ByteArrayOutputStream content = new ByteArrayOutputStream();
+                final byte[] buffer = new byte[8192];
+                int count;
+                while ((count = inputStream.read(buffer)) >= 0) {
+                    content.write(buffer, 0, count);
+                }
+                return new String(content.toByteArray(), UTF_8);
+            } finally {
+                inputStream.close();
+            }
+        }
+    }
+
+    /**
+     * Output file in memory (generated source or class file).
+     */
+    private static final class MemoryOutput extends SimpleJavaFileObject {
+
+        /**
+         * The content of the file.
+         */
+        private final ByteArrayOutputStream content = new ByteArrayOutputStream();
+
+        /**
+         * Create new instance.
+         *
+         * @param className The fully qualified name of the class.
+         * @param kind      The kind of the file.
+         */
+        MemoryOutput(final String className, final Kind kind) {
+            super(URI.create("mem:///" + className.replace('.', '/') + kind.extension), kind);
+        }
+
+        @Override
+        public OutputStream openOutputStream() {
+            content.reset();
+            return content;
+        }
+
+        @Override
+        public CharSequence getCharContent(final boolean ignoreEncodingErrors) {
+            return new String(getBytes(), UTF_8);
+        }
+
+        /**
+         * Get the content of the file.
+         *
+         * @return The content of the file.
+         */
+        byte[] getBytes() {
+            return content.toByteArray();
+        }
+    }
+
+    /**
+     * File manager keeping the generated sources and the class files in memory.
+     */
+    private static final class MemoryFileManager extends ForwardingJavaFileManager<StandardJavaFileManager> {
+
+        /**
+         * The generated sources by class name.
+         */
+        private final Map<String, MemoryOutput> generatedSources = new LinkedHashMap<>();
+
+        /**
+         * The class files by class name.
+         */
+        private final Map<String, MemoryOutput> classFiles = new LinkedHashMap<>();
+
+        /**
+         * Create new instance.
+         *
+         * @param fileManager The standard file manager (reads the sources and the classpath).
+         */
+        MemoryFileManager(final StandardJavaFileManager fileManager) {
+            super(fileManager);
+        }
+
+        @Override
+        public JavaFileObject getJavaFileForOutput(final Location location, final String className, final JavaFileObject.Kind kind,
+                                                   final FileObject sibling) {
+            final MemoryOutput output = new MemoryOutput(className, kind);
+            if (kind == JavaFileObject.Kind.CLASS) {
+                classFiles.put(className, output);
+            } else {
+                generatedSources.put(className, output);
+            }
+            return output;
+        }
+    }
+
+    /**
+     * Class loader of the compiled classes.
+     */
+    private static final class MemoryClassLoader extends ClassLoader {
+
+        /**
+         * The class files by class name.
+         */
+        private final Map<String, byte[]> classFiles;
+
+        /**
+         * Create new instance.
+         *
+         * @param classFiles The class files by class name.
+         * @param parent     The parent class loader (loads the annotations and the test classes).
+         */
+        MemoryClassLoader(final Map<String, byte[]> classFiles, final ClassLoader parent) {
+            super(parent);
+            this.classFiles = classFiles;
+        }
+
+        @Override
+        protected Class<?> findClass(final String name) throws ClassNotFoundException {
+            final byte[] classFile = classFiles.get(name);
+            if (classFile == null) {
+                throw new ClassNotFoundException(name);
+            }
+            return defineClass(name, classFile, 0, classFile.length);
+        }
+    }
+}
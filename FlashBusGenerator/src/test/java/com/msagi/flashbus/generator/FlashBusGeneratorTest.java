@@ -0,0 +1,445 @@
+/*
+ * Copyright 2015 Miklos Sagi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.msagi.flashbus.generator;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.tools.Diagnostic;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Code generation of the annotation processor: reproducible output, generated code free of compiler warnings, library subscriber indexes,
+ * dead post reporting, subscriber validation, dispatcher layouts and dispatcher shards of large subscriber graphs.
+ *
+ * @author msagi (miklos.sagi@gmail.com)
+ */
+public class FlashBusGeneratorTest {
+
+    /**
+     * The package of the generated event bus.
+     */
+    private static final String EVENT_BUS_PACKAGE = "com.example.bus";
+
+    /**
+     * The class name of the generated event bus.
+     */
+    private static final String EVENT_BUS_CLASS = EVENT_BUS_PACKAGE + ".FlashBus";
+
+    /**
+     * The package of the generated subscriber graphs.
+     */
+    private static final String GRAPH_PACKAGE = "com.example.graph";
+
+    @Rule
+    public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void testGeneratedSourcesAreReproducible() {
+        final FlashBusCompiler.Result first = compileApplication("app");
+        final FlashBusCompiler.Result second = compileApplication("app");
+        assertEquals(first.getGeneratedSources(), second.getGeneratedSources());
+
+        //the order of the compiled sources does not change the generated sources
+        final Map<String, String> sources = generateGraph(/* event classes */ 20, /* subscriber classes */ 5, /* methods per class */ 8);
+        final List<String> reversedClassNames = new ArrayList<>(sources.keySet());
+        Collections.reverse(reversedClassNames);
+        final FlashBusCompiler forwardCompiler = new FlashBusCompiler().withOptions("-Apackage=" + EVENT_BUS_PACKAGE, "-Aruntime=jvm");
+        final FlashBusCompiler reverseCompiler = new FlashBusCompiler().withOptions("-Apackage=" + EVENT_BUS_PACKAGE, "-Aruntime=jvm");
+        for (final Map.Entry<String, String> source : sources.entrySet()) {
+            forwardCompiler.withSource(source.getKey(), source.getValue());
+        }
+        for (final String className : reversedClassNames) {
+            reverseCompiler.withSource(className, sources.get(className));
+        }
+        final FlashBusCompiler.Result forward = assertSuccess(forwardCompiler.compile());
+        final FlashBusCompiler.Result reverse = assertSuccess(reverseCompiler.compile());
+        assertEquals(forward.getGeneratedSources(), reverse.getGeneratedSources());
+
+        //nor the order of the overloaded subscriber methods of the same event class (event, batch and channel)
+        final String[] overloads = {
+                "@Subscribe(thread = ThreadId.BACKGROUND) public void onTick(Tick tick) { }",
+                "@Subscribe(thread = ThreadId.BACKGROUND) public void onTick(java.util.List<Tick> ticks) { }",
+                "@Subscribe(thread = ThreadId.BACKGROUND, channel = \"Tick\") public void onTick(int tick) { }",
+        };
+        final FlashBusCompiler.Result declared = assertSuccess(compileOverloads(overloads));
+        Collections.reverse(Arrays.asList(overloads));
+        final FlashBusCompiler.Result reversed = assertSuccess(compileOverloads(overloads));
+        assertEquals(declared.getGeneratedSources(), reversed.getGeneratedSources());
+    }
+
+    @Test
+    public void testGeneratedCodeHasNoWarnings() {
+        final String[][] optionSets = {
+                {"-Aruntime=jvm", "-Ametrics=true", "-Alatency=true"},
+                {"-Aruntime=jvm", "-Ametrics=true", "-Alatency=true", "-AweakSubscribers=true", "-Aqueue=ring", "-AsameThreadDelivery=true",
+                        "-AdrainBudgetEvents=8", "-AdrainBudgetNanos=100000"},
+                {"-Aruntime=jvm", "-Adispatchers=switch", "-Ametrics=true", "-Alatency=true", "-AweakSubscribers=true"},
+        };
+        for (final String[] options : optionSets) {
+            final FlashBusCompiler.Result result = assertSuccess(new FlashBusCompiler()
+                    .withFixture("app")
+                    .withFixture("metrics")
+                    .withOptions("-Apackage=" + EVENT_BUS_PACKAGE, "-Xlint:unchecked", "-Xlint:deprecation")
+                    .withOptions(options)
+                    .compile());
+            assertEquals(Collections.emptyList(), getGeneratedSourceWarnings(result));
+        }
+    }
+
+    @Test
+    public void testAndroidRuntime() {
+        final FlashBusCompiler.Result result = assertSuccess(new FlashBusCompiler()
+                .withFixture("app")
+                .withFixture("android-stubs")
+                .withOptions("-Apackage=" + EVENT_BUS_PACKAGE, "-Aruntime=android", "-Xlint:unchecked")
+                .compile());
+        assertEquals(Collections.emptyList(), getGeneratedSourceWarnings(result));
+        final String eventBus = result.getGeneratedSource(EVENT_BUS_CLASS);
+        assertTrue(eventBus.contains("import android.os.Looper;"));
+        assertFalse(eventBus.contains("import java.util.logging.Logger;"));
+    }
+
+    @Test
+    public void testLibrarySubscriberIndexes() throws Exception {
+        final FlashBusCompiler.Result library = assertSuccess(new FlashBusCompiler()
+                .withFixture("library")
+                .withOptions("-Apackage=com.example.lib", "-Alibrary=true")
+                .compile());
+        assertNull("a library module does not generate an event bus", library.getGeneratedSource("com.example.lib.FlashBus"));
+        final String subscriberIndex = library.getGeneratedSource("com.msagi.flashbus.index.FlashBusIndex_com_example_lib");
+        assertNotNull(subscriberIndex);
+        assertTrue(subscriberIndex.contains("com.example.lib.LibSubscriber.class"));
+        final File libraryClasses = temporaryFolder.newFolder("library");
+        library.writeClasses(libraryClasses);
+
+        //found in the subscriber index package on the classpath, and merged with the subscribers of the application
+        final FlashBusCompiler.Result discovered = assertSuccess(new FlashBusCompiler()
+                .withFixture("app")
+                .withFixture("libapp")
+                .withClasspath(libraryClasses)
+                .withOptions("-Apackage=" + EVENT_BUS_PACKAGE, "-Aruntime=jvm")
+                .compile());
+        runScenario(discovered, "com.example.libapp.LibraryScenario");
+        runScenario(discovered, "com.example.app.PriorityScenario");
+
+        //listed explicitly
+        final FlashBusCompiler.Result listed = assertSuccess(new FlashBusCompiler()
+                .withFixture("libapp")
+                .withClasspath(libraryClasses)
+                .withOptions("-Apackage=" + EVENT_BUS_PACKAGE, "-Aruntime=jvm",
+                        "-AsubscriberIndexes=com.msagi.flashbus.index.FlashBusIndex_com_example_lib")
+                .compile());
+        runScenario(listed, "com.example.libapp.LibraryScenario");
+
+        final FlashBusCompiler.Result missing = new FlashBusCompiler()
+                .withFixture("libapp")
+                .withClasspath(libraryClasses)
+                .withOptions("-Apackage=" + EVENT_BUS_PACKAGE, "-Aruntime=jvm", "-AsubscriberIndexes=com.msagi.flashbus.index.FlashBusIndex_missing")
+                .compile();
+        assertFalse(missing.isSuccess());
+        assertContains(missing.getMessages(Diagnostic.Kind.ERROR), "subscriber index class not found: com.msagi.flashbus.index.FlashBusIndex_missing");
+    }
+
+    @Test
+    public void testDeadPosts() throws Exception {
+        final FlashBusCompiler.Result warning = assertSuccess(compileDeadPosts("warning"));
+        final List<String> warnings = getDeadPostMessages(warning.getMessages(Diagnostic.Kind.WARNING));
+        assertEquals(warnings.toString(), 3, warnings.size());
+        assertContains(warnings, "DeadPostScenario.java:33: FlashBusGenerator: dead post: no subscriber for event class com.example.app.Ghost: "
+                + "the event is dropped by post(Object)");
+        assertContains(warnings, "DeadPostScenario.java:34: FlashBusGenerator: dead post: no subscriber for event class com.example.app.Ghost: "
+                + "the event is dropped by postSticky(Object)");
+        assertContains(warnings, "DeadPostScenario.java:35: FlashBusGenerator: dead post: no subscriber for event class java.lang.Object");
+
+        final FlashBusCompiler.Result error = compileDeadPosts("error");
+        assertFalse(error.isSuccess());
+        assertEquals(3, getDeadPostMessages(error.getMessages(Diagnostic.Kind.ERROR)).size());
+
+        final FlashBusCompiler.Result ignore = assertSuccess(compileDeadPosts("ignore"));
+        assertEquals(Collections.emptyList(), getDeadPostMessages(ignore.getMessages(Diagnostic.Kind.WARNING)));
+        runScenario(ignore, "com.example.app.DeadPostScenario");
+
+        final FlashBusCompiler.Result gradle = compileDeadPosts("error", FlashBusCompiler.EnvironmentWrapper.GRADLE);
+        assertFalse(gradle.isSuccess());
+        assertEquals(3, getDeadPostMessages(gradle.getMessages(Diagnostic.Kind.ERROR)).size());
+
+        final FlashBusCompiler.Result opaque = assertSuccess(compileDeadPosts("error", FlashBusCompiler.EnvironmentWrapper.OPAQUE));
+        assertEquals(Collections.emptyList(), getDeadPostMessages(opaque.getMessages(Diagnostic.Kind.ERROR)));
+        assertContains(opaque.getMessages(Diagnostic.Kind.WARNING), "FlashBusGenerator: dead post detection is skipped");
+        assertContains(assertSuccess(compileDeadPosts("warning", FlashBusCompiler.EnvironmentWrapper.OPAQUE))
+                .getMessages(Diagnostic.Kind.NOTE), "FlashBusGenerator: dead post detection is skipped");
+    }
+
+    @Test
+    public void testInvalidSubscribers() {
+        assertInvalidSubscriber("@Subscribe(thread = ThreadId.BACKGROUND) public boolean onEvent(Object event) { return true; }",
+                "only POSTING thread subscriber method can return boolean");
+        assertInvalidSubscriber("@Subscribe(capacity = -4) public void onEvent(Object event) { }", "capacity cannot be negative");
+        assertInvalidSubscriber("@Subscribe(capacity = Integer.MAX_VALUE) public void onEvent(Object event) { }",
+                "capacity cannot be greater than 1073741824");
+        assertInvalidSubscriber("@Subscribe(conflate = true, capacity = 4) public void onEvent(Object event) { }",
+                "conflate cannot be combined with capacity or overflow");
+        assertInvalidSubscriber("@Subscribe(thread = ThreadId.POSTING, capacity = 4) public void onEvent(Object event) { }",
+                "POSTING thread cannot be combined with capacity");
+        assertInvalidSubscriber("@Subscribe public void onValue(int value) { }", "primitive parameter requires channel");
+        assertInvalidSubscriber("@Subscribe(channel = \"a b\") public void onValue(int value) { }",
+                "channel name can contain letters, digits, '_', '.' and '-' only");
+        assertInvalidSubscriber("@Subscribe void onEvent(Object event) { }", "subscriber method must be 'public'");
+    }
+
+    @Test
+    public void testInvalidQueueCapacity() {
+        for (final String queueCapacity : new String[]{"0", "-1", "1073741825"}) {
+            final FlashBusCompiler.Result result = new FlashBusCompiler()
+                    .withFixture("app")
+                    .withOptions("-Apackage=" + EVENT_BUS_PACKAGE, "-Aruntime=jvm", "-Aqueue=ring", "-AqueueCapacity=" + queueCapacity)
+                    .compile();
+            assertFalse(queueCapacity, result.isSuccess());
+            assertContains(result.getMessages(Diagnostic.Kind.ERROR), "invalid queue capacity: " + queueCapacity + " (supported: 1..1073741824)");
+        }
+        assertSuccess(compileApplication("app", "-Aqueue=ring", "-AqueueCapacity=1073741824"));
+    }
+
+    @Test
+    public void testSwitchDispatchers() throws Exception {
+        final FlashBusCompiler.Result classes = compileApplication("app");
+        final FlashBusCompiler.Result switches = compileApplication("app", "-Adispatchers=switch");
+        final int classDispatchers = countEventBusClasses(classes);
+        final int switchDispatchers = countEventBusClasses(switches);
+        assertTrue(classDispatchers + " classes with dispatcher classes, " + switchDispatchers + " with switch dispatchers",
+                switchDispatchers * 2 <= classDispatchers);
+        //the same behaviour (the runtime tests run every scenario with both layouts)
+        runScenario(classes, "com.example.app.ThreadScenario");
+        runScenario(switches, "com.example.app.ThreadScenario");
+    }
+
+    @Test
+    public void testDispatcherShards() throws Exception {
+        //more subscriber methods than a dispatcher shard holds (512), and more event classes than a method part handles (256)
+        final int eventCount = 600;
+        final Map<String, String> sources = generateGraph(eventCount, /* subscriber classes */ 2, /* methods per class */ eventCount / 2);
+        final StringBuilder scenario = new StringBuilder()
+                .append("package ").append(GRAPH_PACKAGE).append(";\n")
+                .append("public class GraphScenario implements Runnable {\n")
+                .append("  public void run() {\n")
+                .append("    final ").append(EVENT_BUS_CLASS).append(" flashBus = new ").append(EVENT_BUS_CLASS).append("(1);\n")
+                .append("    final Subscriber0 first = new Subscriber0();\n")
+                .append("    final Subscriber1 second = new Subscriber1();\n")
+                .append("    flashBus.register(first);\n")
+                .append("    flashBus.register(second);\n");
+        for (int event = 0; event < eventCount; event++) {
+            scenario.append("    flashBus.post").append(event == 0 ? "Sticky" : "").append("(new Event").append(event).append("());\n");
+        }
+        scenario
+                .append("    flashBus.register(new Subscriber0());\n")
+                .append("    final int count = first.count + second.count;\n")
+                .append("    flashBus.shutdown();\n")
+                .append("    if (count != ").append(eventCount).append(") { throw new AssertionError(\"deliveries: \" + count); }\n")
+                .append("    if (flashBus.getStickyEvent(Event0.class) == null) { throw new AssertionError(\"sticky event\"); }\n")
+                .append("  }\n")
+                .append("}\n");
+        final FlashBusCompiler compiler = new FlashBusCompiler()
+                .withOptions("-Apackage=" + EVENT_BUS_PACKAGE, "-Aruntime=jvm", "-Xlint:unchecked")
+                .withSource(GRAPH_PACKAGE + ".GraphScenario", scenario.toString());
+        for (final Map.Entry<String, String> source : sources.entrySet()) {
+            compiler.withSource(source.getKey(), source.getValue());
+        }
+        final FlashBusCompiler.Result result = assertSuccess(compiler.compile());
+        assertEquals(Collections.emptyList(), getGeneratedSourceWarnings(result));
+
+        final String eventBus = result.getGeneratedSource(EVENT_BUS_CLASS);
+        final String firstShard = result.getGeneratedSource(EVENT_BUS_PACKAGE + ".DispatcherShard0");
+        final String secondShard = result.getGeneratedSource(EVENT_BUS_PACKAGE + ".DispatcherShard1");
+        assertNotNull(firstShard);
+        assertNotNull(secondShard);
+        assertNull(result.getGeneratedSource(EVENT_BUS_PACKAGE + ".DispatcherShard2"));
+        assertTrue(firstShard.contains("final class DispatcherShard0"));
+        assertFalse("the dispatcher classes are generated into the shards", eventBus.contains("extends PostingDispatcher<"));
+        assertTrue(firstShard.contains("extends PostingDispatcher<"));
+        assertTrue(secondShard.contains("extends PostingDispatcher<"));
+        runScenario(result, GRAPH_PACKAGE + ".GraphScenario");
+    }
+
+    /**
+     * Compile the given fixture as application module with the plain JVM runtime.
+     *
+     * @param fixture The fixture.
+     * @param options The additional compiler options.
+     * @return The successful compilation result.
+     */
+    private static FlashBusCompiler.Result compileApplication(final String fixture, final String... options) {
+        return assertSuccess(new FlashBusCompiler()
+                .withFixture(fixture)
+                .withOptions("-Apackage=" + EVENT_BUS_PACKAGE, "-Aruntime=jvm")
+                .withOptions(options)
+                .compile());
+    }
+
+    private static FlashBusCompiler.Result compileDeadPosts(final String deadPosts) {
+        return compileDeadPosts(deadPosts, FlashBusCompiler.EnvironmentWrapper.NONE);
+    }
+
+    private static FlashBusCompiler.Result compileDeadPosts(final String deadPosts, final FlashBusCompiler.EnvironmentWrapper wrapper) {
+        return new FlashBusCompiler()
+                .withFixture("app")
+                .withFixture("deadposts")
+                .withOptions("-Apackage=" + EVENT_BUS_PACKAGE, "-Aruntime=jvm", "-AdeadPosts=" + deadPosts)
+                .withEnvironmentWrapper(wrapper)
+                .compile();
+    }
+
+    private static List<String> getDeadPostMessages(final List<String> messages) {
+        final List<String> deadPostMessages = new ArrayList<>();
+        for (final String message : messages) {
+            if (message.contains("dead post:")) {
+                deadPostMessages.add(message);
+            }
+        }
+        return deadPostMessages;
+    }
+
+    /**
+     * Get the compiler warnings of the generated sources (the warnings of the compiler itself, e.g. about the source version, are not
+     * included).
+     *
+     * @param result The compilation result.
+     * @return The warnings.
+     */
+    private static List<String> getGeneratedSourceWarnings(final FlashBusCompiler.Result result) {
+        final List<String> warnings = new ArrayList<>();
+        for (final Diagnostic.Kind kind : new Diagnostic.Kind[]{Diagnostic.Kind.WARNING, Diagnostic.Kind.MANDATORY_WARNING}) {
+            for (final String message : result.getMessages(kind)) {
+                if (message.contains(EVENT_BUS_PACKAGE.replace('.', '/'))) {
+                    warnings.add(message);
+                }
+            }
+        }
+        return warnings;
+    }
+
+    private static FlashBusCompiler.Result compileOverloads(final String[] methods) {
+        final StringBuilder subscriber = new StringBuilder()
+                .append("package com.example.overload;\n")
+                .append("import com.msagi.flashbus.annotation.Subscribe;\n")
+                .append("import com.msagi.flashbus.annotation.ThreadId;\n")
+                .append("public class TickSubscriber {\n");
+        for (final String method : methods) {
+            subscriber.append("  ").append(method).append("\n");
+        }
+        subscriber.append("}\n");
+        return new FlashBusCompiler()
+                .withOptions("-Apackage=" + EVENT_BUS_PACKAGE, "-Aruntime=jvm")
+                .withSource("com.example.overload.Tick", "package com.example.overload;\npublic class Tick { }\n")
+                .withSource("com.example.overload.TickSubscriber", subscriber.toString())
+                .compile();
+    }
+
+    private static void assertInvalidSubscriber(final String method, final String expectedMessage) {
+        final FlashBusCompiler.Result result = new FlashBusCompiler()
+                .withOptions("-Apackage=" + EVENT_BUS_PACKAGE, "-Aruntime=jvm")
+                .withSource("com.example.invalid.InvalidSubscriber", "package com.example.invalid;\n"
+                        + "import com.msagi.flashbus.annotation.Subscribe;\n"
+                        + "import com.msagi.flashbus.annotation.ThreadId;\n"
+                        + "public class InvalidSubscriber {\n"
+                        + "  " + method + "\n"
+                        + "}\n")
+                .compile();
+        assertFalse(method, result.isSuccess());
+        assertContains(result.getMessages(Diagnostic.Kind.ERROR), expectedMessage);
+    }
+
+    private static void assertContains(final List<String> messages, final String expectedMessage) {
+        for (final String message : messages) {
+            if (message.contains(expectedMessage)) {
+                return;
+            }
+        }
+        throw new AssertionError("no message containing: " + expectedMessage + ", messages: " + messages);
+    }
+
+    /**
+     * Count the classes of the event bus package (the event bus, its nested classes and the dispatcher shards).
+     *
+     * @param result The compilation result.
+     * @return The number of classes.
+     */
+    private static int countEventBusClasses(final FlashBusCompiler.Result result) {
+        int count = 0;
+        for (final String className : result.getClassNames()) {
+            if (className.startsWith(EVENT_BUS_PACKAGE + ".")) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static FlashBusCompiler.Result assertSuccess(final FlashBusCompiler.Result result) {
+        assertTrue("compilation failed:\n" + result.getDiagnosticsReport(), result.isSuccess());
+        return result;
+    }
+
+    private static void runScenario(final FlashBusCompiler.Result result, final String scenario) throws Exception {
+        ((Runnable) result.newClassLoader().loadClass(scenario).getDeclaredConstructor().newInstance()).run();
+    }
+
+    /**
+     * Generate the sources of a subscriber graph: event classes Event0, Event1, ... and subscriber classes Subscriber0, Subscriber1, ...
+     * with POSTING subscriber methods counting their deliveries (the subscriber methods take the event classes in turn).
+     *
+     * @param eventCount           The number of event classes.
+     * @param subscriberCount      The number of subscriber classes.
+     * @param methodsPerSubscriber The number of subscriber methods per subscriber class.
+     * @return The sources by class name.
+     */
+    private static Map<String, String> generateGraph(final int eventCount, final int subscriberCount, final int methodsPerSubscriber) {
+        final Map<String, String> sources = new LinkedHashMap<>();
+        for (int event = 0; event < eventCount; event++) {
+            sources.put(GRAPH_PACKAGE + ".Event" + event, "package " + GRAPH_PACKAGE + ";\npublic class Event" + event + " {\n}\n");
+        }
+        int event = 0;
+        for (int subscriber = 0; subscriber < subscriberCount; subscriber++) {
+            final StringBuilder source = new StringBuilder()
+                    .append("package ").append(GRAPH_PACKAGE).append(";\n")
+                    .append("import com.msagi.flashbus.annotation.Subscribe;\n")
+                    .append("import com.msagi.flashbus.annotation.ThreadId;\n")
+                    .append("public class Subscriber").append(subscriber).append(" {\n")
+                    .append("  public int count;\n");
+            for (int method = 0; method < methodsPerSubscriber; method++) {
+                source
+                        .append("  @Subscribe(thread = ThreadId.POSTING)\n")
+                        .append("  public void on").append(method).append("(final Event").append(event).append(" event) { count++; }\n");
+                event = (event + 1) % eventCount;
+            }
+            sources.put(GRAPH_PACKAGE + ".Subscriber" + subscriber, source.append("}\n").toString());
+        }
+        return sources;
+    }
+}
@@ -0,0 +1,209 @@
+/*
+ * Copyright 2015 Miklos Sagi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.msagi.flashbus.generator;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Runtime behaviour of the generated event bus (plain JVM runtime): the fixture scenarios are compiled with the annotation processor for
+ * every combination of the compiler parameters below and run against the generated event bus. The class and the switch dispatcher layouts
+ * run the same scenarios, so they are checked for the same behaviour.
+ *
+ * @author msagi (miklos.sagi@gmail.com)
+ */
+@RunWith(Parameterized.class)
+public class FlashBusRuntimeTest {
+
+    /**
+     * The package of the fixture scenarios.
+     */
+    private static final String SCENARIO_PACKAGE = "com.example.app.";
+
+    /**
+     * The compilation results by configuration name (each configuration is compiled once for all the tests).
+     */
+    private static final Map<String, FlashBusCompiler.Result> RESULTS = new HashMap<>();
+
+    /**
+     * The name of the configuration.
+     */
+    private final String name;
+
+    /**
+     * The compiler parameters of the configuration.
+     */
+    private final List<String> options;
+
+    public FlashBusRuntimeTest(final String name, final String[] options) {
+        this.name = name;
+        this.options = Arrays.asList(options);
+    }
+
+    @Parameterized.Parameters(name = "{0}")
+    public static Collection<Object[]> configurations() {
+        return Arrays.asList(new Object[][]{
+                {"default", new String[]{}},
+                {"ring", new String[]{"-Aqueue=ring"}},
+                {"ring, same thread delivery, weak", new String[]{"-Aqueue=ring", "-AsameThreadDelivery=true", "-AweakSubscribers=true"}},
+                {"metrics, latency, drain budget events", new String[]{"-Ametrics=true", "-Alatency=true", "-AdrainBudgetEvents=8"}},
+                {"metrics, latency, weak, ring, drain budget nanos", new String[]{"-Ametrics=true", "-Alatency=true", "-AweakSubscribers=true",
+                        "-Aqueue=ring", "-AdrainBudgetNanos=100000"}},
+                {"switch", new String[]{"-Adispatchers=switch"}},
+                {"switch, metrics, latency, ring, weak", new String[]{"-Adispatchers=switch", "-Ametrics=true", "-Alatency=true", "-Aqueue=ring",
+                        "-AweakSubscribers=true"}},
+        });
+    }
+
+    @Test
+    public void testThreads() throws Exception {
+        runScenario(SCENARIO_PACKAGE + "ThreadScenario");
+    }
+
+    @Test
+    public void testFailOverflow() throws Exception {
+        runScenario(SCENARIO_PACKAGE + "OverflowScenario");
+    }
+
+    @Test
+    public void testOverflowPolicies() throws Exception {
+        runScenario(SCENARIO_PACKAGE + "PolicyScenario");
+    }
+
+    @Test
+    public void testConflation() throws Exception {
+        runScenario(SCENARIO_PACKAGE + "ConflateScenario");
+    }
+
+    @Test
+    public void testBatches() throws Exception {
+        runScenario(SCENARIO_PACKAGE + "BatchScenario");
+    }
+
+    @Test
+    public void testHierarchy() throws Exception {
+        runScenario(SCENARIO_PACKAGE + "HierarchyScenario");
+    }
+
+    @Test
+    public void testPriorityAndCancellation() throws Exception {
+        runScenario(SCENARIO_PACKAGE + "PriorityScenario");
+    }
+
+    @Test
+    public void testSticky() throws Exception {
+        runScenario(SCENARIO_PACKAGE + "StickyScenario");
+    }
+
+    @Test
+    public void testRegistration() throws Exception {
+        runScenario(SCENARIO_PACKAGE + "RegistrationScenario");
+    }
+
+    @Test
+    public void testSubscriberReferences() throws Exception {
+        runScenario(SCENARIO_PACKAGE + (hasOption("-AweakSubscribers=true") ? "WeakScenario" : "StrongScenario"));
+    }
+
+    @Test
+    public void testDrains() throws Exception {
+        final String scenario;
+        if (hasOption("-AdrainBudgetEvents=8")) {
+            scenario = "EventBudgetScenario";
+        } else if (hasOption("-AdrainBudgetNanos=100000")) {
+            scenario = "BudgetScenario";
+        } else {
+            scenario = "DrainScenario";
+        }
+        runScenario(SCENARIO_PACKAGE + scenario);
+    }
+
+    @Test
+    public void testPrimitiveChannels() throws Exception {
+        runScenario(SCENARIO_PACKAGE + "ChannelScenario");
+    }
+
+    @Test
+    public void testShutdown() throws Exception {
+        runScenario(SCENARIO_PACKAGE + "ShutdownScenario");
+    }
+
+    @Test
+    public void testRingBuffers() throws Exception {
+        runScenario("com.example.bus.RingBufferScenario");
+    }
+
+    @Test
+    public void testMetrics() throws Exception {
+        assumeTrue(hasOption("-Ametrics=true") && hasOption("-Alatency=true"));
+        runScenario(SCENARIO_PACKAGE + "MetricsScenario");
+    }
+
+    @Test
+    public void testSameThreadDelivery() throws Exception {
+        runScenario(SCENARIO_PACKAGE + (hasOption("-AsameThreadDelivery=true") ? "SameThreadScenario" : "QueuedScenario"));
+    }
+
+    /**
+     * Run the given scenario of the fixtures compiled for the configuration.
+     *
+     * @param scenario The fully qualified class name of the scenario.
+     * @throws Exception If the scenario cannot be loaded.
+     */
+    private void runScenario(final String scenario) throws Exception {
+        final Runnable runnable = (Runnable) compile().newClassLoader().loadClass(scenario).getDeclaredConstructor().newInstance();
+        runnable.run();
+    }
+
+    /**
+     * Compile the fixtures for the configuration (once per configuration).
+     *
+     * @return The compilation result.
+     */
+    private FlashBusCompiler.Result compile() {
+        synchronized (RESULTS) {
+            FlashBusCompiler.Result result = RESULTS.get(name);
+            if (result == null) {
+                final FlashBusCompiler compiler = new FlashBusCompiler()
+                        .withFixture("app")
+                        .withFixture("ringbuffer")
+                        .withOptions("-Apackage=com.example.bus", "-Aruntime=jvm")
+                        .withOptions(options.toArray(new String[options.size()]));
+                if (hasOption("-Ametrics=true") && hasOption("-Alatency=true")) {
+                    compiler.withFixture("metrics");
+                }
+                result = compiler.compile();
+                assertTrue(name + ": compilation failed:\n" + result.getDiagnosticsReport(), result.isSuccess());
+                RESULTS.put(name, result);
+            }
+            return result;
+        }
+    }
+
+    private boolean hasOption(final String option) {
+        return options.contains(option);
+    }
+}
@@ -0,0 +1,30 @@
+/*
+ * Copyright 2015 Miklos Sagi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package android.os;
+
+/**
+ * Compile time stub of the Android class (the tests compile the Android runtime of the event bus, they do not run it).
+ */
+public class HandlerThread extends Thread {
+
+    public HandlerThread(final String name) {
+        throw new UnsupportedOperationException("stub");
+    }
+
+    public Looper getLooper() {
+        throw new UnsupportedOperationException("stub");
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright 2015 Miklos Sagi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.app;
+
+import com.example.bus.FlashBus;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Batches: postAll() of batches larger than the bounded event queue of the subscriber falls back to the overflow policy event by event
+ * (BLOCK schedules the subscriber before waiting, so the batch does not wait for itself), the batch subscriber methods receive every event
+ * in order.
+ *
+ * @author msagi (miklos.sagi@gmail.com)
+ */
+public class BatchScenario implements Runnable {
+
+    private static final int BATCH_SIZE = 64;
+
+    @Override
+    public void run() {
+        final FlashBus flashBus = new FlashBus(4);
+        try {
+            final BatchSubscriber subscriber = new BatchSubscriber(3 * BATCH_SIZE + 1);
+            flashBus.register(subscriber);
+            final Thread producer = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    final Item[] array = new Item[BATCH_SIZE];
+                    for (int index = 0; index < BATCH_SIZE; index++) {
+                        array[index] = new Item(index);
+                    }
+                    flashBus.postAll(array);
+                    final List<Item> collection = new ArrayList<>();
+                    for (int index = BATCH_SIZE; index < 2 * BATCH_SIZE; index++) {
+                        collection.add(new Item(index));
+                    }
+                    flashBus.postAll(Item.class, collection);
+                    flashBus.post(new Item(2 * BATCH_SIZE));
+                    for (int index = 2 * BATCH_SIZE + 1; index < 3 * BATCH_SIZE + 1; index += BatchSubscriber.CAPACITY) {
+                        final List<Item> fitting = new ArrayList<>();
+                        for (int offset = 0; offset < BatchSubscriber.CAPACITY; offset++) {
+                            fitting.add(new Item(index + offset));
+                        }
+                        flashBus.postAll(Item.class, fitting);
+                    }
+                }
+            }, "batchProducer");
+            producer.setDaemon(true);
+            producer.start();
+            try {
+                producer.join(Check.TIMEOUT_SECONDS * 1000);
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+                throw new AssertionError("interrupted");
+            }
+            Check.isTrue(!producer.isAlive(), "postAll() blocked on the full event queue");
+
+            final List<Integer> expected = new ArrayList<>();
+            for (int value = 0; value < 3 * BATCH_SIZE + 1; value++) {
+                expected.add(value);
+            }
+            Check.await(subscriber.boundedDelivered, "bounded batch deliveries");
+            Check.await(subscriber.defaultDelivered, "default batch deliveries");
+            synchronized (subscriber) {
+                Check.equal(expected, subscriber.boundedValues, "bounded batch values");
+                Check.equal(expected, subscriber.defaultValues, "default batch values");
+                for (final int batchSize : subscriber.boundedBatchSizes) {
+                    Check.isTrue(batchSize > 0, "empty batch delivered");
+                }
+            }
+            flashBus.unregister(subscriber);
+        } finally {
+            flashBus.shutdown();
+        }
+    }
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright 2015 Miklos Sagi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.app;
+
+import com.msagi.flashbus.annotation.Subscribe;
+import com.msagi.flashbus.annotation.ThreadId;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Batch subscriber methods: one with a small bounded event queue, one with the default event queue.
+ *
+ * @author msagi (miklos.sagi@gmail.com)
+ */
+public class BatchSubscriber {
+
+    static final int CAPACITY = 4;
+
+    final List<Integer> boundedValues = new ArrayList<>();
+
+    final List<Integer> boundedBatchSizes = new ArrayList<>();
+
+    final CountDownLatch boundedDelivered;
+
+    final List<Integer> defaultValues = new ArrayList<>();
+
+    final CountDownLatch defaultDelivered;
+
+    public BatchSubscriber(final int expectedCount) {
+        boundedDelivered = new CountDownLatch(expectedCount);
+        defaultDelivered = new CountDownLatch(expectedCount);
+    }
+
+    @Subscribe(thread = ThreadId.BACKGROUND, capacity = CAPACITY)
+    public void onBoundedItems(final List<Item> items) {
+        synchronized (this) {
+            boundedBatchSizes.add(items.size());
+            for (final Item item : items) {
+                boundedValues.add(item.value);
+            }
+        }
+        for (int index = 0; index < items.size(); index++) {
+            boundedDelivered.countDown();
+        }
+    }
+
+    @Subscribe(thread = ThreadId.ASYNC)
+    public void onItems(final List<Item> items) {
+        synchronized (this) {
+            for (final Item item : items) {
+                defaultValues.add(item.value);
+            }
+        }
+        for (int index = 0; index < items.size(); index++) {
+            defaultDelivered.countDown();
+        }
+    }
+}
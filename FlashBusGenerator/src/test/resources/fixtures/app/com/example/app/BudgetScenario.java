@@ -0,0 +1,31 @@
+/*
+ * Copyright 2015 Miklos Sagi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.app;
+
+/**
+ * Drain budget (-AdrainBudgetEvents or -AdrainBudgetNanos): the dispatcher of the burst yields the delivery thread when its budget is used
+ * up, so the beacon is delivered before the rest of the loads, which keep their order.
+ *
+ * @author msagi (miklos.sagi@gmail.com)
+ */
+public class BudgetScenario extends DrainScenario {
+
+    @Override
+    protected void checkLoadsAtBeacon(final int loadsAtBeacon) {
+        Check.isTrue(loadsAtBeacon > 0 && loadsAtBeacon < LOAD_COUNT, "the burst was not yielded to the beacon: " + loadsAtBeacon
+                + " loads delivered before the beacon");
+    }
+}
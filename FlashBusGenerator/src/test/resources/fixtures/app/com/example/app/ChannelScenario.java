@@ -0,0 +1,110 @@
+/*
+ * Copyright 2015 Miklos Sagi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.app;
+
+import com.example.bus.FlashBus;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Primitive value channels: int, long and double values keep their exact value and order on every thread, a POSTING subscriber with higher
+ * priority cancels the further delivery, a full DROP_OLDEST value queue keeps the latest values and counts the overflow per channel, and
+ * several producers posting to a small BLOCK value queue (which wraps around many times) keep their order.
+ *
+ * @author msagi (miklos.sagi@gmail.com)
+ */
+public class ChannelScenario implements Runnable {
+
+    private static final int PROGRESS_COUNT = 100;
+
+    private static final List<Long> CLOCK_VALUES = Arrays.asList(Long.MIN_VALUE, -1L, 0L, 1L, Long.MAX_VALUE);
+
+    private static final List<Double> RATIO_VALUES = Arrays.asList(0.5, -0.0, 0.0, Double.NaN, Double.MIN_VALUE, Double.MAX_VALUE,
+            Double.NEGATIVE_INFINITY);
+
+    private static final int LEVEL_COUNT = 10;
+
+    private static final int PRODUCER_COUNT = 4;
+
+    private static final int VALUES_PER_PRODUCER = 2000;
+
+    @Override
+    public void run() {
+        final FlashBus flashBus = new FlashBus(4);
+        try {
+            final ChannelSubscriber subscriber = new ChannelSubscriber(PROGRESS_COUNT, RATIO_VALUES.size(), 1 + ChannelSubscriber.CAPACITY,
+                    PRODUCER_COUNT, PRODUCER_COUNT * VALUES_PER_PRODUCER);
+            flashBus.register(subscriber);
+
+            final List<Integer> expectedProgress = new ArrayList<>();
+            for (int value = 0; value < PROGRESS_COUNT; value++) {
+                flashBus.postInt(ChannelSubscriber.PROGRESS, value);
+                flashBus.postInt(ChannelSubscriber.PROGRESS, -value - 1);
+                expectedProgress.add(value);
+            }
+            for (final long value : CLOCK_VALUES) {
+                flashBus.postLong(ChannelSubscriber.CLOCK, value);
+            }
+            Check.equal(CLOCK_VALUES, subscriber.clock, "long values");
+            for (final double value : RATIO_VALUES) {
+                flashBus.postDouble(ChannelSubscriber.RATIO, value);
+            }
+
+            flashBus.postInt(ChannelSubscriber.LEVEL, 0);
+            subscriber.level.awaitEntered("level");
+            for (int value = 1; value < LEVEL_COUNT; value++) {
+                flashBus.postInt(ChannelSubscriber.LEVEL, value);
+            }
+            Check.equal((long) (LEVEL_COUNT - 1 - ChannelSubscriber.CAPACITY), flashBus.getOverflowCount(ChannelSubscriber.LEVEL),
+                    "DROP_OLDEST channel overflow count");
+            subscriber.level.open();
+
+            final List<Thread> producers = new ArrayList<>();
+            for (int index = 0; index < PRODUCER_COUNT; index++) {
+                final long first = index * (long) ChannelSubscriber.PRODUCER_FACTOR;
+                producers.add(new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        for (long value = first; value < first + VALUES_PER_PRODUCER; value++) {
+                            flashBus.postLong(ChannelSubscriber.SEQUENCE, value);
+                        }
+                    }
+                }, "channelProducer-" + index));
+            }
+            for (final Thread producer : producers) {
+                producer.setDaemon(true);
+                producer.start();
+            }
+
+            Check.equal(expectedProgress, subscriber.progress.awaitValues("int channel"), "int values (the negative ones cancelled)");
+            Check.await(subscriber.ratiosDelivered, "double channel");
+            synchronized (subscriber.ratios) {
+                Check.equal(RATIO_VALUES, subscriber.ratios, "double values");
+            }
+            Check.equal(Arrays.asList(0, 6, 7, 8, 9), subscriber.level.awaitValues("level"), "DROP_OLDEST channel values");
+            Check.await(subscriber.sequencesDelivered, "multi-producer channel");
+            synchronized (subscriber.errors) {
+                Check.isTrue(subscriber.errors.isEmpty(), "multi-producer channel: " + subscriber.errors);
+            }
+            Check.equal(0L, flashBus.getOverflowCount(ChannelSubscriber.PROGRESS), "unbounded channel overflow count");
+            flashBus.unregister(subscriber);
+        } finally {
+            flashBus.shutdown();
+        }
+    }
+}
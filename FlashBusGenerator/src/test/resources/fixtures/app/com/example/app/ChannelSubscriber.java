@@ -0,0 +1,115 @@
+/*
+ * Copyright 2015 Miklos Sagi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.app;
+
+import com.msagi.flashbus.annotation.OverflowPolicy;
+import com.msagi.flashbus.annotation.Subscribe;
+import com.msagi.flashbus.annotation.ThreadId;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Subscriber of primitive value channels.
+ *
+ * @author msagi (miklos.sagi@gmail.com)
+ */
+public class ChannelSubscriber {
+
+    static final String PROGRESS = "download.progress";
+
+    static final String CLOCK = "clock";
+
+    static final String RATIO = "ratio";
+
+    static final String LEVEL = "level";
+
+    static final String SEQUENCE = "sequence";
+
+    static final int CAPACITY = 4;
+
+    static final int PRODUCER_FACTOR = 1000000;
+
+    final Probe progress;
+
+    final List<Long> clock = new ArrayList<>();
+
+    final List<Double> ratios = new ArrayList<>();
+
+    final CountDownLatch ratiosDelivered;
+
+    final Probe level;
+
+    final long[] lastSequences;
+
+    final CountDownLatch sequencesDelivered;
+
+    final List<String> errors = new ArrayList<>();
+
+    public ChannelSubscriber(final int progressCount, final int ratioCount, final int levelCount, final int producerCount,
+                             final int sequenceCount) {
+        progress = new Probe(progressCount);
+        progress.open();
+        ratiosDelivered = new CountDownLatch(ratioCount);
+        level = new Probe(levelCount);
+        lastSequences = new long[producerCount];
+        for (int producer = 0; producer < producerCount; producer++) {
+            lastSequences[producer] = producer * (long) PRODUCER_FACTOR - 1;
+        }
+        sequencesDelivered = new CountDownLatch(sequenceCount);
+    }
+
+    @Subscribe(channel = PROGRESS, thread = ThreadId.POSTING, priority = 1)
+    public boolean onProgressFilter(final int value) {
+        return value < 0;
+    }
+
+    @Subscribe(channel = PROGRESS, thread = ThreadId.BACKGROUND)
+    public void onProgress(final int value) {
+        progress.receive(value);
+    }
+
+    @Subscribe(channel = CLOCK, thread = ThreadId.POSTING)
+    public void onClock(final long value) {
+        clock.add(value);
+    }
+
+    @Subscribe(channel = RATIO, thread = ThreadId.ASYNC)
+    public void onRatio(final double value) {
+        synchronized (ratios) {
+            ratios.add(value);
+        }
+        ratiosDelivered.countDown();
+    }
+
+    @Subscribe(channel = LEVEL, thread = ThreadId.BACKGROUND, capacity = CAPACITY, overflow = OverflowPolicy.DROP_OLDEST)
+    public void onLevel(final int value) {
+        level.receive(value);
+    }
+
+    @Subscribe(channel = SEQUENCE, thread = ThreadId.ASYNC, capacity = CAPACITY)
+    public void onSequence(final long value) {
+        final int producer = (int) (value / PRODUCER_FACTOR);
+        synchronized (errors) {
+            if (value != lastSequences[producer] + 1 && errors.size() < 10) {
+                errors.add("out of order: producer " + producer + ": " + value + " after " + lastSequences[producer]);
+            }
+            lastSequences[producer] = value;
+        }
+        sequencesDelivered.countDown();
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright 2015 Miklos Sagi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.app;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Assertions of the fixture scenarios (the scenarios are compiled by the tests, so they cannot use JUnit).
+ *
+ * @author msagi (miklos.sagi@gmail.com)
+ */
+public final class Check {
+
+    /**
+     * The timeout of the asynchronous deliveries (in seconds).
+     */
+    public static final long TIMEOUT_SECONDS = 20;
+
+    private Check() {
+    }
+
+    /**
+     * Check condition.
+     *
+     * @param condition The condition.
+     * @param message   The message of the failure.
+     */
+    public static void isTrue(final boolean condition, final String message) {
+        if (!condition) {
+            throw new AssertionError(message);
+        }
+    }
+
+    /**
+     * Check equality.
+     *
+     * @param expected The expected value.
+     * @param actual   The actual value.
+     * @param message  The message of the failure.
+     */
+    public static void equal(final Object expected, final Object actual, final String message) {
+        if (expected == null ? actual != null : !expected.equals(actual)) {
+            throw new AssertionError(message + ": expected: " + expected + ", actual: " + actual);
+        }
+    }
+
+    /**
+     * Wait for the latch.
+     *
+     * @param latch   The latch.
+     * @param message The message of the failure (timeout).
+     */
+    public static void await(final CountDownLatch latch, final String message) {
+        try {
+            if (!latch.await(TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                throw new AssertionError(message + ": timeout (remaining count: " + latch.getCount() + ")");
+            }
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw new AssertionError(message + ": interrupted");
+        }
+    }
+}
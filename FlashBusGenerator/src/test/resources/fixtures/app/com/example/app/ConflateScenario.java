@@ -0,0 +1,49 @@
+/*
+ * Copyright 2015 Miklos Sagi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.app;
+
+import com.example.bus.FlashBus;
+
+import java.util.Arrays;
+
+/**
+ * Conflation: the events posted while the conflating subscriber is busy overwrite each other, the subscriber receives the latest one only.
+ *
+ * @author msagi (miklos.sagi@gmail.com)
+ */
+public class ConflateScenario implements Runnable {
+
+    private static final int EVENT_COUNT = 10;
+
+    @Override
+    public void run() {
+        final FlashBus flashBus = new FlashBus(4);
+        try {
+            final ConflateSubscriber subscriber = new ConflateSubscriber();
+            flashBus.register(subscriber);
+            flashBus.post(new Price(0));
+            subscriber.probe.awaitEntered("conflate");
+            for (int value = 1; value < EVENT_COUNT; value++) {
+                flashBus.post(new Price(value));
+            }
+            subscriber.probe.open();
+            Check.equal(Arrays.asList(0, EVENT_COUNT - 1), subscriber.probe.awaitValues("conflate"), "conflated deliveries");
+            flashBus.unregister(subscriber);
+        } finally {
+            flashBus.shutdown();
+        }
+    }
+}
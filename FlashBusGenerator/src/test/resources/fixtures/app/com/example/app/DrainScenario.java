@@ -0,0 +1,83 @@
+/*
+ * Copyright 2015 Miklos Sagi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.app;
+
+import com.example.bus.FlashBus;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Delivery groups without drain budget: the dispatchers of the delivery thread run in the order they became ready, a dispatcher drains its
+ * whole event queue in one run, and a dispatcher becoming ready while the group runs waits for the next drain. A beacon posted after a burst
+ * of loads (while the delivery thread is held) is delivered after all the loads.
+ *
+ * @author msagi (miklos.sagi@gmail.com)
+ */
+public class DrainScenario implements Runnable {
+
+    static final int LOAD_COUNT = 500;
+
+    @Override
+    public void run() {
+        final FlashBus flashBus = new FlashBus(4);
+        try {
+            final DrainSubscriber subscriber = new DrainSubscriber(LOAD_COUNT);
+            flashBus.register(subscriber);
+            flashBus.post(new Load(0));
+            subscriber.loads.awaitEntered("loads");
+            for (int value = 1; value < LOAD_COUNT; value++) {
+                flashBus.post(new Load(value));
+            }
+            flashBus.post(new Beacon(0));
+            subscriber.loads.open();
+
+            final List<Integer> expected = new ArrayList<>();
+            for (int value = 0; value < LOAD_COUNT; value++) {
+                expected.add(value);
+            }
+            Check.equal(expected, subscriber.loads.awaitValues("loads"), "load deliveries");
+            Check.await(subscriber.batchDelivered, "load batch deliveries");
+            Check.await(subscriber.beaconDelivered, "beacon delivery");
+            synchronized (subscriber) {
+                Check.equal(expected, subscriber.batchValues, "load batch values");
+                checkBatchSizes(subscriber.batchSizes);
+            }
+            checkLoadsAtBeacon(subscriber.loadsAtBeacon);
+            flashBus.unregister(subscriber);
+        } finally {
+            flashBus.shutdown();
+        }
+    }
+
+    /**
+     * Check the number of loads delivered before the beacon.
+     *
+     * @param loadsAtBeacon The number of loads delivered before the beacon.
+     */
+    protected void checkLoadsAtBeacon(final int loadsAtBeacon) {
+        Check.equal(LOAD_COUNT, loadsAtBeacon, "loads delivered before the beacon (the whole burst in one run)");
+    }
+
+    /**
+     * Check the sizes of the batches delivered to the batch subscriber method.
+     *
+     * @param batchSizes The sizes of the batches.
+     */
+    protected void checkBatchSizes(final List<Integer> batchSizes) {
+        //any size without drain budget
+    }
+}
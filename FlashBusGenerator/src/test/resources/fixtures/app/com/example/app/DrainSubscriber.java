@@ -0,0 +1,72 @@
+/*
+ * Copyright 2015 Miklos Sagi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.app;
+
+import com.msagi.flashbus.annotation.Subscribe;
+import com.msagi.flashbus.annotation.ThreadId;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Subscriber of a burst of loads and of a single beacon on the same thread (BACKGROUND).
+ *
+ * @author msagi (miklos.sagi@gmail.com)
+ */
+public class DrainSubscriber {
+
+    final Probe loads;
+
+    final List<Integer> batchSizes = new ArrayList<>();
+
+    final List<Integer> batchValues = new ArrayList<>();
+
+    final CountDownLatch batchDelivered;
+
+    final CountDownLatch beaconDelivered = new CountDownLatch(1);
+
+    volatile int loadsAtBeacon = -1;
+
+    public DrainSubscriber(final int loadCount) {
+        loads = new Probe(loadCount);
+        batchDelivered = new CountDownLatch(loadCount);
+    }
+
+    @Subscribe(thread = ThreadId.BACKGROUND)
+    public void onLoad(final Load load) {
+        loads.receive(load.value);
+    }
+
+    @Subscribe(thread = ThreadId.BACKGROUND)
+    public void onLoads(final List<Load> batch) {
+        synchronized (this) {
+            batchSizes.add(batch.size());
+            for (final Load load : batch) {
+                batchValues.add(load.value);
+            }
+        }
+        for (int index = 0; index < batch.size(); index++) {
+            batchDelivered.countDown();
+        }
+    }
+
+    @Subscribe(thread = ThreadId.BACKGROUND)
+    public void onBeacon(final Beacon beacon) {
+        loadsAtBeacon = loads.getValues().size();
+        beaconDelivered.countDown();
+    }
+}
@@ -0,0 +1,30 @@
+/*
+ * Copyright 2015 Miklos Sagi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.app;
+
+/**
+ * Event of the overflow scenarios (posted by its BACKGROUND subscriber to itself).
+ *
+ * @author msagi (miklos.sagi@gmail.com)
+ */
+public class Echo {
+
+    public final int depth;
+
+    public Echo(final int depth) {
+        this.depth = depth;
+    }
+}
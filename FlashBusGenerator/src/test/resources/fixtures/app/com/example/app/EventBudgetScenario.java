@@ -0,0 +1,41 @@
+/*
+ * Copyright 2015 Miklos Sagi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.app;
+
+import java.util.List;
+
+/**
+ * Drain budget of events (to be run with -AdrainBudgetEvents=8): the burst yields after the budget, and the batch subscriber methods
+ * receive at most the budget in one call.
+ *
+ * @author msagi (miklos.sagi@gmail.com)
+ */
+public class EventBudgetScenario extends BudgetScenario {
+
+    static final int EVENT_BUDGET = 8;
+
+    @Override
+    protected void checkLoadsAtBeacon(final int loadsAtBeacon) {
+        Check.equal(EVENT_BUDGET, loadsAtBeacon, "loads delivered before the beacon");
+    }
+
+    @Override
+    protected void checkBatchSizes(final List<Integer> batchSizes) {
+        for (final int batchSize : batchSizes) {
+            Check.isTrue(batchSize > 0 && batchSize <= EVENT_BUDGET, "batch size over the drain budget: " + batchSize);
+        }
+    }
+}
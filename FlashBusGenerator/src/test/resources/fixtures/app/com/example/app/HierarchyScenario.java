@@ -0,0 +1,79 @@
+/*
+ * Copyright 2015 Miklos Sagi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.app;
+
+import com.example.bus.FlashBus;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Event class hierarchy: posting an event delivers it to the subscribers of its static type and of the supertypes of the static type, the
+ * higher priority first, then the more specific class first. The sticky events are delivered on registration the same way.
+ *
+ * @author msagi (miklos.sagi@gmail.com)
+ */
+public class HierarchyScenario implements Runnable {
+
+    @Override
+    public void run() {
+        final FlashBus flashBus = new FlashBus(4);
+        try {
+            final HierarchySubscriber subscriber = new HierarchySubscriber(3);
+            flashBus.register(subscriber);
+            subscriber.background.open();
+
+            flashBus.post(new DerivedEvent(1));
+            Check.equal(Arrays.asList("marker:1", "derived:1", "base:1"), subscriber.deliveries, "fan-out of the subclass");
+            subscriber.deliveries.clear();
+
+            final BaseEvent base = new DerivedEvent(2);
+            flashBus.post(base);
+            Check.equal(Arrays.asList("base:2"), subscriber.deliveries, "fan-out of the static superclass type");
+            subscriber.deliveries.clear();
+
+            final Marker marker = new DerivedEvent(3);
+            flashBus.post(marker);
+            Check.equal(Arrays.asList("marker:3"), subscriber.deliveries, "fan-out of the static interface type");
+            subscriber.deliveries.clear();
+
+            flashBus.post(new BaseEvent(4));
+            Check.equal(Arrays.asList("base:4"), subscriber.deliveries, "fan-out of the superclass");
+
+            Check.equal(Arrays.asList(1, 2, 4), subscriber.background.awaitValues("BACKGROUND superclass subscriber"),
+                    "BACKGROUND superclass deliveries");
+            flashBus.unregister(subscriber);
+
+            //the sticky events of a subclass are delivered to the subscribers of its supertypes on registration too
+            flashBus.postSticky(new DerivedEvent(5));
+            flashBus.postSticky(new BaseEvent(6));
+            final HierarchySubscriber late = new HierarchySubscriber(2);
+            flashBus.register(late);
+            late.background.open();
+            final List<String> lateDeliveries = new ArrayList<>(late.deliveries);
+            Collections.sort(lateDeliveries);
+            Check.equal(Arrays.asList("base:5", "base:6", "derived:5", "marker:5"), lateDeliveries, "sticky events of the subclass");
+            final List<Integer> lateBackground = new ArrayList<>(late.background.awaitValues("late BACKGROUND superclass subscriber"));
+            Collections.sort(lateBackground);
+            Check.equal(Arrays.asList(5, 6), lateBackground, "BACKGROUND sticky events of the subclass");
+            flashBus.unregister(late);
+        } finally {
+            flashBus.shutdown();
+        }
+    }
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright 2015 Miklos Sagi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.app;
+
+import com.msagi.flashbus.annotation.Subscribe;
+import com.msagi.flashbus.annotation.ThreadId;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Subscriber of an event class, its superclass and its interface.
+ *
+ * @author msagi (miklos.sagi@gmail.com)
+ */
+public class HierarchySubscriber {
+
+    final List<String> deliveries = new ArrayList<>();
+
+    final Probe background;
+
+    public HierarchySubscriber(final int backgroundCount) {
+        background = new Probe(backgroundCount);
+    }
+
+    @Subscribe(thread = ThreadId.POSTING)
+    public void onDerived(final DerivedEvent event) {
+        deliveries.add("derived:" + event.value);
+    }
+
+    @Subscribe(thread = ThreadId.POSTING)
+    public void onBase(final BaseEvent event) {
+        deliveries.add("base:" + event.value);
+    }
+
+    @Subscribe(thread = ThreadId.POSTING, priority = 1)
+    public void onMarker(final Marker marker) {
+        deliveries.add("marker:" + ((BaseEvent) marker).value);
+    }
+
+    @Subscribe(thread = ThreadId.BACKGROUND)
+    public void onBaseInBackground(final BaseEvent event) {
+        background.receive(event.value);
+    }
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright 2015 Miklos Sagi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.app;
+
+import com.example.bus.FlashBus;
+
+/**
+ * Overflow policies of the bounded event queues: a full FAIL event queue throws after the event is dispatched to the other subscribers,
+ * and a BLOCK subscriber posting to its own full event queue (on its delivery thread) fails fast instead of waiting for itself.
+ *
+ * @author msagi (miklos.sagi@gmail.com)
+ */
+public class OverflowScenario implements Runnable {
+
+    private static final int TICK_COUNT = 20;
+
+    @Override
+    public void run() {
+        final FlashBus flashBus = new FlashBus(4);
+        try {
+            final OverflowSubscriber subscriber = new OverflowSubscriber(flashBus);
+            flashBus.register(subscriber);
+
+            int failures = 0;
+            for (int sequence = 0; sequence < TICK_COUNT; sequence++) {
+                try {
+                    flashBus.post(new Tick(sequence));
+                } catch (IllegalStateException ise) {
+                    failures++;
+                }
+            }
+            Check.equal(TICK_COUNT, subscriber.postingTicks.get(), "the failing FAIL subscriber stopped the fan-out");
+            Check.isTrue(failures > 0, "no FAIL overflow");
+            Check.equal((long) failures, flashBus.getOverflowCount(Tick.class), "FAIL overflow count");
+            subscriber.gate.countDown();
+
+            flashBus.post(new Echo(0));
+            Check.await(subscriber.echoDone, "BACKGROUND subscriber posting to itself");
+            Check.isTrue(subscriber.echoFailure.get() != null, "BACKGROUND self post did not fail fast");
+
+            flashBus.post(new AsyncEcho(0));
+            Check.await(subscriber.asyncEchoDone, "ASYNC subscriber posting to itself");
+            Check.isTrue(subscriber.asyncEchoFailure.get() != null, "ASYNC self post did not fail fast");
+
+            flashBus.unregister(subscriber);
+        } finally {
+            flashBus.shutdown();
+        }
+    }
+}
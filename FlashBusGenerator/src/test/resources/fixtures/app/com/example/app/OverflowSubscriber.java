@@ -0,0 +1,98 @@
+/*
+ * Copyright 2015 Miklos Sagi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.app;
+
+import com.example.bus.FlashBus;
+import com.msagi.flashbus.annotation.OverflowPolicy;
+import com.msagi.flashbus.annotation.Subscribe;
+import com.msagi.flashbus.annotation.ThreadId;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Subscriber with small bounded event queues: a FAIL subscriber held up by a gate, and BLOCK subscribers posting to themselves.
+ *
+ * @author msagi (miklos.sagi@gmail.com)
+ */
+public class OverflowSubscriber {
+
+    static final int CAPACITY = 4;
+
+    static final int ECHO_COUNT = 16;
+
+    final CountDownLatch gate = new CountDownLatch(1);
+
+    final AtomicInteger failTicks = new AtomicInteger();
+
+    final AtomicInteger postingTicks = new AtomicInteger();
+
+    final AtomicReference<Throwable> echoFailure = new AtomicReference<>();
+
+    final CountDownLatch echoDone = new CountDownLatch(1);
+
+    final AtomicReference<Throwable> asyncEchoFailure = new AtomicReference<>();
+
+    final CountDownLatch asyncEchoDone = new CountDownLatch(1);
+
+    private final FlashBus mFlashBus;
+
+    public OverflowSubscriber(final FlashBus flashBus) {
+        mFlashBus = flashBus;
+    }
+
+    @Subscribe(thread = ThreadId.BACKGROUND, capacity = CAPACITY, overflow = OverflowPolicy.FAIL, priority = 1)
+    public void onFailTick(final Tick tick) {
+        Check.await(gate, "gate");
+        failTicks.incrementAndGet();
+    }
+
+    @Subscribe(thread = ThreadId.POSTING)
+    public void onPostingTick(final Tick tick) {
+        postingTicks.incrementAndGet();
+    }
+
+    @Subscribe(thread = ThreadId.BACKGROUND, capacity = CAPACITY)
+    public void onEcho(final Echo echo) {
+        if (echo.depth > 0) {
+            return;
+        }
+        try {
+            for (int index = 0; index < ECHO_COUNT; index++) {
+                mFlashBus.post(new Echo(1));
+            }
+        } catch (IllegalStateException ise) {
+            echoFailure.set(ise);
+        }
+        echoDone.countDown();
+    }
+
+    @Subscribe(thread = ThreadId.ASYNC, capacity = CAPACITY)
+    public void onAsyncEcho(final AsyncEcho echo) {
+        if (echo.depth > 0) {
+            return;
+        }
+        try {
+            for (int index = 0; index < ECHO_COUNT; index++) {
+                mFlashBus.post(new AsyncEcho(1));
+            }
+        } catch (IllegalStateException ise) {
+            asyncEchoFailure.set(ise);
+        }
+        asyncEchoDone.countDown();
+    }
+}
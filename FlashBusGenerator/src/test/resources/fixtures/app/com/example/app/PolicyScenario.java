@@ -0,0 +1,99 @@
+/*
+ * Copyright 2015 Miklos Sagi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.app;
+
+import com.example.bus.FlashBus;
+
+import java.util.Arrays;
+
+/**
+ * Overflow policies of the bounded event queues: the first event holds the delivery thread, the next events fill the event queue of
+ * the subscriber and overflow it. DROP_OLDEST keeps the latest events, DROP_NEWEST keeps the earliest ones, and BLOCK holds the
+ * posting thread until the subscriber takes an event.
+ *
+ * @author msagi (miklos.sagi@gmail.com)
+ */
+public class PolicyScenario implements Runnable {
+
+    private static final int EVENT_COUNT = 10;
+
+    /**
+     * The number of events not fitting into the event queue (the first event is taken by the held delivery).
+     */
+    private static final int OVERFLOW_COUNT = EVENT_COUNT - 1 - PolicySubscriber.CAPACITY;
+
+    @Override
+    public void run() {
+        final FlashBus flashBus = new FlashBus(4);
+        try {
+            final PolicySubscriber subscriber = new PolicySubscriber(1 + PolicySubscriber.CAPACITY, 1 + PolicySubscriber.CAPACITY,
+                    PolicySubscriber.CAPACITY + 2);
+            flashBus.register(subscriber);
+
+            flashBus.post(new Reading(0));
+            subscriber.oldest.awaitEntered("DROP_OLDEST");
+            for (int value = 1; value < EVENT_COUNT; value++) {
+                flashBus.post(new Reading(value));
+            }
+            Check.equal((long) OVERFLOW_COUNT, flashBus.getOverflowCount(Reading.class), "DROP_OLDEST overflow count");
+            subscriber.oldest.open();
+            Check.equal(Arrays.asList(0, 6, 7, 8, 9), subscriber.oldest.awaitValues("DROP_OLDEST"), "DROP_OLDEST deliveries");
+
+            flashBus.post(new Frame(0));
+            subscriber.newest.awaitEntered("DROP_NEWEST");
+            for (int value = 1; value < EVENT_COUNT; value++) {
+                flashBus.post(new Frame(value));
+            }
+            Check.equal((long) OVERFLOW_COUNT, flashBus.getOverflowCount(Frame.class), "DROP_NEWEST overflow count");
+            subscriber.newest.open();
+            Check.equal(Arrays.asList(0, 1, 2, 3, 4), subscriber.newest.awaitValues("DROP_NEWEST"), "DROP_NEWEST deliveries");
+
+            flashBus.post(new Job(0));
+            subscriber.block.awaitEntered("BLOCK");
+            for (int value = 1; value <= PolicySubscriber.CAPACITY; value++) {
+                flashBus.post(new Job(value));
+            }
+            final Thread producer = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    flashBus.post(new Job(PolicySubscriber.CAPACITY + 1));
+                }
+            }, "blockedProducer");
+            producer.setDaemon(true);
+            producer.start();
+            join(producer, 200);
+            Check.isTrue(producer.isAlive(), "BLOCK did not hold the posting thread on the full event queue");
+            Check.equal(1L, flashBus.getOverflowCount(Job.class), "BLOCK overflow count");
+            subscriber.block.open();
+            join(producer, Check.TIMEOUT_SECONDS * 1000);
+            Check.isTrue(!producer.isAlive(), "BLOCK did not release the posting thread");
+            Check.equal(Arrays.asList(0, 1, 2, 3, 4, 5), subscriber.block.awaitValues("BLOCK"), "BLOCK deliveries");
+
+            flashBus.unregister(subscriber);
+        } finally {
+            flashBus.shutdown();
+        }
+    }
+
+    private static void join(final Thread thread, final long millis) {
+        try {
+            thread.join(millis);
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw new AssertionError("interrupted");
+        }
+    }
+}
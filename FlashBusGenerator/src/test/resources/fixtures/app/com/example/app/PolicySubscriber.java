@@ -0,0 +1,57 @@
+/*
+ * Copyright 2015 Miklos Sagi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.app;
+
+import com.msagi.flashbus.annotation.OverflowPolicy;
+import com.msagi.flashbus.annotation.Subscribe;
+import com.msagi.flashbus.annotation.ThreadId;
+
+/**
+ * Subscriber with small bounded event queues of the DROP_OLDEST, DROP_NEWEST and BLOCK overflow policies.
+ *
+ * @author msagi (miklos.sagi@gmail.com)
+ */
+public class PolicySubscriber {
+
+    static final int CAPACITY = 4;
+
+    final Probe oldest;
+
+    final Probe newest;
+
+    final Probe block;
+
+    public PolicySubscriber(final int oldestCount, final int newestCount, final int blockCount) {
+        oldest = new Probe(oldestCount);
+        newest = new Probe(newestCount);
+        block = new Probe(blockCount);
+    }
+
+    @Subscribe(thread = ThreadId.BACKGROUND, capacity = CAPACITY, overflow = OverflowPolicy.DROP_OLDEST)
+    public void onReading(final Reading reading) {
+        oldest.receive(reading.value);
+    }
+
+    @Subscribe(thread = ThreadId.BACKGROUND, capacity = CAPACITY, overflow = OverflowPolicy.DROP_NEWEST)
+    public void onFrame(final Frame frame) {
+        newest.receive(frame.value);
+    }
+
+    @Subscribe(thread = ThreadId.BACKGROUND, capacity = CAPACITY, overflow = OverflowPolicy.BLOCK)
+    public void onJob(final Job job) {
+        block.receive(job.value);
+    }
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright 2015 Miklos Sagi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.app;
+
+import com.example.bus.FlashBus;
+
+import java.util.Arrays;
+
+/**
+ * Priorities and cancellation: post() dispatches to the higher priority first and stops when a POSTING subscriber cancels the delivery,
+ * postAll() dispatches to every subscriber.
+ *
+ * @author msagi (miklos.sagi@gmail.com)
+ */
+public class PriorityScenario implements Runnable {
+
+    @Override
+    public void run() {
+        final FlashBus flashBus = new FlashBus(4);
+        try {
+            final PrioritySubscriber subscriber = new PrioritySubscriber(2);
+            flashBus.register(subscriber);
+            subscriber.background.open();
+
+            flashBus.post(new Command(1, false));
+            Check.equal(Arrays.asList("high:1", "low:1"), subscriber.deliveries, "priority order");
+            subscriber.deliveries.clear();
+
+            flashBus.post(new Command(2, true));
+            Check.equal(Arrays.asList("high:2"), subscriber.deliveries, "cancelled delivery");
+            subscriber.deliveries.clear();
+
+            flashBus.postAll(new Command[]{new Command(3, true)});
+            Check.equal(Arrays.asList("high:3", "low:3"), subscriber.deliveries, "postAll() is not cancelled");
+
+            Check.equal(Arrays.asList(1, 3), subscriber.background.awaitValues("BACKGROUND subscriber"), "BACKGROUND deliveries");
+            flashBus.unregister(subscriber);
+        } finally {
+            flashBus.shutdown();
+        }
+    }
+}
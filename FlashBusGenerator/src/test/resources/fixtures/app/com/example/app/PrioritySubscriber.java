@@ -0,0 +1,54 @@
+/*
+ * Copyright 2015 Miklos Sagi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.app;
+
+import com.msagi.flashbus.annotation.Subscribe;
+import com.msagi.flashbus.annotation.ThreadId;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Subscriber methods of different priorities, the one with the highest priority cancels the further delivery of the consumed commands.
+ *
+ * @author msagi (miklos.sagi@gmail.com)
+ */
+public class PrioritySubscriber {
+
+    final List<String> deliveries = new ArrayList<>();
+
+    final Probe background;
+
+    public PrioritySubscriber(final int backgroundCount) {
+        background = new Probe(backgroundCount);
+    }
+
+    @Subscribe(thread = ThreadId.POSTING, priority = -5)
+    public void onLow(final Command command) {
+        deliveries.add("low:" + command.value);
+    }
+
+    @Subscribe(thread = ThreadId.BACKGROUND)
+    public void onNormal(final Command command) {
+        background.receive(command.value);
+    }
+
+    @Subscribe(thread = ThreadId.POSTING, priority = 10)
+    public boolean onHigh(final Command command) {
+        deliveries.add("high:" + command.value);
+        return command.consume;
+    }
+}
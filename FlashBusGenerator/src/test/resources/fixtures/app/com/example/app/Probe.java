@@ -0,0 +1,104 @@
+/*
+ * Copyright 2015 Miklos Sagi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.app;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Probe of a queued subscriber method: records the received values and holds the delivery thread in the first delivery until the gate is
+ * opened, so that the scenarios can fill the event queue of the subscriber.
+ *
+ * @author msagi (miklos.sagi@gmail.com)
+ */
+public final class Probe {
+
+    /**
+     * The latch released when the first delivery is entered.
+     */
+    private final CountDownLatch entered = new CountDownLatch(1);
+
+    /**
+     * The gate holding the first delivery.
+     */
+    private final CountDownLatch gate = new CountDownLatch(1);
+
+    /**
+     * The latch counting down the expected deliveries.
+     */
+    private final CountDownLatch delivered;
+
+    /**
+     * The received values in the order of delivery.
+     */
+    private final List<Integer> values = new ArrayList<>();
+
+    public Probe(final int expectedCount) {
+        delivered = new CountDownLatch(expectedCount);
+    }
+
+    public void receive(final int value) {
+        final boolean first;
+        synchronized (this) {
+            first = values.isEmpty();
+            values.add(value);
+        }
+        if (first) {
+            entered.countDown();
+            Check.await(gate, "gate");
+        }
+        delivered.countDown();
+    }
+
+    /**
+     * Wait until the first delivery holds the delivery thread.
+     *
+     * @param name The name of the subscriber (for the failure message).
+     */
+    public void awaitEntered(final String name) {
+        Check.await(entered, name + ": first delivery");
+    }
+
+    /**
+     * Release the first delivery.
+     */
+    public void open() {
+        gate.countDown();
+    }
+
+    /**
+     * Wait for the expected deliveries.
+     *
+     * @param name The name of the subscriber (for the failure message).
+     * @return The received values.
+     */
+    public List<Integer> awaitValues(final String name) {
+        Check.await(delivered, name + ": deliveries");
+        synchronized (this) {
+            return new ArrayList<>(values);
+        }
+    }
+
+    /**
+     * Get the values received so far.
+     *
+     * @return The received values.
+     */
+    public synchronized List<Integer> getValues() {
+        return new ArrayList<>(values);
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright 2015 Miklos Sagi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.app;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Recorder of the deliveries of a subscriber method: checks the delivery thread and the order of the events of every producer.
+ *
+ * @author msagi (miklos.sagi@gmail.com)
+ */
+public final class Recorder {
+
+    /**
+     * The name prefix of the expected delivery thread.
+     */
+    private final String threadNamePrefix;
+
+    /**
+     * The last received sequence number per producer.
+     */
+    private final int[] lastSequences;
+
+    /**
+     * The latch counting down the expected deliveries.
+     */
+    private final CountDownLatch latch;
+
+    /**
+     * The errors found (wrong thread, wrong order).
+     */
+    private final List<String> errors = new ArrayList<>();
+
+    public Recorder(final String threadNamePrefix, final int producerCount, final int expectedCount) {
+        this.threadNamePrefix = threadNamePrefix;
+        this.lastSequences = new int[producerCount];
+        Arrays.fill(lastSequences, -1);
+        this.latch = new CountDownLatch(expectedCount);
+    }
+
+    public synchronized void record(final Ping ping) {
+        final String threadName = Thread.currentThread().getName();
+        if (!threadName.startsWith(threadNamePrefix) && errors.size() < 10) {
+            errors.add("wrong thread: " + threadName + " (expected: " + threadNamePrefix + "*)");
+        }
+        if (ping.sequence != lastSequences[ping.producer] + 1 && errors.size() < 10) {
+            errors.add("out of order: producer " + ping.producer + ": " + ping.sequence + " after " + lastSequences[ping.producer]);
+        }
+        lastSequences[ping.producer] = ping.sequence;
+        latch.countDown();
+    }
+
+    public void check(final String name) {
+        Check.await(latch, name + ": deliveries");
+        synchronized (this) {
+            Check.isTrue(errors.isEmpty(), name + ": " + errors);
+        }
+    }
+}
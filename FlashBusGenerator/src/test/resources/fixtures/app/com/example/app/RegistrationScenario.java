@@ -0,0 +1,89 @@
+/*
+ * Copyright 2015 Miklos Sagi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.app;
+
+import com.example.bus.FlashBus;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Registration: the subscribers of an event class receive the events in the order of registration, also after unregistering most of them
+ * (which compacts the dispatcher slots) and registering them again.
+ *
+ * @author msagi (miklos.sagi@gmail.com)
+ */
+public class RegistrationScenario implements Runnable {
+
+    private static final int SUBSCRIBER_COUNT = 100;
+
+    private static final int KEPT_EVERY = 10;
+
+    @Override
+    public void run() {
+        final FlashBus flashBus = new FlashBus(4);
+        try {
+            final List<Integer> log = new ArrayList<>();
+            final List<NoteSubscriber> subscribers = new ArrayList<>();
+            final List<Integer> expected = new ArrayList<>();
+            for (int id = 0; id < SUBSCRIBER_COUNT; id++) {
+                final NoteSubscriber subscriber = new NoteSubscriber(id, log);
+                subscribers.add(subscriber);
+                flashBus.register(subscriber);
+                expected.add(id);
+            }
+            flashBus.post(new Note(0));
+            Check.equal(expected, log, "registration order");
+
+            //unregister from both ends towards the middle, leaving every tenth subscriber registered
+            log.clear();
+            expected.clear();
+            for (int offset = 0; offset < SUBSCRIBER_COUNT / 2; offset++) {
+                for (final int id : new int[]{offset, SUBSCRIBER_COUNT - 1 - offset}) {
+                    if (id % KEPT_EVERY != 0) {
+                        flashBus.unregister(subscribers.get(id));
+                    }
+                }
+            }
+            for (int id = 0; id < SUBSCRIBER_COUNT; id += KEPT_EVERY) {
+                expected.add(id);
+            }
+            flashBus.post(new Note(1));
+            Check.equal(expected, log, "order after unregistering (compaction)");
+
+            log.clear();
+            for (int id = 0; id < SUBSCRIBER_COUNT; id++) {
+                if (id % KEPT_EVERY != 0) {
+                    flashBus.register(subscribers.get(id));
+                    expected.add(id);
+                }
+            }
+            flashBus.post(new Note(2));
+            Check.equal(expected, log, "order after registering again");
+
+            log.clear();
+            for (final NoteSubscriber subscriber : subscribers) {
+                flashBus.unregister(subscriber);
+            }
+            flashBus.post(new Note(3));
+            Check.equal(Collections.<Integer>emptyList(), log, "deliveries after unregistering every subscriber");
+            flashBus.unregister(subscribers.get(0));
+        } finally {
+            flashBus.shutdown();
+        }
+    }
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright 2015 Miklos Sagi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.app;
+
+import com.example.bus.FlashBus;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Same thread delivery (-AsameThreadDelivery=true): an event posted on the delivery thread of its subscriber, which has no events waiting,
+ * is delivered inline, before post() returns. The events keep their order.
+ *
+ * @author msagi (miklos.sagi@gmail.com)
+ */
+public class SameThreadScenario implements Runnable {
+
+    private static final int EVENT_COUNT = 100;
+
+    @Override
+    public void run() {
+        final FlashBus flashBus = new FlashBus(4);
+        try {
+            final SameThreadSubscriber subscriber = new SameThreadSubscriber(flashBus, EVENT_COUNT);
+            flashBus.register(subscriber);
+            final List<Integer> expected = new ArrayList<>();
+            for (int value = 0; value < EVENT_COUNT; value++) {
+                flashBus.post(new Relay(value));
+                expected.add(value);
+            }
+            Check.await(subscriber.relaysDelivered, "relay deliveries");
+            Check.await(subscriber.signalsDelivered, "signal deliveries");
+            synchronized (subscriber) {
+                Check.equal(expected, subscriber.signals, "signal order");
+                Check.equal(Collections.nCopies(EVENT_COUNT, isInline()), subscriber.inline, "signals delivered inline");
+            }
+            flashBus.unregister(subscriber);
+        } finally {
+            flashBus.shutdown();
+        }
+    }
+
+    /**
+     * Check if the signals are expected to be delivered inline.
+     *
+     * @return True if the signals are expected to be delivered inline, false otherwise.
+     */
+    protected boolean isInline() {
+        return true;
+    }
+}
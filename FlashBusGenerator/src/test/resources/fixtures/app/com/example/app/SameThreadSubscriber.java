@@ -0,0 +1,66 @@
+/*
+ * Copyright 2015 Miklos Sagi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.app;
+
+import com.example.bus.FlashBus;
+import com.msagi.flashbus.annotation.Subscribe;
+import com.msagi.flashbus.annotation.ThreadId;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Subscriber posting a signal from its BACKGROUND delivery thread to its other BACKGROUND subscriber method, recording if the signal was
+ * delivered before post() returned.
+ *
+ * @author msagi (miklos.sagi@gmail.com)
+ */
+public class SameThreadSubscriber {
+
+    final List<Boolean> inline = new ArrayList<>();
+
+    final List<Integer> signals = new ArrayList<>();
+
+    final CountDownLatch relaysDelivered;
+
+    final CountDownLatch signalsDelivered;
+
+    private final FlashBus mFlashBus;
+
+    public SameThreadSubscriber(final FlashBus flashBus, final int eventCount) {
+        mFlashBus = flashBus;
+        relaysDelivered = new CountDownLatch(eventCount);
+        signalsDelivered = new CountDownLatch(eventCount);
+    }
+
+    @Subscribe(thread = ThreadId.BACKGROUND)
+    public void onRelay(final Relay relay) {
+        mFlashBus.post(new Signal(relay.value));
+        synchronized (this) {
+            inline.add(!signals.isEmpty() && signals.get(signals.size() - 1) == relay.value);
+        }
+        relaysDelivered.countDown();
+    }
+
+    @Subscribe(thread = ThreadId.BACKGROUND)
+    public void onSignal(final Signal signal) {
+        synchronized (this) {
+            signals.add(signal.value);
+        }
+        signalsDelivered.countDown();
+    }
+}
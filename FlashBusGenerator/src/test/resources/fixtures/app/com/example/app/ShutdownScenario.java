@@ -0,0 +1,76 @@
+/*
+ * Copyright 2015 Miklos Sagi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.app;
+
+import com.example.bus.FlashBus;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Shutdown: posting after the shutdown does not fail (the events are dropped), and the dispatchers draining a burst while the event bus
+ * shuts down finish without errors on the delivery threads (with a drain budget they yield to executors which reject them by then).
+ *
+ * @author msagi (miklos.sagi@gmail.com)
+ */
+public class ShutdownScenario implements Runnable {
+
+    private static final int HALT_COUNT = 64;
+
+    @Override
+    public void run() {
+        final List<Throwable> uncaughtErrors = Collections.synchronizedList(new ArrayList<Throwable>());
+        final Thread.UncaughtExceptionHandler defaultHandler = Thread.getDefaultUncaughtExceptionHandler();
+        Thread.setDefaultUncaughtExceptionHandler(new Thread.UncaughtExceptionHandler() {
+            @Override
+            public void uncaughtException(final Thread thread, final Throwable throwable) {
+                uncaughtErrors.add(throwable);
+            }
+        });
+        try {
+            final FlashBus flashBus = new FlashBus(1);
+            final ShutdownSubscriber subscriber = new ShutdownSubscriber();
+            flashBus.register(subscriber);
+            for (int sequence = 0; sequence < HALT_COUNT; sequence++) {
+                flashBus.post(new Halt(sequence));
+            }
+            Check.await(subscriber.backgroundStarted, "BACKGROUND halt");
+            Check.await(subscriber.asyncStarted, "ASYNC halt");
+
+            flashBus.shutdown();
+            //rejected by the executors of every thread
+            flashBus.post(new Wake());
+            flashBus.postSticky(new Wake());
+
+            subscriber.release.countDown();
+            join(subscriber.backgroundThread);
+            join(subscriber.asyncThread);
+            Check.equal(Collections.emptyList(), new ArrayList<>(uncaughtErrors), "errors on the delivery threads");
+        } finally {
+            Thread.setDefaultUncaughtExceptionHandler(defaultHandler);
+        }
+    }
+
+    private static void join(final Thread thread) {
+        try {
+            thread.join(Check.TIMEOUT_SECONDS * 1000);
+        } catch (InterruptedException ie) {
+            throw new AssertionError("interrupted");
+        }
+        Check.isTrue(!thread.isAlive(), "delivery thread still running after the shutdown: " + thread.getName());
+    }
+}
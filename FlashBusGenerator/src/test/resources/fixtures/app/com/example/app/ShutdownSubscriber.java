@@ -0,0 +1,65 @@
+/*
+ * Copyright 2015 Miklos Sagi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.app;
+
+import com.msagi.flashbus.annotation.Subscribe;
+import com.msagi.flashbus.annotation.ThreadId;
+
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Subscriber of the shutdown scenario: the halts hold up their delivery threads until released, the wakes are posted after the shutdown.
+ *
+ * @author msagi (miklos.sagi@gmail.com)
+ */
+public class ShutdownSubscriber {
+
+    final CountDownLatch release = new CountDownLatch(1);
+
+    final CountDownLatch backgroundStarted = new CountDownLatch(1);
+
+    final CountDownLatch asyncStarted = new CountDownLatch(1);
+
+    volatile Thread backgroundThread;
+
+    volatile Thread asyncThread;
+
+    @Subscribe(thread = ThreadId.BACKGROUND)
+    public void onBackgroundHalt(final Halt halt) {
+        backgroundThread = Thread.currentThread();
+        backgroundStarted.countDown();
+        Check.await(release, "release");
+    }
+
+    @Subscribe(thread = ThreadId.ASYNC)
+    public void onAsyncHalt(final Halt halt) {
+        asyncThread = Thread.currentThread();
+        asyncStarted.countDown();
+        Check.await(release, "release");
+    }
+
+    @Subscribe(thread = ThreadId.MAIN)
+    public void onMainWake(final Wake wake) {
+    }
+
+    @Subscribe(thread = ThreadId.BACKGROUND)
+    public void onBackgroundWake(final Wake wake) {
+    }
+
+    @Subscribe(thread = ThreadId.ASYNC)
+    public void onAsyncWake(final Wake wake) {
+    }
+}
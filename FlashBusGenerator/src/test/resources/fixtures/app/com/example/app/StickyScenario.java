@@ -0,0 +1,74 @@
+/*
+ * Copyright 2015 Miklos Sagi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.app;
+
+import com.example.bus.FlashBus;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+/**
+ * Sticky events: the latest sticky event of the class is kept and delivered to the subscribers registered later, until it is removed.
+ *
+ * @author msagi (miklos.sagi@gmail.com)
+ */
+public class StickyScenario implements Runnable {
+
+    @Override
+    public void run() {
+        final FlashBus flashBus = new FlashBus(4);
+        try {
+            Check.equal(null, flashBus.getStickyStatus(), "sticky event before posting");
+            final Status first = new Status(1);
+            flashBus.postSticky(first);
+            Check.isTrue(flashBus.getStickyStatus() == first, "typed sticky event getter");
+            Check.isTrue(flashBus.getStickyEvent(Status.class) == first, "generic sticky event getter");
+            Check.equal(null, flashBus.getStickyEvent(Item.class), "sticky event of an other class");
+
+            final StickySubscriber early = new StickySubscriber(4);
+            flashBus.register(early);
+            Check.equal(Arrays.asList(1), early.values, "sticky event delivered on registration");
+
+            final Status second = new Status(2);
+            flashBus.postSticky(second);
+            flashBus.post(new Status(3));
+            Check.equal(Arrays.asList(1, 2, 3), early.values, "sticky events are posted too");
+            Check.isTrue(flashBus.getStickyStatus() == second, "post() does not replace the sticky event");
+
+            final StickySubscriber late = new StickySubscriber(1);
+            flashBus.register(late);
+            Check.equal(Arrays.asList(2), late.values, "latest sticky event delivered on registration");
+            Check.equal(Arrays.asList(2), late.background.awaitValues("late BACKGROUND subscriber"), "late BACKGROUND sticky delivery");
+
+            flashBus.removeStickyStatus();
+            Check.equal(null, flashBus.getStickyStatus(), "typed sticky event removal");
+            final StickySubscriber afterRemoval = new StickySubscriber(0);
+            flashBus.register(afterRemoval);
+            Check.equal(Collections.<Integer>emptyList(), afterRemoval.values, "removed sticky event delivered on registration");
+
+            flashBus.postSticky(new Status(4));
+            flashBus.removeStickyEvent(Status.class);
+            Check.equal(null, flashBus.getStickyEvent(Status.class), "generic sticky event removal");
+
+            Check.equal(Arrays.asList(1, 2, 3, 4), early.background.awaitValues("early BACKGROUND subscriber"), "early BACKGROUND deliveries");
+            flashBus.unregister(early);
+            flashBus.unregister(late);
+            flashBus.unregister(afterRemoval);
+        } finally {
+            flashBus.shutdown();
+        }
+    }
+}
@@ -0,0 +1,49 @@
+/*
+ * Copyright 2015 Miklos Sagi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.app;
+
+import com.msagi.flashbus.annotation.Subscribe;
+import com.msagi.flashbus.annotation.ThreadId;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Subscriber of sticky events.
+ *
+ * @author msagi (miklos.sagi@gmail.com)
+ */
+public class StickySubscriber {
+
+    final List<Integer> values = new ArrayList<>();
+
+    final Probe background;
+
+    public StickySubscriber(final int backgroundCount) {
+        background = new Probe(backgroundCount);
+        background.open();
+    }
+
+    @Subscribe(thread = ThreadId.POSTING)
+    public void onStatus(final Status status) {
+        values.add(status.value);
+    }
+
+    @Subscribe(thread = ThreadId.BACKGROUND)
+    public void onStatusInBackground(final Status status) {
+        background.receive(status.value);
+    }
+}
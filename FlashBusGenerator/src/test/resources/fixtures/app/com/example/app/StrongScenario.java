@@ -0,0 +1,58 @@
+/*
+ * Copyright 2015 Miklos Sagi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.app;
+
+import com.example.bus.FlashBus;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Strong subscribers (default): the event bus keeps a registered subscriber alive until it is unregistered.
+ *
+ * @author msagi (miklos.sagi@gmail.com)
+ */
+public class StrongScenario implements Runnable {
+
+    private static final int GC_COUNT = 3;
+
+    @Override
+    public void run() {
+        final FlashBus flashBus = new FlashBus(4);
+        try {
+            final List<Integer> log = new ArrayList<>();
+            final WeakReference<NoteSubscriber> registered = registerUnreferenced(flashBus, log);
+            for (int index = 0; index < GC_COUNT; index++) {
+                System.gc();
+                flashBus.post(new Note(index));
+            }
+            Check.equal(Arrays.asList(1, 1, 1), log, "deliveries to the unreferenced subscriber");
+            final NoteSubscriber subscriber = registered.get();
+            Check.isTrue(subscriber != null, "the event bus did not keep the registered subscriber alive");
+            flashBus.unregister(subscriber);
+        } finally {
+            flashBus.shutdown();
+        }
+    }
+
+    private static WeakReference<NoteSubscriber> registerUnreferenced(final FlashBus flashBus, final List<Integer> log) {
+        final NoteSubscriber subscriber = new NoteSubscriber(1, log);
+        flashBus.register(subscriber);
+        return new WeakReference<>(subscriber);
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright 2015 Miklos Sagi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.app;
+
+import com.example.bus.FlashBus;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Thread modes and ordering: several producer threads post to the subscribers of every thread mode, every subscriber method receives all
+ * the events on its thread, in the order of every producer (more events than the capacity of the default ring buffer, so the ring buffers
+ * wrap around and fill up).
+ *
+ * @author msagi (miklos.sagi@gmail.com)
+ */
+public class ThreadScenario implements Runnable {
+
+    static final String PRODUCER_THREAD_PREFIX = "producer-";
+
+    private static final int PRODUCER_COUNT = 4;
+
+    private static final int EVENTS_PER_PRODUCER = 3000;
+
+    @Override
+    public void run() {
+        final FlashBus flashBus = new FlashBus(4);
+        try {
+            final ThreadSubscriber subscriber = new ThreadSubscriber(PRODUCER_COUNT, PRODUCER_COUNT * EVENTS_PER_PRODUCER);
+            flashBus.register(subscriber);
+            final List<Thread> producers = new ArrayList<>();
+            for (int index = 0; index < PRODUCER_COUNT; index++) {
+                final int producer = index;
+                producers.add(new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        for (int sequence = 0; sequence < EVENTS_PER_PRODUCER; sequence++) {
+                            flashBus.post(new Ping(producer, sequence));
+                        }
+                    }
+                }, PRODUCER_THREAD_PREFIX + producer));
+            }
+            for (final Thread producer : producers) {
+                //daemon: a producer blocked by a failure does not hold up the JVM
+                producer.setDaemon(true);
+                producer.start();
+            }
+            for (final Thread producer : producers) {
+                try {
+                    producer.join(Check.TIMEOUT_SECONDS * 1000);
+                } catch (InterruptedException ie) {
+                    throw new AssertionError("interrupted");
+                }
+                Check.isTrue(!producer.isAlive(), "producer blocked: " + producer.getName());
+            }
+            subscriber.main.check("MAIN");
+            subscriber.background.check("BACKGROUND");
+            subscriber.async.check("ASYNC");
+            subscriber.posting.check("POSTING");
+            flashBus.unregister(subscriber);
+        } finally {
+            flashBus.shutdown();
+        }
+    }
+}
@@ -0,0 +1,62 @@
+/*
+ * Copyright 2015 Miklos Sagi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.app;
+
+import com.msagi.flashbus.annotation.Subscribe;
+import com.msagi.flashbus.annotation.ThreadId;
+
+/**
+ * Subscriber of every thread mode.
+ *
+ * @author msagi (miklos.sagi@gmail.com)
+ */
+public class ThreadSubscriber {
+
+    final Recorder main;
+
+    final Recorder background;
+
+    final Recorder async;
+
+    final Recorder posting;
+
+    public ThreadSubscriber(final int producerCount, final int expectedCount) {
+        main = new Recorder("mainDelivery[", producerCount, expectedCount);
+        background = new Recorder("backgroundDelivery[", producerCount, expectedCount);
+        async = new Recorder("asyncWorker[", producerCount, expectedCount);
+        posting = new Recorder(ThreadScenario.PRODUCER_THREAD_PREFIX, producerCount, expectedCount);
+    }
+
+    @Subscribe(thread = ThreadId.MAIN)
+    public void onMain(final Ping ping) {
+        main.record(ping);
+    }
+
+    @Subscribe(thread = ThreadId.BACKGROUND)
+    public void onBackground(final Ping ping) {
+        background.record(ping);
+    }
+
+    @Subscribe(thread = ThreadId.ASYNC)
+    public void onAsync(final Ping ping) {
+        async.record(ping);
+    }
+
+    @Subscribe(thread = ThreadId.POSTING)
+    public void onPosting(final Ping ping) {
+        posting.record(ping);
+    }
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright 2015 Miklos Sagi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.app;
+
+import com.example.bus.FlashBus;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Weak subscribers (-AweakSubscribers=true): a subscriber which is registered but not referenced otherwise is collected, its dispatchers
+ * drop the events until registering prunes them, and the other subscribers keep receiving the events.
+ *
+ * @author msagi (miklos.sagi@gmail.com)
+ */
+public class WeakScenario implements Runnable {
+
+    @Override
+    public void run() {
+        final FlashBus flashBus = new FlashBus(4);
+        try {
+            final List<Integer> log = new ArrayList<>();
+            final NoteSubscriber kept = new NoteSubscriber(0, log);
+            flashBus.register(kept);
+            final WeakReference<NoteSubscriber> dropped = registerUnreferenced(flashBus, log);
+            flashBus.post(new Note(0));
+            Check.equal(Arrays.asList(0, 1), log, "deliveries before collection");
+
+            final long deadline = System.currentTimeMillis() + Check.TIMEOUT_SECONDS * 1000;
+            while (dropped.get() != null && System.currentTimeMillis() < deadline) {
+                System.gc();
+                flashBus.post(new Note(1));
+            }
+            Check.isTrue(dropped.get() == null, "the event bus kept the unreferenced weak subscriber alive");
+
+            log.clear();
+            flashBus.post(new Note(2));
+            Check.equal(Arrays.asList(0), log, "deliveries after collection");
+
+            //registering prunes the dispatchers of the collected subscriber
+            final NoteSubscriber added = new NoteSubscriber(2, log);
+            flashBus.register(added);
+            log.clear();
+            flashBus.post(new Note(3));
+            Check.equal(Arrays.asList(0, 2), log, "deliveries after pruning");
+            flashBus.unregister(added);
+            flashBus.unregister(kept);
+        } finally {
+            flashBus.shutdown();
+        }
+    }
+
+    private static WeakReference<NoteSubscriber> registerUnreferenced(final FlashBus flashBus, final List<Integer> log) {
+        final NoteSubscriber subscriber = new NoteSubscriber(1, log);
+        flashBus.register(subscriber);
+        return new WeakReference<>(subscriber);
+    }
+}
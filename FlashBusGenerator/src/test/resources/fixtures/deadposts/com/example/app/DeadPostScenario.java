@@ -0,0 +1,43 @@
+/*
+ * Copyright 2015 Miklos Sagi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.app;
+
+import com.example.bus.FlashBus;
+
+/**
+ * Dead posts: posting an event class without subscribers (or with the static type Object) resolves to the catch-all post methods, which
+ * count the dropped events. The call sites are reported at compile time (see -AdeadPosts).
+ *
+ * @author msagi (miklos.sagi@gmail.com)
+ */
+public class DeadPostScenario implements Runnable {
+
+    @Override
+    public void run() {
+        final FlashBus flashBus = new FlashBus(4);
+        try {
+            final Object note = new Note(0);
+            flashBus.post(new Ghost());
+            flashBus.postSticky(new Ghost());
+            flashBus.post(note);
+            Check.equal(3L, flashBus.getDeadEventCount(), "dead event count");
+            flashBus.post(new Note(1));
+            Check.equal(3L, flashBus.getDeadEventCount(), "dead event count after a live post");
+        } finally {
+            flashBus.shutdown();
+        }
+    }
+}
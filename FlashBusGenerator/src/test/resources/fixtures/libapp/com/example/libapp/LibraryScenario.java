@@ -0,0 +1,50 @@
+/*
+ * Copyright 2015 Miklos Sagi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.libapp;
+
+import com.example.bus.FlashBus;
+import com.example.lib.LibEvent;
+import com.example.lib.LibSubscriber;
+import com.msagi.flashbus.annotation.SubscriberIndex;
+
+import java.util.Arrays;
+
+/**
+ * Application module without subscriber methods of its own (the event bus is generated for the empty subscriber index): the subscribers of
+ * the library module are merged into the event bus of the application.
+ *
+ * @author msagi (miklos.sagi@gmail.com)
+ */
+@SubscriberIndex({})
+public class LibraryScenario implements Runnable {
+
+    @Override
+    public void run() {
+        final FlashBus flashBus = new FlashBus(1);
+        try {
+            final LibSubscriber subscriber = new LibSubscriber();
+            flashBus.register(subscriber);
+            flashBus.post(new LibEvent(1));
+            flashBus.post(new LibEvent(2));
+            if (!Arrays.asList(1, 2).equals(subscriber.values)) {
+                throw new AssertionError("library subscriber deliveries: " + subscriber.values);
+            }
+            flashBus.unregister(subscriber);
+        } finally {
+            flashBus.shutdown();
+        }
+    }
+}
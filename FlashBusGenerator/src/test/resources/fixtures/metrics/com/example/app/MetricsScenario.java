@@ -0,0 +1,118 @@
+/*
+ * Copyright 2015 Miklos Sagi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.app;
+
+import com.example.bus.FlashBus;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Metrics and latency tracking (-Ametrics=true -Alatency=true): the posted and delivered counts, the drained queues, the latency
+ * histograms per event class and thread, and the tracer calls around every delivery.
+ *
+ * @author msagi (miklos.sagi@gmail.com)
+ */
+public class MetricsScenario implements Runnable {
+
+    private static final int EVENT_COUNT = 10;
+
+    private static final String POSTING_METHOD = "com.example.app.StickySubscriber.onStatus(com.example.app.Status)";
+
+    private static final String BACKGROUND_METHOD = "com.example.app.StickySubscriber.onStatusInBackground(com.example.app.Status)";
+
+    @Override
+    public void run() {
+        final FlashBus flashBus = new FlashBus(4);
+        try {
+            final ConcurrentMap<String, AtomicInteger> begins = new ConcurrentHashMap<>();
+            final ConcurrentMap<String, AtomicInteger> ends = new ConcurrentHashMap<>();
+            flashBus.setTracer(new FlashBus.Tracer() {
+                @Override
+                public void beginDelivery(final String subscriberMethod, final Object event) {
+                    count(begins, subscriberMethod);
+                }
+
+                @Override
+                public void endDelivery(final String subscriberMethod, final Object event) {
+                    count(ends, subscriberMethod);
+                }
+            });
+            final StickySubscriber subscriber = new StickySubscriber(EVENT_COUNT);
+            flashBus.register(subscriber);
+            for (int value = 0; value < EVENT_COUNT; value++) {
+                flashBus.post(new Status(value));
+            }
+            subscriber.background.awaitValues("BACKGROUND subscriber");
+
+            final long deadline = System.currentTimeMillis() + Check.TIMEOUT_SECONDS * 1000;
+            //the tracer is called last in the delivery (after the metrics and the latency are recorded)
+            while (getCount(ends, BACKGROUND_METHOD) < EVENT_COUNT && System.currentTimeMillis() < deadline) {
+                Thread.yield();
+            }
+            Check.equal(EVENT_COUNT, getCount(begins, BACKGROUND_METHOD), "tracer begin calls");
+            Check.equal(EVENT_COUNT, getCount(ends, BACKGROUND_METHOD), "tracer end calls");
+
+            final FlashBus.MetricsSnapshot metrics = flashBus.metricsSnapshot();
+            Check.equal((long) EVENT_COUNT, metrics.getPostedCounts().get(Status.class), "posted count");
+            Check.equal((long) EVENT_COUNT, getDeliveredCount(metrics, POSTING_METHOD), "POSTING delivered count");
+            Check.equal((long) EVENT_COUNT, getDeliveredCount(metrics, BACKGROUND_METHOD), "BACKGROUND delivered count");
+            for (final FlashBus.DispatcherMetricsSnapshot dispatcherMetrics : metrics.getDispatcherMetrics()) {
+                Check.equal(0L, dispatcherMetrics.getQueueDepth(), "queue depth of " + dispatcherMetrics.getName());
+            }
+
+            final List<String> latencies = new ArrayList<>();
+            for (final FlashBus.LatencySnapshot latency : flashBus.latencySnapshot()) {
+                if (latency.getEventClass() == Status.class && latency.getHandlerTime().getCount() > 0) {
+                    latencies.add(latency.getThread() + ":" + latency.getQueueWait().getCount() + ":" + latency.getHandlerTime().getCount());
+                }
+            }
+            Check.isTrue(latencies.contains("BACKGROUND:" + EVENT_COUNT + ":" + EVENT_COUNT), "BACKGROUND latency histograms: " + latencies);
+            flashBus.unregister(subscriber);
+        } finally {
+            flashBus.shutdown();
+        }
+    }
+
+    private static long getDeliveredCount(final FlashBus.MetricsSnapshot metrics, final String subscriberMethod) {
+        for (final FlashBus.DispatcherMetricsSnapshot dispatcherMetrics : metrics.getDispatcherMetrics()) {
+            if (subscriberMethod.equals(dispatcherMetrics.getName())) {
+                return dispatcherMetrics.getDeliveredCount();
+            }
+        }
+        throw new AssertionError("no metrics of " + subscriberMethod + ": " + metrics);
+    }
+
+    private static int getCount(final ConcurrentMap<String, AtomicInteger> counts, final String subscriberMethod) {
+        final AtomicInteger count = counts.get(subscriberMethod);
+        return count == null ? 0 : count.get();
+    }
+
+    private static void count(final ConcurrentMap<String, AtomicInteger> counts, final String subscriberMethod) {
+        AtomicInteger count = counts.get(subscriberMethod);
+        if (count == null) {
+            final AtomicInteger newCount = new AtomicInteger();
+            count = counts.putIfAbsent(subscriberMethod, newCount);
+            if (count == null) {
+                count = newCount;
+            }
+        }
+        count.incrementAndGet();
+    }
+}
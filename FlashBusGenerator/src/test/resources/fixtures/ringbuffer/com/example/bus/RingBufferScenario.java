@@ -0,0 +1,257 @@
+/*
+ * Copyright 2015 Miklos Sagi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.bus;
+
+import com.example.app.Check;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The ring buffers of the event queues (RingBuffer and LongRingBuffer, package private classes of the generated event bus): empty and full
+ * states, wraparound, batch offers and multi-producer ordering.
+ *
+ * @author msagi (miklos.sagi@gmail.com)
+ */
+public class RingBufferScenario implements Runnable {
+
+    private static final int CAPACITY = 8;
+
+    private static final int CHUNK_SIZE = 3;
+
+    private static final int PRODUCER_COUNT = 4;
+
+    private static final int ELEMENTS_PER_PRODUCER = 100000;
+
+    @Override
+    public void run() {
+        checkCapacity();
+        checkRingBuffer();
+        checkRingBufferBatches();
+        checkLongRingBuffer();
+        checkRingBufferProducers();
+        checkLongRingBufferProducers();
+    }
+
+    private static void checkCapacity() {
+        for (final int capacity : new int[]{0, -4, 3, 12}) {
+            try {
+                new FlashBus.RingBuffer<Integer>(capacity);
+                throw new AssertionError("RingBuffer accepted capacity " + capacity);
+            } catch (IllegalArgumentException iae) {
+                //expected
+            }
+            try {
+                new FlashBus.LongRingBuffer(capacity);
+                throw new AssertionError("LongRingBuffer accepted capacity " + capacity);
+            } catch (IllegalArgumentException iae) {
+                //expected
+            }
+        }
+    }
+
+    private static void checkRingBuffer() {
+        final FlashBus.RingBuffer<Integer> ringBuffer = new FlashBus.RingBuffer<>(CAPACITY);
+        Check.isTrue(ringBuffer.isEmpty(), "new ring buffer is not empty");
+        Check.equal(null, ringBuffer.poll(), "poll() of the empty ring buffer");
+        Check.equal(0, ringBuffer.size(), "size of the empty ring buffer");
+        int nextOffered = 0;
+        int nextPolled = 0;
+        //the head and the tail wrap around many times, at every offset
+        for (int round = 0; round < 10 * CAPACITY; round++) {
+            final int fill = 1 + round % CAPACITY;
+            for (int index = 0; index < fill; index++) {
+                Check.isTrue(ringBuffer.offer(nextOffered++), "offer() to the not full ring buffer");
+            }
+            Check.equal(fill, ringBuffer.size(), "size after offer()");
+            Check.isTrue(!ringBuffer.isEmpty(), "ring buffer with elements is empty");
+            if (fill == CAPACITY) {
+                Check.isTrue(!ringBuffer.offer(-1), "offer() to the full ring buffer");
+                Check.equal(CAPACITY, ringBuffer.size(), "size of the full ring buffer");
+            }
+            for (int index = 0; index < fill; index++) {
+                Check.equal(nextPolled++, ringBuffer.poll(), "poll() order");
+            }
+            Check.isTrue(ringBuffer.isEmpty(), "drained ring buffer is not empty");
+            Check.equal(null, ringBuffer.poll(), "poll() of the drained ring buffer");
+        }
+    }
+
+    private static void checkRingBufferBatches() {
+        final FlashBus.RingBuffer<Integer> ringBuffer = new FlashBus.RingBuffer<>(CAPACITY);
+        Check.isTrue(!ringBuffer.offerAll(range(0, CAPACITY + 1)), "offerAll() of a batch larger than the capacity");
+        Check.isTrue(ringBuffer.isEmpty(), "rejected batch inserted elements");
+        Check.isTrue(ringBuffer.offerAll(Collections.<Integer>emptyList()), "offerAll() of an empty batch");
+        Check.isTrue(ringBuffer.offer(0), "offer() before the batch");
+        Check.isTrue(ringBuffer.offerAll(range(1, 6)), "offerAll() to the ring buffer with enough free slots");
+        Check.isTrue(!ringBuffer.offerAll(range(6, 9)), "offerAll() to the ring buffer without enough free slots");
+        Check.equal(6, ringBuffer.size(), "rejected batch changed the size");
+        for (int value = 0; value < 4; value++) {
+            Check.equal(value, ringBuffer.poll(), "poll() order of the batch");
+        }
+        //the batch wraps around the end of the slots
+        Check.isTrue(ringBuffer.offerAll(range(6, 12)), "offerAll() wrapping around");
+        Check.isTrue(!ringBuffer.offer(-1), "offer() to the ring buffer filled by a batch");
+        for (int value = 4; value < 12; value++) {
+            Check.equal(value, ringBuffer.poll(), "poll() order of the wrapped batch");
+        }
+        Check.isTrue(ringBuffer.isEmpty(), "drained ring buffer is not empty");
+    }
+
+    private static void checkLongRingBuffer() {
+        final FlashBus.LongRingBuffer ringBuffer = new FlashBus.LongRingBuffer(CAPACITY);
+        final long[] values = new long[CAPACITY];
+        Check.isTrue(ringBuffer.isEmpty(), "new long ring buffer is not empty");
+        Check.equal(0, ringBuffer.drainTo(values, CAPACITY), "drainTo() of the empty long ring buffer");
+        Check.isTrue(!ringBuffer.drop(), "drop() of the empty long ring buffer");
+        long nextOffered = Long.MAX_VALUE - 1000;
+        long nextTaken = nextOffered;
+        for (int round = 0; round < 10 * CAPACITY; round++) {
+            final int fill = 1 + round % CAPACITY;
+            for (int index = 0; index < fill; index++) {
+                Check.isTrue(ringBuffer.offer(nextOffered++), "offer() to the not full long ring buffer");
+            }
+            if (fill == CAPACITY) {
+                Check.isTrue(!ringBuffer.offer(-1), "offer() to the full long ring buffer");
+            }
+            Check.isTrue(!ringBuffer.isEmpty(), "long ring buffer with values is empty");
+            if (round % 2 == 1) {
+                //drop oldest: the head value is discarded
+                Check.isTrue(ringBuffer.drop(), "drop() of the not empty long ring buffer");
+                nextTaken++;
+            }
+            //take the values in chunks smaller than the capacity
+            int taken;
+            while ((taken = ringBuffer.drainTo(values, CHUNK_SIZE)) > 0) {
+                Check.isTrue(taken <= CHUNK_SIZE, "drainTo() took more than the maximum count: " + taken);
+                for (int index = 0; index < taken; index++) {
+                    Check.equal(nextTaken++, values[index], "drainTo() order");
+                }
+            }
+            Check.equal(nextOffered, nextTaken, "values lost or duplicated");
+            Check.isTrue(ringBuffer.isEmpty(), "drained long ring buffer is not empty");
+        }
+    }
+
+    private static void checkRingBufferProducers() {
+        final FlashBus.RingBuffer<Long> ringBuffer = new FlashBus.RingBuffer<>(CAPACITY);
+        final List<Thread> producers = startProducers(new Producer() {
+            @Override
+            public boolean offer(final long value) {
+                return ringBuffer.offer(value);
+            }
+        });
+        final long[] lastValues = newLastValues();
+        for (int count = 0; count < PRODUCER_COUNT * ELEMENTS_PER_PRODUCER; count++) {
+            Long value;
+            while ((value = ringBuffer.poll()) == null) {
+                Thread.yield();
+            }
+            checkOrder(lastValues, value);
+        }
+        joinProducers(producers);
+        Check.isTrue(ringBuffer.isEmpty(), "ring buffer is not empty after taking every element");
+    }
+
+    private static void checkLongRingBufferProducers() {
+        final FlashBus.LongRingBuffer ringBuffer = new FlashBus.LongRingBuffer(CAPACITY);
+        final List<Thread> producers = startProducers(new Producer() {
+            @Override
+            public boolean offer(final long value) {
+                return ringBuffer.offer(value);
+            }
+        });
+        final long[] lastValues = newLastValues();
+        final long[] values = new long[CAPACITY];
+        int count = 0;
+        while (count < PRODUCER_COUNT * ELEMENTS_PER_PRODUCER) {
+            final int taken = ringBuffer.drainTo(values, CAPACITY);
+            if (taken == 0) {
+                Thread.yield();
+            }
+            for (int index = 0; index < taken; index++) {
+                checkOrder(lastValues, values[index]);
+            }
+            count += taken;
+        }
+        joinProducers(producers);
+        Check.isTrue(ringBuffer.isEmpty(), "long ring buffer is not empty after taking every value");
+    }
+
+    /**
+     * Producer of the multi-producer checks.
+     */
+    private interface Producer {
+
+        boolean offer(final long value);
+    }
+
+    private static List<Thread> startProducers(final Producer producer) {
+        final List<Thread> threads = new ArrayList<>();
+        for (int index = 0; index < PRODUCER_COUNT; index++) {
+            final long first = (long) index * ELEMENTS_PER_PRODUCER;
+            final Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (long value = first; value < first + ELEMENTS_PER_PRODUCER; value++) {
+                        while (!producer.offer(value)) {
+                            Thread.yield();
+                        }
+                    }
+                }
+            }, "ringBufferProducer-" + index);
+            thread.setDaemon(true);
+            thread.start();
+            threads.add(thread);
+        }
+        return threads;
+    }
+
+    private static void joinProducers(final List<Thread> producers) {
+        for (final Thread producer : producers) {
+            try {
+                producer.join(Check.TIMEOUT_SECONDS * 1000);
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+                throw new AssertionError("interrupted");
+            }
+            Check.isTrue(!producer.isAlive(), "producer did not finish: " + producer.getName());
+        }
+    }
+
+    private static long[] newLastValues() {
+        final long[] lastValues = new long[PRODUCER_COUNT];
+        for (int producer = 0; producer < PRODUCER_COUNT; producer++) {
+            lastValues[producer] = (long) producer * ELEMENTS_PER_PRODUCER - 1;
+        }
+        return lastValues;
+    }
+
+    private static void checkOrder(final long[] lastValues, final long value) {
+        final int producer = (int) (value / ELEMENTS_PER_PRODUCER);
+        Check.equal(lastValues[producer] + 1, value, "order of producer " + producer);
+        lastValues[producer] = value;
+    }
+
+    private static List<Integer> range(final int from, final int to) {
+        final List<Integer> values = new ArrayList<>();
+        for (int value = from; value < to; value++) {
+            values.add(value);
+        }
+        return values;
+    }
+}
@@ -0,0 +1,39 @@
+/*
+ * Copyright 2015 Miklos Sagi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.msagi.flashbus.jmh;
+
+import com.msagi.flashbus.annotation.Subscribe;
+import com.msagi.flashbus.annotation.ThreadId;
+
+/**
+ * Subscriber of the benchmark fixture with several subscriber methods on different threads (measures the register / unregister cost).
+ *
+ * @author msagi (miklos.sagi@gmail.com)
+ */
+public class ChurnSubscriber {
+
+    @Subscribe(thread = ThreadId.BACKGROUND)
+    public void onEvent(final FixtureEvent event) {
+    }
+
+    @Subscribe(thread = ThreadId.ASYNC)
+    public void onEventAsync(final FixtureEvent event) {
+    }
+
+    @Subscribe(thread = ThreadId.POSTING)
+    public void onStickyEvent(final StickyFixtureEvent event) {
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright 2015 Miklos Sagi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.msagi.flashbus.jmh;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Class loading benchmark: cold start of the generated event bus (loading the event bus class in a new class loader, creating the event
+ * bus and registering one instance of each fixture subscriber, which loads their dispatcher classes). Run it with both dispatcher layouts
+ * (-PflashBusDispatchers=class|switch) to compare the class loading time of one dispatcher class per subscriber method to the shared
+ * switch dispatcher classes.
+ *
+ * @author msagi (miklos.sagi@gmail.com)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 10)
+@Measurement(iterations = 50)
+public class ClassLoadingBenchmark {
+
+    /**
+     * The fixture subscriber classes registered to the event bus.
+     */
+    private static final Class<?>[] SUBSCRIBER_CLASSES = {
+            FanOutSubscriber.class, CrossThreadSubscriber.class, ChurnSubscriber.class, StickySubscriber.class
+    };
+
+    @Benchmark
+    public Object flashBusColdStart() throws Exception {
+        //no parent class loader: the event bus and the fixture classes are loaded again in each iteration
+        final URL location = FlashBus.class.getProtectionDomain().getCodeSource().getLocation();
+        final URLClassLoader classLoader = new URLClassLoader(new URL[] { location }, /* parent */ null);
+        try {
+            final Class<?> flashBusClass = classLoader.loadClass(FlashBus.class.getName());
+            final Object flashBus = flashBusClass.newInstance();
+            for (final Class<?> subscriberClass : SUBSCRIBER_CLASSES) {
+                //the typed register method of the subscriber class (the generic one is a placeholder)
+                final Class<?> loadedSubscriberClass = classLoader.loadClass(subscriberClass.getName());
+                final Method register = flashBusClass.getMethod("register", loadedSubscriberClass);
+                register.invoke(flashBus, loadedSubscriberClass.newInstance());
+            }
+            flashBusClass.getMethod("shutdown").invoke(flashBus);
+            return flashBus;
+        } finally {
+            classLoader.close();
+        }
+    }
+}
@@ -0,0 +1,42 @@
+/*
+ * Copyright 2015 Miklos Sagi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.msagi.flashbus.jmh;
+
+import com.msagi.flashbus.annotation.Subscribe;
+import com.msagi.flashbus.annotation.ThreadId;
+
+/**
+ * Subscriber of the benchmark fixture receiving the events on the background thread (measures the post-to-handler latency).
+ *
+ * @author msagi (miklos.sagi@gmail.com)
+ */
+public class CrossThreadSubscriber implements LastSequenceSubscriber {
+
+    /**
+     * The sequence number of the last event received (written by the delivery thread, read by the posting thread).
+     */
+    private volatile long mLastSequence = -1;
+
+    @Subscribe(thread = ThreadId.BACKGROUND)
+    public void onEvent(final FixtureEvent event) {
+        mLastSequence = event.getSequence();
+    }
+
+    @Override
+    public long getLastSequence() {
+        return mLastSequence;
+    }
+}
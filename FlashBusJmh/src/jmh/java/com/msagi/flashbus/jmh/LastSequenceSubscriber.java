@@ -0,0 +1,32 @@
+/*
+ * Copyright 2015 Miklos Sagi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.msagi.flashbus.jmh;
+
+/**
+ * Subscriber of the benchmark fixture receiving the events on another thread: the posting thread waits for the delivery by the sequence
+ * number of the last event received.
+ *
+ * @author msagi (miklos.sagi@gmail.com)
+ */
+public interface LastSequenceSubscriber {
+
+    /**
+     * Get the sequence number of the last event received.
+     *
+     * @return The sequence number of the last event received (-1 if none).
+     */
+    long getLastSequence();
+}
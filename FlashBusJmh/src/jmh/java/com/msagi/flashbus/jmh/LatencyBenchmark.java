@@ -0,0 +1,91 @@
+/*
+ * Copyright 2015 Miklos Sagi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.msagi.flashbus.jmh;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cross thread latency benchmark: the time from posting an event until the subscriber on the background thread received it (the sample
+ * time mode reports the latency percentiles), compared to the reflective baseline event bus.
+ *
+ * @author msagi (miklos.sagi@gmail.com)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class LatencyBenchmark {
+
+    private FlashBus mFlashBus;
+
+    private ReflectiveBus mReflectiveBus;
+
+    private ExecutorService mReflectiveBusExecutor;
+
+    private final CrossThreadSubscriber mFlashBusSubscriber = new CrossThreadSubscriber();
+
+    private final CrossThreadSubscriber mReflectiveBusSubscriber = new CrossThreadSubscriber();
+
+    /**
+     * The sequence number of the last posted event.
+     */
+    private long mSequence;
+
+    @Setup
+    public void setUp() {
+        mFlashBus = new FlashBus();
+        mFlashBus.register(mFlashBusSubscriber);
+        mReflectiveBusExecutor = Executors.newSingleThreadExecutor();
+        mReflectiveBus = new ReflectiveBus(mReflectiveBusExecutor);
+        mReflectiveBus.register(mReflectiveBusSubscriber);
+    }
+
+    @TearDown
+    public void tearDown() {
+        mFlashBus.shutdown();
+        mReflectiveBusExecutor.shutdown();
+    }
+
+    @Benchmark
+    public long flashBusPostToHandler() {
+        final long sequence = ++mSequence;
+        mFlashBus.post(new FixtureEvent(sequence));
+        while (mFlashBusSubscriber.getLastSequence() != sequence) {
+            //spin until delivered
+        }
+        return sequence;
+    }
+
+    @Benchmark
+    public long reflectiveBusPostToHandler() {
+        final long sequence = ++mSequence;
+        mReflectiveBus.post(new FixtureEvent(sequence));
+        while (mReflectiveBusSubscriber.getLastSequence() != sequence) {
+            //spin until delivered
+        }
+        return sequence;
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright 2015 Miklos Sagi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.msagi.flashbus.jmh;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Post throughput benchmark: posting an event to 1, 10 and 100 subscribers delivering synchronously on the posting thread, compared to the
+ * reflective baseline event bus delivering synchronously too (the event instance is reused so the allocation rate is the allocation of the
+ * event bus). See QueuedPostBenchmark for the subscribers delivering on the MAIN and BACKGROUND threads.
+ *
+ * @author msagi (miklos.sagi@gmail.com)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class PostBenchmark {
+
+    /**
+     * The number of subscribers receiving the posted event.
+     */
+    @Param({"1", "10", "100"})
+    public int fanOut;
+
+    /**
+     * The event to post.
+     */
+    private final FixtureEvent mEvent = new FixtureEvent(0);
+
+    private FlashBus mFlashBus;
+
+    private ReflectiveBus mReflectiveBus;
+
+    @Setup
+    public void setUp() {
+        mFlashBus = new FlashBus();
+        mReflectiveBus = new ReflectiveBus();
+        for (int index = 0; index < fanOut; index++) {
+            mFlashBus.register(new FanOutSubscriber());
+            mReflectiveBus.register(new FanOutSubscriber());
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        mFlashBus.shutdown();
+    }
+
+    @Benchmark
+    public void flashBusPost() {
+        mFlashBus.post(mEvent);
+    }
+
+    @Benchmark
+    public void reflectiveBusPost() {
+        mReflectiveBus.post(mEvent);
+    }
+}
@@ -0,0 +1,144 @@
+/*
+ * Copyright 2015 Miklos Sagi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.msagi.flashbus.jmh;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Queued post throughput benchmark: posting bursts of events to 1, 10 and 100 subscribers delivering on the MAIN or the BACKGROUND thread,
+ * compared to the reflective baseline event bus queuing the deliveries to a single thread executor. Every burst is waited for until all the
+ * subscribers received its last event, so the event queues do not grow without bound and the result includes the delivery.
+ *
+ * @author msagi (miklos.sagi@gmail.com)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class QueuedPostBenchmark {
+
+    /**
+     * The number of events posted in a burst (the throughput is reported per posted event).
+     */
+    private static final int BURST_SIZE = 100;
+
+    /**
+     * The thread the subscribers of the generated event bus receive the events on.
+     */
+    @Param({"MAIN", "BACKGROUND"})
+    public String thread;
+
+    /**
+     * The number of subscribers receiving the posted events.
+     */
+    @Param({"1", "10", "100"})
+    public int fanOut;
+
+    private FlashBus mFlashBus;
+
+    private ReflectiveBus mReflectiveBus;
+
+    private ExecutorService mReflectiveBusExecutor;
+
+    private final List<LastSequenceSubscriber> mFlashBusSubscribers = new ArrayList<>();
+
+    private final List<LastSequenceSubscriber> mReflectiveBusSubscribers = new ArrayList<>();
+
+    /**
+     * The sequence number of the last posted event.
+     */
+    private long mSequence;
+
+    @Setup
+    public void setUp() {
+        mFlashBus = new FlashBus();
+        //the reflective event bus has no main thread: both delivery threads of the generated event bus are single threads too
+        mReflectiveBusExecutor = Executors.newSingleThreadExecutor();
+        mReflectiveBus = new ReflectiveBus(mReflectiveBusExecutor);
+        for (int index = 0; index < fanOut; index++) {
+            //register() is generated per subscriber class (resolved by the static type)
+            if ("MAIN".equals(thread)) {
+                final MainThreadSubscriber flashBusSubscriber = new MainThreadSubscriber();
+                mFlashBus.register(flashBusSubscriber);
+                mFlashBusSubscribers.add(flashBusSubscriber);
+            } else {
+                final CrossThreadSubscriber flashBusSubscriber = new CrossThreadSubscriber();
+                mFlashBus.register(flashBusSubscriber);
+                mFlashBusSubscribers.add(flashBusSubscriber);
+            }
+            final CrossThreadSubscriber reflectiveBusSubscriber = new CrossThreadSubscriber();
+            mReflectiveBus.register(reflectiveBusSubscriber);
+            mReflectiveBusSubscribers.add(reflectiveBusSubscriber);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        mFlashBus.shutdown();
+        mReflectiveBusExecutor.shutdown();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BURST_SIZE)
+    public long flashBusPostQueued() {
+        for (int index = 0; index < BURST_SIZE; index++) {
+            mFlashBus.post(new FixtureEvent(++mSequence));
+        }
+        return awaitDelivery(mFlashBusSubscribers, mSequence);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BURST_SIZE)
+    public long reflectiveBusPostQueued() {
+        for (int index = 0; index < BURST_SIZE; index++) {
+            mReflectiveBus.post(new FixtureEvent(++mSequence));
+        }
+        return awaitDelivery(mReflectiveBusSubscribers, mSequence);
+    }
+
+    /**
+     * Wait until every subscriber received the event of the given sequence number (the wait is part of the measured delivery, not a
+     * latency measurement, see LatencyBenchmark).
+     *
+     * @param subscribers The subscribers to wait for.
+     * @param sequence    The sequence number of the last posted event.
+     * @return The sequence number of the last posted event.
+     */
+    private static long awaitDelivery(final List<LastSequenceSubscriber> subscribers, final long sequence) {
+        for (int index = 0; index < subscribers.size(); index++) {
+            final LastSequenceSubscriber subscriber = subscribers.get(index);
+            while (subscriber.getLastSequence() != sequence) {
+                //let the delivery thread run (it shares the CPU with the posting thread on small devices)
+                Thread.yield();
+            }
+        }
+        return sequence;
+    }
+}
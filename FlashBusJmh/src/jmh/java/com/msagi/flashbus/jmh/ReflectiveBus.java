@@ -0,0 +1,216 @@
+/*
+ * Copyright 2015 Miklos Sagi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.msagi.flashbus.jmh;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+
+/**
+ * Baseline event bus for the benchmarks: a typical generic event bus which finds the subscriber methods by reflection, looks up the
+ * subscribers by the event class in a hash map and delivers the events by reflective calls. The @Subscribe annotation is not retained at
+ * runtime so the subscriber methods are the public single parameter methods with name starting with 'on'. The events are delivered either
+ * synchronously on the posting thread (like the POSTING thread subscribers) or queued to an executor (like the MAIN and BACKGROUND thread
+ * subscribers), so that the benchmarks compare the same delivery mode on both event buses.
+ *
+ * @author msagi (miklos.sagi@gmail.com)
+ */
+public class ReflectiveBus {
+
+    /**
+     * Subscriber method of a registered subscriber instance.
+     */
+    private static final class Subscription {
+
+        /**
+         * The subscriber instance.
+         */
+        private final Object mSubscriber;
+
+        /**
+         * The subscriber method.
+         */
+        private final Method mMethod;
+
+        /**
+         * Create new instance.
+         *
+         * @param subscriber The subscriber instance.
+         * @param method     The subscriber method.
+         */
+        public Subscription(final Object subscriber, final Method method) {
+            mSubscriber = subscriber;
+            mMethod = method;
+        }
+
+        /**
+         * Deliver event to the subscriber.
+         *
+         * @param event The event to deliver.
+         */
+        public void deliver(final Object event) {
+            try {
+                mMethod.invoke(mSubscriber, event);
+            } catch (IllegalAccessException | InvocationTargetException e) {
+                throw new IllegalStateException("Error dispatching event", e);
+            }
+        }
+    }
+
+    /**
+     * The subscriptions by event class.
+     */
+    private final ConcurrentHashMap<Class<?>, CopyOnWriteArrayList<Subscription>> mSubscriptions = new ConcurrentHashMap<>();
+
+    /**
+     * The sticky events by event class.
+     */
+    private final ConcurrentHashMap<Class<?>, Object> mStickyEvents = new ConcurrentHashMap<>();
+
+    /**
+     * The executor to deliver the events on (null to deliver synchronously on the posting thread).
+     */
+    private final Executor mExecutor;
+
+    /**
+     * Create new instance delivering the events synchronously on the posting thread.
+     */
+    public ReflectiveBus() {
+        mExecutor = null;
+    }
+
+    /**
+     * Create new instance delivering the events queued to the given executor.
+     *
+     * @param executor The executor to deliver the events on.
+     */
+    public ReflectiveBus(final Executor executor) {
+        if (executor == null) {
+            throw new IllegalArgumentException("executor == null");
+        }
+        mExecutor = executor;
+    }
+
+    /**
+     * Register subscriber instance.
+     *
+     * @param subscriber The subscriber instance to register.
+     */
+    public void register(final Object subscriber) {
+        for (final Method method : findSubscriberMethods(subscriber.getClass())) {
+            final Class<?> eventClass = method.getParameterTypes()[0];
+            CopyOnWriteArrayList<Subscription> subscriptions = mSubscriptions.get(eventClass);
+            if (subscriptions == null) {
+                final CopyOnWriteArrayList<Subscription> newSubscriptions = new CopyOnWriteArrayList<>();
+                subscriptions = mSubscriptions.putIfAbsent(eventClass, newSubscriptions);
+                if (subscriptions == null) {
+                    subscriptions = newSubscriptions;
+                }
+            }
+            final Subscription subscription = new Subscription(subscriber, method);
+            subscriptions.add(subscription);
+            final Object stickyEvent = mStickyEvents.get(eventClass);
+            if (stickyEvent != null) {
+                deliver(subscription, stickyEvent);
+            }
+        }
+    }
+
+    /**
+     * Unregister subscriber instance.
+     *
+     * @param subscriber The subscriber instance to unregister.
+     */
+    public void unregister(final Object subscriber) {
+        for (final Method method : findSubscriberMethods(subscriber.getClass())) {
+            final CopyOnWriteArrayList<Subscription> subscriptions = mSubscriptions.get(method.getParameterTypes()[0]);
+            if (subscriptions == null) {
+                continue;
+            }
+            for (final Subscription subscription : subscriptions) {
+                if (subscription.mSubscriber == subscriber) {
+                    subscriptions.remove(subscription);
+                }
+            }
+        }
+    }
+
+    /**
+     * Post event to the subscribers.
+     *
+     * @param event The event to post.
+     */
+    public void post(final Object event) {
+        final CopyOnWriteArrayList<Subscription> subscriptions = mSubscriptions.get(event.getClass());
+        if (subscriptions == null) {
+            return;
+        }
+        for (final Subscription subscription : subscriptions) {
+            deliver(subscription, event);
+        }
+    }
+
+    /**
+     * Post sticky event: keep the event as the latest of its class and post it to the subscribers (the subscribers registered later receive
+     * it on registration).
+     *
+     * @param event The event to post.
+     */
+    public void postSticky(final Object event) {
+        mStickyEvents.put(event.getClass(), event);
+        post(event);
+    }
+
+    /**
+     * Deliver event to the subscriber on the posting thread or queued to the executor.
+     *
+     * @param subscription The subscription of the subscriber.
+     * @param event        The event to deliver.
+     */
+    private void deliver(final Subscription subscription, final Object event) {
+        if (mExecutor == null) {
+            subscription.deliver(event);
+            return;
+        }
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                subscription.deliver(event);
+            }
+        });
+    }
+
+    /**
+     * Find the subscriber methods of the given subscriber class.
+     *
+     * @param subscriberClass The subscriber class.
+     * @return The subscriber methods.
+     */
+    private static List<Method> findSubscriberMethods(final Class<?> subscriberClass) {
+        final List<Method> subscriberMethods = new ArrayList<>();
+        for (final Method method : subscriberClass.getMethods()) {
+            if (method.getName().startsWith("on") && method.getParameterTypes().length == 1 && !Modifier.isStatic(method.getModifiers())) {
+                subscriberMethods.add(method);
+            }
+        }
+        return subscriberMethods;
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright 2015 Miklos Sagi
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.msagi.flashbus.jmh;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Registration benchmark: register / unregister churn of a subscriber with several subscriber methods next to 0 and 1000 registered
+ * subscribers, and the registration of a subscriber receiving a sticky event, compared to the reflective baseline event bus.
+ *
+ * @author msagi (miklos.sagi@gmail.com)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class RegistrationBenchmark {
+
+    /**
+     * The number of subscribers registered before the benchmark.
+     */
+    @Param({"0", "1000"})
+    public int registeredCount;
+
+    private FlashBus mFlashBus;
+
+    private ReflectiveBus mReflectiveBus;
+
+    private final ChurnSubscriber mChurnSubscriber = new ChurnSubscriber();
+
+    private final StickySubscriber mStickySubscriber = new StickySubscriber();
+
+    @Setup
+    public void setUp() {
+        mFlashBus = new FlashBus();
+        mReflectiveBus = new ReflectiveBus();
+        for (int index = 0; index < registeredCount; index++) {
+            mFlashBus.register(new ChurnSubscriber());
+            mReflectiveBus.register(new ChurnSubscriber());
+        }
+        mFlashBus.postSticky(new StickyFixtureEvent());
+        mReflectiveBus.postSticky(new StickyFixtureEvent());
+    }
+
+    @TearDown
+    public void tearDown() {
+        mFlashBus.shutdown();
+    }
+
+    @Benchmark
+    public void flashBusRegisterUnregister() {
+        mFlashBus.register(mChurnSubscriber);
+        mFlashBus.unregister(mChurnSubscriber);
+    }
+
+    @Benchmark
+    public void reflectiveBusRegisterUnregister() {
+        mReflectiveBus.register(mChurnSubscriber);
+        mReflectiveBus.unregister(mChurnSubscriber);
+    }
+
+    @Benchmark
+    public void flashBusStickyRegistration() {
+        mFlashBus.register(mStickySubscriber);
+        mFlashBus.unregister(mStickySubscriber);
+    }
+
+    @Benchmark
+    public void reflectiveBusStickyRegistration() {
+        mReflectiveBus.register(mStickySubscriber);
+        mReflectiveBus.unregister(mStickySubscriber);
+    }
+}